@@ -0,0 +1,9 @@
+package com.github.rholder.gradle.acumen.api
+
+interface AcumenGraphConfiguration {
+
+    String getName()
+
+    // indexes into the edge table in the order a depth first walk of this configuration visits them
+    int[] getEdges()
+}
@@ -0,0 +1,30 @@
+package com.github.rholder.gradle.acumen.api
+
+import org.gradle.tooling.model.Model
+
+/**
+ * A graph-shaped view of the resolved dependencies of every project. Each
+ * distinct module version is a single entry in the node table and each
+ * distinct edge between two of them a single entry in the edge table, so a
+ * subgraph shared by many configurations is only sent once. Every string is
+ * referenced by its index in the string table, with -1 standing for null.
+ * <p>
+ * This isn't a model that can be fetched on its own, it only describes what
+ * AcumenPayloadModel packs into its payload.
+ */
+public interface AcumenGraphModel extends Model {
+
+    // name, group, id and version string indexes for each node, the name is only set when it couldn't be resolved
+    static final int NODE_FIELDS = 4
+
+    // from node (-1 for the configuration itself), to node, requested version and selection reason for each edge
+    static final int EDGE_FIELDS = 4
+
+    List<String> getStrings()
+
+    int[] getNodes()
+
+    int[] getEdges()
+
+    AcumenGraphProject getRootProject()
+}
@@ -0,0 +1,13 @@
+package com.github.rholder.gradle.acumen.api
+
+interface AcumenGraphProject {
+
+    String getName()
+    String getGroup()
+    String getVersion()
+    String getProjectPath()
+    String getProjectDir()
+
+    List<AcumenGraphProject> getChildren()
+    List<AcumenGraphConfiguration> getConfigurations()
+}
@@ -0,0 +1,32 @@
+package com.github.rholder.gradle.acumen.api
+
+import org.gradle.tooling.model.Model
+
+/**
+ * The same graph as AcumenGraphModel, packed into a single byte array so that
+ * it crosses the daemon boundary without any object serialization. The
+ * payload starts with MAGIC and FORMAT_VERSION as 4 byte integers, followed
+ * by unsigned LEB128 variable length integers:
+ *
+ * <pre>
+ * strings:  count, then the byte length and UTF-8 bytes of each string
+ * nodes:    count, then name, group, id and version for each node
+ * edges:    count, then from node, to node, requested version and reason for each edge
+ * projects: depth first, each one as name, group, path, directory, child count,
+ *           the children, configuration count, then the name, edge count
+ *           and edges of each configuration
+ * </pre>
+ *
+ * String references and the from node of an edge are shifted up by one so
+ * that 0 stands for null, or for the configuration itself. The edges of a
+ * configuration are each written as the zigzag encoded difference from the
+ * one before it, which keeps them to a byte or two.
+ */
+public interface AcumenPayloadModel extends Model {
+
+    static final int MAGIC = 0x41434d4e // ACMN
+
+    static final int FORMAT_VERSION = 2
+
+    byte[] getPayload()
+}
@@ -0,0 +1,12 @@
+package com.github.rholder.gradle.acumen.api
+
+import org.gradle.tooling.model.Model
+
+/**
+ * The dependency tree of a single project's configurations, without any of
+ * its subprojects. Request this for specific projects to refresh only part of
+ * a multi-project build.
+ */
+public interface AcumenProjectModel extends Model {
+    GradleTreeNode getNodeTree()
+}
@@ -12,6 +12,10 @@ interface GradleTreeNode {
     String getRequestedVersion()
     String getNodeType()
 
+    // only set for project nodes
+    String getProjectPath()
+    String getProjectDir()
+
     List<GradleTreeNode> getChildren()
 
     boolean getSeenBefore()
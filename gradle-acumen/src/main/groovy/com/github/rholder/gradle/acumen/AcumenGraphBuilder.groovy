@@ -0,0 +1,173 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenGraphConfiguration
+import org.gradle.api.Project
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.component.ModuleComponentSelector
+import org.gradle.api.artifacts.result.DependencyResult
+import org.gradle.api.artifacts.result.ResolvedDependencyResult
+
+/**
+ * Build an AcumenGraphModel by interning every string, module version and
+ * edge as projects are visited, so each configuration only has to record the
+ * edges it walks through.
+ */
+class AcumenGraphBuilder implements ProjectVisitor<DefaultAcumenGraphProject> {
+
+    private final Map<String, Integer> stringIndex = new HashMap<String, Integer>()
+    private final List<String> strings = new ArrayList<String>()
+
+    private final IntRowTable nodes = new IntRowTable()
+    private final IntRowTable edges = new IntRowTable()
+
+    // when set, called with a self-contained graph of each project as soon as its configurations are resolved
+    Closure projectResolved
+
+    DefaultAcumenGraphProject newProjectNode(Project project) {
+        return new DefaultAcumenGraphProject(
+                name: project.name,
+                group: project.group,
+                version: project.version,
+                projectPath: project.path,
+                projectDir: project.projectDir.absolutePath
+        )
+    }
+
+    void addSubproject(DefaultAcumenGraphProject projectNode, DefaultAcumenGraphProject subprojectNode) {
+        projectNode.children.add(subprojectNode)
+    }
+
+    void resolveConfigurations(Project project, DefaultAcumenGraphProject projectNode) {
+        GradleAcumenPlugin.configurationsToResolve(project).each { Configuration conf ->
+            List<Integer> configurationEdges = new ArrayList<Integer>()
+
+            // reprocessing existing deps can overflow the stack when there are cycles
+            Set<Integer> expanded = new HashSet<Integer>()
+            conf.incoming.resolutionResult.root.dependencies.each { DependencyResult dr ->
+                addEdge(-1, dr, expanded, configurationEdges)
+            }
+
+            projectNode.configurations.add(new DefaultAcumenGraphConfiguration(
+                    name: conf.name,
+                    edges: configurationEdges as int[]
+            ))
+        }
+
+        if (projectResolved != null) {
+            projectResolved(extractProject(projectNode))
+        }
+    }
+
+    /**
+     * Return a graph holding only the given project's configurations, with
+     * its own string, node and edge tables, and none of its subprojects.
+     */
+    synchronized DefaultAcumenGraphModel extractProject(DefaultAcumenGraphProject project) {
+        AcumenGraphBuilder extracted = new AcumenGraphBuilder()
+        DefaultAcumenGraphProject projectNode = new DefaultAcumenGraphProject(
+                name: project.name,
+                group: project.group,
+                version: project.version,
+                projectPath: project.projectPath,
+                projectDir: project.projectDir
+        )
+
+        for (AcumenGraphConfiguration configuration : project.configurations) {
+            int[] configurationEdges = new int[configuration.edges.length]
+            for (int i = 0; i < configurationEdges.length; i++) {
+                configurationEdges[i] = extracted.copyEdge(this, configuration.edges[i])
+            }
+            projectNode.configurations.add(new DefaultAcumenGraphConfiguration(
+                    name: configuration.name,
+                    edges: configurationEdges
+            ))
+        }
+        return extracted.build(projectNode)
+    }
+
+    synchronized DefaultAcumenGraphModel build(DefaultAcumenGraphProject rootProject) {
+        return new DefaultAcumenGraphModel(
+                strings: new ArrayList<String>(strings),
+                nodes: nodes.toArray(),
+                edges: edges.toArray(),
+                rootProject: rootProject
+        )
+    }
+
+    private void addEdge(int from, DependencyResult result, Set<Integer> expanded, List<Integer> configurationEdges) {
+        if (result instanceof ResolvedDependencyResult) {
+            ResolvedDependencyResult r = result
+            int to = internNode(null, r.selected.moduleVersion.group, r.selected.moduleVersion.name, r.selected.moduleVersion.version)
+
+            String requestedVersion = null
+            if (r.requested instanceof ModuleComponentSelector) {
+                requestedVersion = ((ModuleComponentSelector) r.requested).version
+            }
+            configurationEdges.add(internEdge(from, to, requestedVersion, r.selected.selectionReason.description))
+
+            // only walk the children of the first occurrence in this configuration
+            if (expanded.add(to)) {
+                r.selected.dependencies.each { DependencyResult subDep ->
+                    addEdge(to, subDep, expanded, configurationEdges)
+                }
+            }
+        } else {
+            int to = internNode("Could not resolve $result.requested.displayName".toString(), null, null, null)
+            configurationEdges.add(internEdge(from, to, null, null))
+        }
+    }
+
+    private int copyEdge(AcumenGraphBuilder source, int edge) {
+        int from = source.edges.get(edge, 0)
+        return internEdge(
+                from < 0 ? -1 : copyNode(source, from),
+                copyNode(source, source.edges.get(edge, 1)),
+                source.string(source.edges.get(edge, 2)),
+                source.string(source.edges.get(edge, 3))
+        )
+    }
+
+    private int copyNode(AcumenGraphBuilder source, int node) {
+        return internNode(
+                source.string(source.nodes.get(node, 0)),
+                source.string(source.nodes.get(node, 1)),
+                source.string(source.nodes.get(node, 2)),
+                source.string(source.nodes.get(node, 3))
+        )
+    }
+
+    private String string(int index) {
+        return index < 0 ? null : strings.get(index)
+    }
+
+    private synchronized int internString(String s) {
+        if (s == null) {
+            return -1
+        }
+        Integer index = stringIndex.get(s)
+        if (index == null) {
+            index = strings.size()
+            strings.add(s)
+            stringIndex.put(s, index)
+        }
+        return index
+    }
+
+    /**
+     * Return the index of the node with the given strings, adding it when it
+     * hasn't been seen yet. This and internEdge also build graphs without a
+     * Gradle build at hand, such as the synthetic ones of the benchmarks.
+     */
+    synchronized int internNode(String name, String group, String id, String version) {
+        return nodes.intern(internString(name), internString(group), internString(id), internString(version))
+    }
+
+    /**
+     * Return the index of the edge from the given node, or -1 for a
+     * configuration, to the given node, adding it when it hasn't been seen
+     * yet.
+     */
+    synchronized int internEdge(int from, int to, String requestedVersion, String reason) {
+        return edges.intern(from, to, internString(requestedVersion), internString(reason))
+    }
+}
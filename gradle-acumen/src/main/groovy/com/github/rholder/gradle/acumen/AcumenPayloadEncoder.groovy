@@ -0,0 +1,109 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenGraphConfiguration
+import com.github.rholder.gradle.acumen.api.AcumenGraphModel
+import com.github.rholder.gradle.acumen.api.AcumenGraphProject
+import com.github.rholder.gradle.acumen.api.AcumenPayloadModel
+
+/**
+ * Pack an AcumenGraphModel into the byte payload described by
+ * AcumenPayloadModel.
+ */
+class AcumenPayloadEncoder {
+
+    static byte[] encode(AcumenGraphModel graph) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        DataOutputStream output = new DataOutputStream(bytes)
+        output.writeInt(AcumenPayloadModel.MAGIC)
+        output.writeInt(AcumenPayloadModel.FORMAT_VERSION)
+
+        // project and configuration names aren't interned by the graph builder, pool them along with the rest
+        List<String> strings = new ArrayList<String>(graph.strings)
+        Map<String, Integer> pool = new HashMap<String, Integer>()
+        for (int i = 0; i < strings.size(); i++) {
+            pool.put(strings.get(i), i)
+        }
+        poolStrings(graph.rootProject, pool, strings)
+
+        writeVarInt(output, strings.size())
+        for (String s : strings) {
+            byte[] utf8 = s.getBytes("UTF-8")
+            writeVarInt(output, utf8.length)
+            output.write(utf8)
+        }
+
+        int[] nodes = graph.nodes
+        writeVarInt(output, nodes.length.intdiv(AcumenGraphModel.NODE_FIELDS))
+        for (int i = 0; i < nodes.length; i++) {
+            writeVarInt(output, nodes[i] + 1)
+        }
+
+        int[] edges = graph.edges
+        writeVarInt(output, edges.length.intdiv(AcumenGraphModel.EDGE_FIELDS))
+        for (int i = 0; i < edges.length; i += AcumenGraphModel.EDGE_FIELDS) {
+            writeVarInt(output, edges[i] + 1)
+            writeVarInt(output, edges[i + 1])
+            writeVarInt(output, edges[i + 2] + 1)
+            writeVarInt(output, edges[i + 3] + 1)
+        }
+
+        writeProject(output, graph.rootProject, pool)
+
+        output.flush()
+        return bytes.toByteArray()
+    }
+
+    private static void writeProject(DataOutputStream output, AcumenGraphProject project, Map<String, Integer> pool) {
+        writeString(output, project.name, pool)
+        writeString(output, project.group, pool)
+        writeString(output, project.projectPath, pool)
+        writeString(output, project.projectDir, pool)
+
+        writeVarInt(output, project.children.size())
+        for (AcumenGraphProject child : project.children) {
+            writeProject(output, child, pool)
+        }
+
+        writeVarInt(output, project.configurations.size())
+        for (AcumenGraphConfiguration configuration : project.configurations) {
+            writeString(output, configuration.name, pool)
+
+            int[] edges = configuration.edges
+            writeVarInt(output, edges.length)
+            int previous = 0
+            for (int edge : edges) {
+                int delta = edge - previous
+                writeVarInt(output, (delta << 1) ^ (delta >> 31))
+                previous = edge
+            }
+        }
+    }
+
+    private static void poolStrings(AcumenGraphProject project, Map<String, Integer> pool, List<String> strings) {
+        List<String> projectStrings = [project.name, project.group, project.projectPath, project.projectDir]
+        for (AcumenGraphConfiguration configuration : project.configurations) {
+            projectStrings.add(configuration.name)
+        }
+        for (String s : projectStrings) {
+            if (s != null && !pool.containsKey(s)) {
+                pool.put(s, strings.size())
+                strings.add(s)
+            }
+        }
+        for (AcumenGraphProject child : project.children) {
+            poolStrings(child, pool, strings)
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String s, Map<String, Integer> pool) {
+        writeVarInt(output, s == null ? 0 : pool.get(s) + 1)
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80)
+            value >>>= 7
+        }
+        output.writeByte(value)
+    }
+}
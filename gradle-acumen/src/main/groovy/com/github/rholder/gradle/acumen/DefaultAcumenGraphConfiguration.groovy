@@ -0,0 +1,8 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenGraphConfiguration
+
+class DefaultAcumenGraphConfiguration implements Serializable, AcumenGraphConfiguration {
+    String name
+    int[] edges
+}
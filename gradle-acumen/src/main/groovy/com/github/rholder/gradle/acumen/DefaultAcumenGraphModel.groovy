@@ -0,0 +1,11 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenGraphModel
+import com.github.rholder.gradle.acumen.api.AcumenGraphProject
+
+class DefaultAcumenGraphModel implements Serializable, AcumenGraphModel {
+    List<String> strings
+    int[] nodes
+    int[] edges
+    AcumenGraphProject rootProject
+}
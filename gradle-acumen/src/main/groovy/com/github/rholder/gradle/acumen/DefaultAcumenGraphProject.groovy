@@ -0,0 +1,15 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenGraphConfiguration
+import com.github.rholder.gradle.acumen.api.AcumenGraphProject
+
+class DefaultAcumenGraphProject implements Serializable, AcumenGraphProject {
+    String name
+    String group
+    String version
+    String projectPath
+    String projectDir
+
+    List<AcumenGraphProject> children = new ArrayList<AcumenGraphProject>()
+    List<AcumenGraphConfiguration> configurations = new ArrayList<AcumenGraphConfiguration>()
+}
@@ -0,0 +1,7 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenPayloadModel
+
+class DefaultAcumenPayloadModel implements Serializable, AcumenPayloadModel {
+    byte[] payload
+}
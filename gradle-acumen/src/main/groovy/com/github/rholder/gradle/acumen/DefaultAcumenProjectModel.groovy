@@ -0,0 +1,8 @@
+package com.github.rholder.gradle.acumen
+
+import com.github.rholder.gradle.acumen.api.AcumenProjectModel
+import com.github.rholder.gradle.acumen.api.GradleTreeNode
+
+class DefaultAcumenProjectModel implements Serializable, AcumenProjectModel {
+    GradleTreeNode nodeTree
+}
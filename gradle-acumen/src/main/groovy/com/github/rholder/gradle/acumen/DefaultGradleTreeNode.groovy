@@ -13,6 +13,8 @@ class DefaultGradleTreeNode implements GradleTreeNode, Serializable {
     String nodeType
     String reason
     String requestedVersion
+    String projectPath
+    String projectDir
     List<GradleTreeNode> children = new ArrayList<GradleTreeNode>()
 
     boolean seenBefore = false
@@ -1,5 +1,7 @@
 package com.github.rholder.gradle.acumen
 
+import com.github.rholder.gradle.acumen.api.AcumenPayloadModel
+import com.github.rholder.gradle.acumen.api.AcumenProjectModel
 import com.github.rholder.gradle.acumen.api.AcumenTreeModel
 import org.gradle.api.Plugin
 import org.gradle.api.Project
@@ -11,8 +13,24 @@ import org.gradle.tooling.provider.model.ToolingModelBuilder
 import org.gradle.tooling.provider.model.ToolingModelBuilderRegistry
 
 import javax.inject.Inject
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.regex.Pattern
 
 class GradleAcumenPlugin implements Plugin<Project> {
+    static final String PARALLEL_PROPERTY = "acumen.parallel"
+    static final String STREAM_PROPERTY = "acumen.stream"
+
+    // comma separated patterns where * matches anything, configurations and projects that don't pass are never resolved
+    static final String INCLUDE_CONFIGURATIONS_PROPERTY = "acumen.configurations.include"
+    static final String EXCLUDE_CONFIGURATIONS_PROPERTY = "acumen.configurations.exclude"
+    static final String INCLUDE_PROJECTS_PROPERTY = "acumen.projects.include"
+    static final String EXCLUDE_PROJECTS_PROPERTY = "acumen.projects.exclude"
+
     final ToolingModelBuilderRegistry registry;
 
     @Inject
@@ -23,6 +41,8 @@ class GradleAcumenPlugin implements Plugin<Project> {
     @Override
     void apply(Project project) {
         registry.register(new AcumenToolingModelBuilder())
+        registry.register(new AcumenProjectModelBuilder())
+        registry.register(new AcumenPayloadModelBuilder())
     }
 
     // note: if this method is inside the private AcumenToolingModelBuilder below, it causes issues with Groovy
@@ -59,6 +79,52 @@ class GradleAcumenPlugin implements Plugin<Project> {
         return node
     }
 
+    /**
+     * Return how many projects to resolve at the same time, which is 1 unless
+     * the acumen.parallel project property is set to a positive thread count
+     * or to true for one thread per available processor. Anything else,
+     * including false, resolves one project at a time, and so does a build
+     * that can't resolve projects in parallel, see {@link #withProjectLock}.
+     */
+    static int parallelism(Project project) {
+        if (!project.hasProperty(PARALLEL_PROPERTY)) {
+            return 1
+        }
+        String value = project.property(PARALLEL_PROPERTY).toString().trim()
+        int threads
+        if (value.equalsIgnoreCase("true")) {
+            threads = Runtime.runtime.availableProcessors()
+        } else {
+            threads = value.isInteger() ? Math.max(1, value.toInteger()) : 1
+        }
+
+        if (threads > 1 && !canResolveInParallel(project)) {
+            project.logger.warn("Ignoring " + PARALLEL_PROPERTY + ", this build can't resolve projects in parallel")
+            return 1
+        }
+        return threads
+    }
+
+    static boolean canResolveInParallel(Project project) {
+        // the workers would wait forever for the one lock every project shares without --parallel
+        return project.respondsTo("getMutationState") && project.gradle.startParameter.parallelProjectExecutionEnabled
+    }
+
+    /**
+     * Run the given work on a worker thread while holding the lock of the
+     * given project, which Gradle requires before resolving its
+     * configurations. There's no public API for this, so it calls
+     * ProjectInternal.getMutationState().withMutableState(Runnable) as it
+     * exists in Gradle 5.6, the version this build is written against. Gradle
+     * only gives each project its own lock with --parallel. Gradle 9.1 was
+     * checked too: it has no getMutationState() and refuses to resolve from
+     * threads it didn't start, so {@link #parallelism} never hands work to
+     * this method there.
+     */
+    static void withProjectLock(Project project, Closure work) {
+        project.mutationState.withMutableState(work as Runnable)
+    }
+
     static boolean canBeResolved(Configuration conf) {
         try {
             // this method doesn't exist before Gradle 3
@@ -69,20 +135,167 @@ class GradleAcumenPlugin implements Plugin<Project> {
         }
     }
 
+    /**
+     * Return the configurations of the given project that should be resolved,
+     * which are the resolvable ones whose names pass the configuration
+     * patterns, or none at all if the project's path doesn't pass the project
+     * patterns. Names are checked first so that skipped configurations are
+     * left completely alone.
+     */
+    static List<Configuration> configurationsToResolve(Project project) {
+        List<Configuration> selected = new ArrayList<Configuration>()
+        if (!matches(patterns(project, INCLUDE_PROJECTS_PROPERTY), patterns(project, EXCLUDE_PROJECTS_PROPERTY), project.path)) {
+            return selected
+        }
+
+        List<Pattern> include = patterns(project, INCLUDE_CONFIGURATIONS_PROPERTY)
+        List<Pattern> exclude = patterns(project, EXCLUDE_CONFIGURATIONS_PROPERTY)
+        //noinspection GroovyAssignabilityCheck
+        project.configurations.each { Configuration conf ->
+            if (matches(include, exclude, conf.name) && canBeResolved(conf)) {
+                selected.add(conf)
+            }
+        }
+        return selected
+    }
+
+    /**
+     * Return true if the given name matches one of the include patterns, or
+     * there are none, and doesn't match any of the exclude patterns.
+     */
+    static boolean matches(List<Pattern> include, List<Pattern> exclude, String name) {
+        if (include != null && !include.any { Pattern p -> p.matcher(name).matches() }) {
+            return false
+        }
+        return exclude == null || !exclude.any { Pattern p -> p.matcher(name).matches() }
+    }
+
+    /**
+     * Return the comma separated patterns in the given project property, or
+     * null if it isn't set to any.
+     */
+    static List<Pattern> patterns(Project project, String property) {
+        if (!project.hasProperty(property)) {
+            return null
+        }
+        List<Pattern> patterns = new ArrayList<Pattern>()
+        project.property(property).toString().split(',').each { String glob ->
+            if (!glob.trim().isEmpty()) {
+                // quote everything between the wildcards
+                patterns.add(Pattern.compile(glob.trim().split('\\*', -1).collect { Pattern.quote(it) }.join('.*')))
+            }
+        }
+        return patterns.isEmpty() ? null : patterns
+    }
+
     static DefaultGradleTreeNode generateProjectTree(Project project) {
-        DefaultGradleTreeNode rootNode = new DefaultGradleTreeNode(
+        return generateProjectTree(project, true)
+    }
+
+    static DefaultGradleTreeNode generateProjectTree(Project project, boolean includeSubprojects) {
+        return walkProjects(project, includeSubprojects, new TreeProjectVisitor())
+    }
+
+    static DefaultAcumenGraphModel generateProjectGraph(Project project) {
+        AcumenGraphBuilder builder = new AcumenGraphBuilder()
+        if (project.hasProperty(STREAM_PROPERTY)) {
+            // each line starts with the token the client handed us so it can't be mistaken for other build output
+            String token = project.property(STREAM_PROPERTY).toString()
+            builder.projectResolved = { DefaultAcumenGraphModel projectGraph ->
+                project.logger.quiet(token + " " + AcumenPayloadEncoder.encode(projectGraph).encodeBase64().toString())
+            }
+        }
+        DefaultAcumenGraphProject rootProject = walkProjects(project, true, builder)
+        return builder.build(rootProject)
+    }
+
+    /**
+     * Visit the given project and, if asked, its subprojects, returning the
+     * node the visitor built for the given project. When parallel resolution
+     * is turned on, the configurations of each subproject are resolved on a
+     * pool of worker threads while this thread, which already holds the lock
+     * for the given project, resolves its own configurations.
+     */
+    static <T> T walkProjects(Project project, boolean includeSubprojects, ProjectVisitor<T> visitor) {
+        int threads = parallelism(project)
+        if (threads <= 1) {
+            return walkProjects(project, includeSubprojects, visitor, null, null)
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger()
+
+            Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "acumen-resolver-" + count.incrementAndGet())
+                thread.daemon = true
+                return thread
+            }
+        })
+        try {
+            List<Future<?>> pending = new ArrayList<Future<?>>()
+            T rootNode = visitor.newProjectNode(project)
+            if (includeSubprojects) {
+                project.subprojects.each {
+                    visitor.addSubproject(rootNode, walkProjects(it, true, visitor, executor, pending))
+                }
+            }
+
+            visitor.resolveConfigurations(project, rootNode)
+
+            // every node is already attached in order, this only waits for their configurations and surfaces failures
+            pending.each { Future<?> f ->
+                try {
+                    f.get()
+                } catch (ExecutionException e) {
+                    throw e.cause
+                }
+            }
+            return rootNode
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * Visit the given project and, if asked, its subprojects. When an executor
+     * is given, each project's configurations are resolved on it, otherwise
+     * they're resolved right away on the calling thread.
+     */
+    static <T> T walkProjects(Project project, boolean includeSubprojects, ProjectVisitor<T> visitor, ExecutorService executor, List<Future<?>> pending) {
+        T rootNode = visitor.newProjectNode(project)
+
+        if (includeSubprojects) {
+            project.subprojects.each {
+                visitor.addSubproject(rootNode, walkProjects(it, true, visitor, executor, pending))
+            }
+        }
+
+        if (executor == null) {
+            visitor.resolveConfigurations(project, rootNode)
+        } else {
+            pending.add(executor.submit({
+                withProjectLock(project) {
+                    visitor.resolveConfigurations(project, rootNode)
+                }
+            } as Runnable))
+        }
+
+        return rootNode
+    }
+
+    static DefaultGradleTreeNode newProjectNode(Project project) {
+        return new DefaultGradleTreeNode(
                 name: project.name,
                 group: project.group,
                 version: project.version,
-                nodeType: "project"
+                nodeType: "project",
+                projectPath: project.path,
+                projectDir: project.projectDir.absolutePath
         )
+    }
 
-        project.subprojects.each {
-            rootNode.children.add(generateProjectTree(it))
-        }
-
-        //noinspection GroovyAssignabilityCheck
-        project.configurations.each { Configuration conf ->
+    static void resolveConfigurations(Project project, DefaultGradleTreeNode rootNode) {
+        configurationsToResolve(project).each { Configuration conf ->
             DefaultGradleTreeNode configurationNode = new DefaultGradleTreeNode(
                     name: conf.name,
                     nodeType: "configuration"
@@ -90,17 +303,13 @@ class GradleAcumenPlugin implements Plugin<Project> {
 
             // reprocessing existing deps can overflow the stack when there are cycles
             Set<DefaultGradleTreeNode> existingDeps = new LinkedHashSet<DefaultGradleTreeNode>()
-            if(canBeResolved(conf)) {
-                conf.incoming.resolutionResult.root.dependencies.each { DependencyResult dr ->
-                    DefaultGradleTreeNode dependencyNode = resolveDependency(configurationNode, dr, existingDeps)
-                    configurationNode.children.add(dependencyNode)
-                }
-
-                rootNode.children.add(configurationNode)
+            conf.incoming.resolutionResult.root.dependencies.each { DependencyResult dr ->
+                DefaultGradleTreeNode dependencyNode = resolveDependency(configurationNode, dr, existingDeps)
+                configurationNode.children.add(dependencyNode)
             }
-        }
 
-        return rootNode
+            rootNode.children.add(configurationNode)
+        }
     }
 
     private static class AcumenToolingModelBuilder implements ToolingModelBuilder {
@@ -115,4 +324,45 @@ class GradleAcumenPlugin implements Plugin<Project> {
             )
         }
     }
+
+    private static class AcumenProjectModelBuilder implements ToolingModelBuilder {
+
+        public boolean canBuild(String modelName) {
+            modelName.equals(AcumenProjectModel.class.getName())
+        }
+
+        public Object buildAll(String modelName, Project project) {
+            new DefaultAcumenProjectModel(
+                    nodeTree: generateProjectTree(project, false)
+            )
+        }
+    }
+
+    private static class AcumenPayloadModelBuilder implements ToolingModelBuilder {
+
+        public boolean canBuild(String modelName) {
+            modelName.equals(AcumenPayloadModel.class.getName())
+        }
+
+        public Object buildAll(String modelName, Project project) {
+            new DefaultAcumenPayloadModel(
+                    payload: AcumenPayloadEncoder.encode(generateProjectGraph(project))
+            )
+        }
+    }
+
+    private static class TreeProjectVisitor implements ProjectVisitor<DefaultGradleTreeNode> {
+
+        DefaultGradleTreeNode newProjectNode(Project project) {
+            GradleAcumenPlugin.newProjectNode(project)
+        }
+
+        void addSubproject(DefaultGradleTreeNode projectNode, DefaultGradleTreeNode subprojectNode) {
+            projectNode.children.add(subprojectNode)
+        }
+
+        void resolveConfigurations(Project project, DefaultGradleTreeNode projectNode) {
+            GradleAcumenPlugin.resolveConfigurations(project, projectNode)
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package com.github.rholder.gradle.acumen
+
+import groovy.transform.CompileStatic
+
+/**
+ * A table of distinct rows of four ints, the width of both the node and the
+ * edge rows of an AcumenGraphModel, stored one after another in a single int
+ * array. Rows are found again through an open addressing index of row numbers
+ * hashed from the row's own fields, so interning a row never boxes anything
+ * or allocates a key.
+ */
+@CompileStatic // keeps the fields primitive all the way through
+class IntRowTable {
+
+    private static final int WIDTH = 4
+
+    private int[] rows = new int[16 * WIDTH]
+    private int size
+
+    // row number + 1 for each slot, 0 when the slot is empty, and always at most half full
+    private int[] slots = new int[16]
+
+    /**
+     * Return the number of the row holding the given fields, adding it when
+     * there isn't one yet.
+     */
+    int intern(int a, int b, int c, int d) {
+        int mask = slots.length - 1
+        int slot = hash(a, b, c, d) & mask
+        while (slots[slot] != 0) {
+            int row = slots[slot] - 1
+            int r = row * WIDTH
+            if (rows[r] == a && rows[r + 1] == b && rows[r + 2] == c && rows[r + 3] == d) {
+                return row
+            }
+            slot = (slot + 1) & mask
+        }
+
+        if (size * WIDTH == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2)
+        }
+        int row = size++
+        int r = row * WIDTH
+        rows[r] = a
+        rows[r + 1] = b
+        rows[r + 2] = c
+        rows[r + 3] = d
+        slots[slot] = row + 1
+        if (size * 2 > slots.length) {
+            rehash()
+        }
+        return row
+    }
+
+    /**
+     * Return the given field of the given row.
+     */
+    int get(int row, int field) {
+        return rows[row * WIDTH + field]
+    }
+
+    /**
+     * Return a copy of every row, one after another.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(rows, size * WIDTH)
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2]
+        int mask = slots.length - 1
+        for (int row = 0; row < size; row++) {
+            int r = row * WIDTH
+            int slot = hash(rows[r], rows[r + 1], rows[r + 2], rows[r + 3]) & mask
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask
+            }
+            slots[slot] = row + 1
+        }
+    }
+
+    private static int hash(int a, int b, int c, int d) {
+        int h = ((a * 31 + b) * 31 + c) * 31 + d
+        // spread the high bits down, since only the low ones pick a slot
+        return h ^ (h >>> 16)
+    }
+}
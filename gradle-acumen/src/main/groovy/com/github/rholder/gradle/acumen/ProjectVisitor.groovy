@@ -0,0 +1,17 @@
+package com.github.rholder.gradle.acumen
+
+import org.gradle.api.Project
+
+/**
+ * Implementations of this interface build one kind of node per project as
+ * GradleAcumenPlugin walks a build. Resolving configurations may happen on
+ * worker threads, but only ever once for a given node.
+ */
+interface ProjectVisitor<T> {
+
+    T newProjectNode(Project project)
+
+    void addSubproject(T projectNode, T subprojectNode)
+
+    void resolveConfigurations(Project project, T projectNode)
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The same synthetic graph as GraphState, packed into a CompactGraph the way
+ * every loaded build is before it's shown, so that the benchmarks walk views
+ * instead of plain GradleNode objects.
+ */
+@State(Scope.Benchmark)
+public class CompactGraphState extends GraphState {
+
+    @Override
+    protected GradleNode pack(GradleNode decoded) {
+        return CompactGraph.of(decoded).getRoot();
+    }
+}
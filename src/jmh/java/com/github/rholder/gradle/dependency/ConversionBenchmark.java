@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for turning what gradle-acumen hands over into a GradleNode
+ * graph, from the payload every build is loaded with and from the
+ * GradleTreeNode tree that single projects are reloaded with, and packing the
+ * result into a CompactGraph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConversionBenchmark {
+
+    @Benchmark
+    public GradleNode decodePayload(GraphState state) {
+        return AcumenPayloadDecoder.decode(state.payload);
+    }
+
+    @Benchmark
+    public GradleNode convertTreeModel(GraphState state) {
+        return DependencyConversionUtil.convertToGradleNode(null, state.treeNode, new HashMap<String, String>());
+    }
+
+    @Benchmark
+    public CompactGraph compactGraph(GraphState state) {
+        return CompactGraph.of(state.root);
+    }
+}
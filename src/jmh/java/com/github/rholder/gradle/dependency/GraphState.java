@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.github.rholder.gradle.acumen.api.GradleTreeNode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The synthetic graph shared by the benchmarks, in every form they start
+ * from. Override the shape with -p, such as -p depth=6 -p fanOut=10.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+
+    @Param({"4", "8"})
+    public int depth;
+
+    @Param({"4", "10"})
+    public int fanOut;
+
+    @Param({"1000", "10000"})
+    public int modules;
+
+    @Param({"8"})
+    public int configurations;
+
+    public byte[] payload;
+    public GradleTreeNode treeNode;
+    public GradleNode root;
+
+    // every dependency edge of the graph, in depth first order
+    public List<GradleNode> dependencies;
+
+    @Setup
+    public void setUp() {
+        SyntheticGraph graph = new SyntheticGraph(depth, fanOut, modules, configurations, 42);
+        payload = graph.toPayload();
+        treeNode = graph.toTreeNode();
+        root = pack(AcumenPayloadDecoder.decode(payload));
+
+        dependencies = new ArrayList<GradleNode>(graph.getEdgeCount());
+        Deque<GradleNode> stack = new ArrayDeque<GradleNode>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            GradleNode node = stack.pop();
+            if (node.name == null) {
+                dependencies.add(node);
+            }
+            for (int i = node.dependencies.size() - 1; i >= 0; i--) {
+                stack.push(node.dependencies.get(i));
+            }
+        }
+    }
+
+    /**
+     * Return the graph the benchmarks should walk, given the one decoded from
+     * the payload.
+     *
+     * @param decoded the root of the decoded graph
+     */
+    protected GradleNode pack(GradleNode decoded) {
+        return decoded;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.github.rholder.gradle.acumen.AcumenGraphBuilder;
+import com.github.rholder.gradle.acumen.AcumenPayloadEncoder;
+import com.github.rholder.gradle.acumen.DefaultAcumenGraphConfiguration;
+import com.github.rholder.gradle.acumen.DefaultAcumenGraphProject;
+import com.github.rholder.gradle.acumen.api.AcumenGraphModel;
+import com.github.rholder.gradle.acumen.api.GradleTreeNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A SyntheticGraph generates a repeatable dependency graph of a given shape
+ * for benchmarks, in every form gradle-acumen can hand one over. Modules are
+ * split into as many layers as the graph is deep, each module depends on
+ * fanOut modules of the next layer, and each configuration depends on fanOut
+ * modules of the first layer. Just like a real resolution result, a module's
+ * dependencies are only expanded the first time it shows up in a
+ * configuration, and roughly one edge in ten requests an older version that
+ * gets replaced.
+ */
+public class SyntheticGraph {
+
+    private final int moduleCount;
+    private final int configurationCount;
+    private final int[][] moduleDependencies;
+    private final int[][] configurationDependencies;
+
+    // the from node (or -1 for the configuration) and to node of every edge, in depth first order
+    private final int[][] configurationEdges;
+
+    /**
+     * Generate a new graph of the given shape, the same seed always gives the
+     * same graph.
+     *
+     * @param depth              how many levels of transitive dependencies there are
+     * @param fanOut             how many dependencies each module and configuration has
+     * @param moduleCount        how many distinct modules there are
+     * @param configurationCount how many configurations the project has
+     * @param seed               the seed of the random choices
+     */
+    public SyntheticGraph(int depth, int fanOut, int moduleCount, int configurationCount, long seed) {
+        this.moduleCount = moduleCount;
+        this.configurationCount = configurationCount;
+
+        Random random = new Random(seed);
+        int layerSize = Math.max(1, moduleCount / depth);
+        moduleDependencies = new int[moduleCount][];
+        for (int m = 0; m < moduleCount; m++) {
+            int nextLayer = m / layerSize + 1;
+            int first = nextLayer * layerSize;
+            int size = Math.min(layerSize, moduleCount - first);
+            moduleDependencies[m] = nextLayer < depth && size > 0 ? pick(random, first, size, fanOut) : new int[0];
+        }
+
+        configurationDependencies = new int[configurationCount][];
+        configurationEdges = new int[configurationCount][];
+        for (int c = 0; c < configurationCount; c++) {
+            configurationDependencies[c] = pick(random, 0, Math.min(layerSize, moduleCount), fanOut);
+
+            List<int[]> edges = new ArrayList<int[]>();
+            boolean[] expanded = new boolean[moduleCount];
+            for (int m : configurationDependencies[c]) {
+                expand(-1, m, expanded, edges);
+            }
+            configurationEdges[c] = flatten(edges);
+        }
+    }
+
+    private static int[] pick(Random random, int first, int size, int count) {
+        int[] picked = new int[count];
+        for (int i = 0; i < count; i++) {
+            picked[i] = first + random.nextInt(size);
+        }
+        return picked;
+    }
+
+    private void expand(int from, int to, boolean[] expanded, List<int[]> edges) {
+        edges.add(new int[]{from, to});
+        if (!expanded[to]) {
+            expanded[to] = true;
+            for (int d : moduleDependencies[to]) {
+                expand(to, d, expanded, edges);
+            }
+        }
+    }
+
+    private static int[] flatten(List<int[]> edges) {
+        int[] flattened = new int[edges.size() * 2];
+        for (int i = 0; i < edges.size(); i++) {
+            flattened[i * 2] = edges.get(i)[0];
+            flattened[i * 2 + 1] = edges.get(i)[1];
+        }
+        return flattened;
+    }
+
+    /**
+     * Return how many dependency edges there are across every configuration.
+     */
+    public int getEdgeCount() {
+        int count = 0;
+        for (int[] edges : configurationEdges) {
+            count += edges.length / 2;
+        }
+        return count;
+    }
+
+    private static String group(int module) {
+        return "org.example.group" + (module % 50);
+    }
+
+    private static String id(int module) {
+        return "module-" + module;
+    }
+
+    private static String version(int module) {
+        return "1." + (module % 10) + ".0";
+    }
+
+    private static String configuration(int configuration) {
+        return "configuration" + configuration;
+    }
+
+    // the same edge always asks for the same version, so edges can be pooled like gradle-acumen does
+    private static boolean isReplaced(int from, int to) {
+        return (from * 31 + to) % 10 == 0;
+    }
+
+    private static String requestedVersion(int from, int to) {
+        return isReplaced(from, to) ? "0." + (to % 10) + ".0" : version(to);
+    }
+
+    private static String reason(int from, int to) {
+        return isReplaced(from, to) ? "conflict resolution" : "requested";
+    }
+
+    /**
+     * Return this graph as the AcumenGraphModel gradle-acumen would build for
+     * it, interned by the same AcumenGraphBuilder.
+     */
+    public AcumenGraphModel toGraphModel() {
+        AcumenGraphBuilder builder = new AcumenGraphBuilder();
+        DefaultAcumenGraphProject project = new DefaultAcumenGraphProject();
+        project.setName("synthetic");
+        project.setProjectPath(":");
+        project.setProjectDir("/synthetic");
+
+        int[] nodes = new int[moduleCount];
+        for (int m = 0; m < moduleCount; m++) {
+            nodes[m] = builder.internNode(null, group(m), id(m), version(m));
+        }
+        for (int c = 0; c < configurationCount; c++) {
+            int[] configurationEdge = configurationEdges[c];
+            int[] edges = new int[configurationEdge.length / 2];
+            for (int i = 0; i < configurationEdge.length; i += 2) {
+                int from = configurationEdge[i];
+                int to = configurationEdge[i + 1];
+                edges[i / 2] = builder.internEdge(from < 0 ? -1 : nodes[from], nodes[to],
+                        requestedVersion(from, to), reason(from, to));
+            }
+
+            DefaultAcumenGraphConfiguration configuration = new DefaultAcumenGraphConfiguration();
+            configuration.setName(configuration(c));
+            configuration.setEdges(edges);
+            project.getConfigurations().add(configuration);
+        }
+        return builder.build(project);
+    }
+
+    /**
+     * Return this graph encoded as the payload of an AcumenPayloadModel.
+     */
+    public byte[] toPayload() {
+        return AcumenPayloadEncoder.encode(toGraphModel());
+    }
+
+    /**
+     * Return this graph as the GradleTreeNode tree of an AcumenTreeModel.
+     */
+    public GradleTreeNode toTreeNode() {
+        TreeNode root = new TreeNode(null);
+        root.name = "synthetic";
+        root.nodeType = "project";
+        root.projectPath = ":";
+        root.projectDir = "/synthetic";
+
+        for (int c = 0; c < configurationCount; c++) {
+            TreeNode configurationNode = new TreeNode(root);
+            configurationNode.name = configuration(c);
+            configurationNode.nodeType = "configuration";
+            root.children.add(configurationNode);
+
+            Map<Integer, TreeNode> expanded = new HashMap<Integer, TreeNode>();
+            int[] configurationEdge = configurationEdges[c];
+            for (int i = 0; i < configurationEdge.length; i += 2) {
+                int from = configurationEdge[i];
+                int to = configurationEdge[i + 1];
+                TreeNode parent = from < 0 ? configurationNode : expanded.get(from);
+
+                TreeNode node = new TreeNode(parent);
+                node.group = group(to);
+                node.id = id(to);
+                node.version = version(to);
+                node.requestedVersion = requestedVersion(from, to);
+                node.reason = reason(from, to);
+                node.nodeType = "dependency";
+                if (expanded.containsKey(to)) {
+                    node.seenBefore = true;
+                } else {
+                    expanded.put(to, node);
+                }
+                parent.children.add(node);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Return this graph as a GradleNode graph, decoded the same way a loaded
+     * build is.
+     */
+    public GradleNode toGradleNode() {
+        return AcumenPayloadDecoder.decode(toPayload());
+    }
+
+    private static class TreeNode implements GradleTreeNode {
+        private final TreeNode parent;
+        private final List<GradleTreeNode> children = new ArrayList<GradleTreeNode>();
+        private String name;
+        private String group;
+        private String id;
+        private String version;
+        private String reason;
+        private String requestedVersion;
+        private String nodeType;
+        private String projectPath;
+        private String projectDir;
+        private boolean seenBefore;
+
+        TreeNode(TreeNode parent) {
+            this.parent = parent;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public GradleTreeNode getParent() {
+            return parent;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getRequestedVersion() {
+            return requestedVersion;
+        }
+
+        public String getNodeType() {
+            return nodeType;
+        }
+
+        public String getProjectPath() {
+            return projectPath;
+        }
+
+        public String getProjectDir() {
+            return projectDir;
+        }
+
+        public List<GradleTreeNode> getChildren() {
+            return children;
+        }
+
+        public boolean getSeenBefore() {
+            return seenBefore;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.ui;
+
+import com.github.rholder.gradle.dependency.CompactGraphState;
+import com.github.rholder.gradle.dependency.GradleNode;
+import com.github.rholder.gradle.dependency.GraphState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for turning a GradleNode graph into what the dependency tree
+ * shows: flattening configurations, creating the tree model and the nodes a
+ * user sees when expanding it, and sorting nodes by their name. Each one
+ * also runs against the CompactGraph every loaded build is packed into.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TreeBuildingBenchmark {
+
+    @Benchmark
+    public void flattenDependencies(GraphState state, Blackhole blackhole) {
+        for (GradleNode configuration : state.root.dependencies) {
+            blackhole.consume(TreeUtil.flattenDependencies(configuration));
+        }
+    }
+
+    /**
+     * Create a new model and every node shown when each section and the
+     * sections right below it are expanded, which for the "Dependency List"
+     * flattens every configuration.
+     */
+    @Benchmark
+    public int createTreeModel(GraphState state) {
+        DependencyTreeModel model = new DependencyTreeModel(state.root);
+        TreeNode root = (TreeNode) model.getRoot();
+        int count = 0;
+        for (int i = 0; i < root.getChildCount(); i++) {
+            TreeNode section = root.getChildAt(i);
+            for (int j = 0; j < section.getChildCount(); j++) {
+                count += section.getChildAt(j).getChildCount();
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public List<GradleNode> sortDependencies(GraphState state) {
+        List<GradleNode> sorted = new ArrayList<GradleNode>(state.dependencies);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public void flattenCompactDependencies(CompactGraphState state, Blackhole blackhole) {
+        flattenDependencies(state, blackhole);
+    }
+
+    @Benchmark
+    public int createCompactTreeModel(CompactGraphState state) {
+        return createTreeModel(state);
+    }
+
+    @Benchmark
+    public List<GradleNode> sortCompactDependencies(CompactGraphState state) {
+        return sortDependencies(state);
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.cli;
+
+import com.github.rholder.gradle.dependency.ConfigurationFilter;
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.GradleConnectionManager;
+import com.github.rholder.gradle.dependency.GradleNode;
+import com.github.rholder.gradle.dependency.LoadOptions;
+import com.github.rholder.gradle.export.ExportFormat;
+import com.github.rholder.gradle.export.GraphWriter;
+import com.github.rholder.gradle.log.ToolingLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.getCacheDir;
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.loadProjectDependencies;
+
+/**
+ * This is the headless command line entry point, which loads the dependency
+ * graphs of one or more project directories and exports them without ever
+ * touching Swing. Graphs go to stdout unless an output is given, and all
+ * progress and errors go to stderr.
+ */
+public class ExportCommand {
+
+    private static final String USAGE =
+            "usage: java -jar gradle-view-standalone.jar [options] <project dir>...\n" +
+            "\n" +
+            "Export the resolved dependency graph of each project directory.\n" +
+            "\n" +
+            "  -f, --format <format>   json, csv or binary (default: json)\n" +
+            "  -o, --output <path>     write to this file instead of stdout, or one file per\n" +
+            "                          project when it's an existing directory\n" +
+            "  -w, --workers <n>       how many projects to load at the same time (default: 1)\n" +
+            "  -p, --projects <file>   also export every project directory listed in this file,\n" +
+            "                          one per line\n" +
+            "  -c, --configurations <preset>\n" +
+            "                          only resolve these configurations: all, runtime, compile\n" +
+            "                          or no-tooling (default: all)\n" +
+            "      --include-configurations <patterns>\n" +
+            "      --exclude-configurations <patterns>\n" +
+            "      --include-projects <patterns>\n" +
+            "      --exclude-projects <patterns>\n" +
+            "                          only or never resolve configuration names or project\n" +
+            "                          paths matching these comma separated patterns, where *\n" +
+            "                          matches anything, replacing those of the preset\n" +
+            "      --no-cache          always resolve, ignoring and not updating cached graphs\n" +
+            "  -v, --verbose           show the Gradle tooling log of each project\n" +
+            "  -h, --help              show this message\n";
+
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private ExportFormat format = ExportFormat.JSON;
+    private File output;
+    private int workers = 1;
+    private ConfigurationFilter configurationFilter = ConfigurationFilter.ALL;
+
+    // patterns given on the command line, which replace the ones of the preset when set
+    private String includeConfigurations;
+    private String excludeConfigurations;
+    private String includeProjects;
+    private String excludeProjects;
+    private boolean useCache = true;
+    private boolean verbose = false;
+    private final List<String> projectPaths = new ArrayList<String>();
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    // the file each project is written to when the output is a directory, in the order the projects were given
+    private final List<File> outputFiles = new ArrayList<File>();
+
+    public ExportCommand(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String... args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Run an export with the given command line arguments, writing to the
+     * standard streams, see {@link #run(PrintStream, PrintStream, String...)}.
+     *
+     * @param args the command line arguments
+     */
+    public static int run(String... args) {
+        return run(System.out, System.err, args);
+    }
+
+    /**
+     * Run an export with the given command line arguments, returning 0 when
+     * every project was exported, 1 when any of them failed and 2 when the
+     * arguments didn't make sense.
+     *
+     * @param out  where to write the usage and any export written to stdout
+     * @param err  where to write errors and progress
+     * @param args the command line arguments
+     */
+    public static int run(PrintStream out, PrintStream err, String... args) {
+        ExportCommand command = new ExportCommand(out, err);
+        try {
+            if (!command.parse(args)) {
+                out.print(USAGE);
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return 2;
+        }
+        return command.export();
+    }
+
+    /**
+     * Parse the given arguments, returning false if only help was asked for.
+     */
+    boolean parse(String... args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-h".equals(arg) || "--help".equals(arg)) {
+                return false;
+            } else if ("-f".equals(arg) || "--format".equals(arg)) {
+                String name = value(args, ++i, arg);
+                format = ExportFormat.forName(name);
+                if (format == null) {
+                    throw new IllegalArgumentException("Unknown format " + name);
+                }
+            } else if ("-o".equals(arg) || "--output".equals(arg)) {
+                output = new File(value(args, ++i, arg));
+            } else if ("-w".equals(arg) || "--workers".equals(arg)) {
+                String count = value(args, ++i, arg);
+                try {
+                    workers = Integer.parseInt(count);
+                } catch (NumberFormatException e) {
+                    workers = 0;
+                }
+                if (workers < 1) {
+                    throw new IllegalArgumentException("The worker count must be a positive number, not " + count);
+                }
+            } else if ("-p".equals(arg) || "--projects".equals(arg)) {
+                File projectsFile = new File(value(args, ++i, arg));
+                try {
+                    for (String line : FileUtils.readLines(projectsFile, "UTF-8")) {
+                        if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+                            projectPaths.add(line.trim());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Could not read " + projectsFile + ": " + e.getMessage());
+                }
+            } else if ("-c".equals(arg) || "--configurations".equals(arg)) {
+                String id = value(args, ++i, arg);
+                configurationFilter = ConfigurationFilter.findPreset(id);
+                if (configurationFilter == null) {
+                    throw new IllegalArgumentException("Unknown configurations preset " + id);
+                }
+            } else if ("--include-configurations".equals(arg)) {
+                includeConfigurations = value(args, ++i, arg);
+            } else if ("--exclude-configurations".equals(arg)) {
+                excludeConfigurations = value(args, ++i, arg);
+            } else if ("--include-projects".equals(arg)) {
+                includeProjects = value(args, ++i, arg);
+            } else if ("--exclude-projects".equals(arg)) {
+                excludeProjects = value(args, ++i, arg);
+            } else if ("--no-cache".equals(arg)) {
+                useCache = false;
+            } else if ("-v".equals(arg) || "--verbose".equals(arg)) {
+                verbose = true;
+            } else if (arg.startsWith("-") && arg.length() > 1) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            } else {
+                projectPaths.add(arg);
+            }
+        }
+
+        if (includeConfigurations != null || excludeConfigurations != null
+                || includeProjects != null || excludeProjects != null) {
+            ConfigurationFilter preset = configurationFilter;
+            configurationFilter = new ConfigurationFilter("custom", "Custom configurations",
+                    includeConfigurations != null ? includeConfigurations : preset.getIncludeConfigurations(),
+                    excludeConfigurations != null ? excludeConfigurations : preset.getExcludeConfigurations(),
+                    includeProjects != null ? includeProjects : preset.getIncludeProjects(),
+                    excludeProjects != null ? excludeProjects : preset.getExcludeProjects());
+        }
+
+        if (projectPaths.isEmpty()) {
+            throw new IllegalArgumentException("No project directories given");
+        }
+        for (String projectPath : projectPaths) {
+            if (!new File(projectPath).isDirectory()) {
+                throw new IllegalArgumentException("Not a directory: " + projectPath);
+            }
+        }
+
+        if (output != null && output.isDirectory()) {
+            // named up front so the same arguments always write the same files, however the loads finish
+            Set<String> names = new HashSet<String>();
+            for (String projectPath : projectPaths) {
+                outputFiles.add(outputFile(projectPath, names));
+            }
+        }
+        return true;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Load and write every project, returning the exit status.
+     */
+    int export() {
+        boolean splitOutput = !outputFiles.isEmpty();
+        final GradleConnectionManager connectionManager = new GradleConnectionManager(IDLE_TIMEOUT_MILLIS, workers);
+        final DependencyGraphCache graphCache = useCache ? new DependencyGraphCache(new File(getCacheDir(), "graphs")) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                .setNameFormat("gradle-view-export-%d")
+                .setDaemon(true)
+                .build());
+
+        // a loaded graph is held until every one before it is written, so only load as many as there are
+        // workers ahead of the one being written, unless each is written to its own file as soon as it's loaded
+        int window = splitOutput ? projectPaths.size() : workers;
+
+        int failures = 0;
+        GraphWriter writer = null;
+        try {
+            List<Future<GradleNode>> results = new ArrayList<Future<GradleNode>>();
+            for (int i = 0; i < window && i < projectPaths.size(); i++) {
+                results.add(executor.submit(newExportTask(i, connectionManager, graphCache)));
+            }
+
+            if (!splitOutput) {
+                writer = format.newWriter(openOutput());
+            }
+
+            // written in the order they were given, so the output is the same no matter how many workers there are
+            for (int i = 0; i < projectPaths.size(); i++) {
+                String projectPath = projectPaths.get(i);
+                try {
+                    GradleNode root = results.get(i).get();
+                    // the future would otherwise keep the graph around until the end
+                    results.set(i, null);
+                    if (writer != null) {
+                        writer.write(projectPath, root);
+                    }
+                } catch (ExecutionException e) {
+                    failures++;
+                    err.println("Failed to export " + projectPath + ": " + e.getCause());
+                }
+                if (results.size() < projectPaths.size()) {
+                    // either this one was written or it failed, so there's room for the next
+                    results.add(executor.submit(newExportTask(results.size(), connectionManager, graphCache)));
+                }
+            }
+        } catch (IOException e) {
+            failures++;
+            err.println("Failed to write " + (output == null ? "to stdout" : output) + ": " + e);
+        } catch (InterruptedException e) {
+            failures++;
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            connectionManager.shutdown();
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failures++;
+                    err.println("Failed to finish writing " + (output == null ? "to stdout" : output) + ": " + e);
+                }
+            }
+        }
+        return failures == 0 ? 0 : 1;
+    }
+
+    /**
+     * Return a task that loads the project at the given index, writing it to
+     * its own file right away when the output is a directory and returning
+     * it to be written in order otherwise.
+     */
+    private Callable<GradleNode> newExportTask(final int index, final GradleConnectionManager connectionManager,
+                                               final DependencyGraphCache graphCache) {
+        return new Callable<GradleNode>() {
+            public GradleNode call() throws Exception {
+                String projectPath = projectPaths.get(index);
+                GradleNode root = load(projectPath, connectionManager, graphCache);
+                if (!outputFiles.isEmpty()) {
+                    writeFile(outputFiles.get(index), projectPath, root);
+                    return null;
+                }
+                return root;
+            }
+        };
+    }
+
+    private GradleNode load(String projectPath, GradleConnectionManager connectionManager,
+                            DependencyGraphCache graphCache) {
+        long start = System.currentTimeMillis();
+        ToolingLogger toolingLogger = newToolingLogger(new File(projectPath).getName());
+        GradleNode root = loadProjectDependencies(projectPath, toolingLogger, connectionManager, new LoadOptions()
+                .withGraphCache(graphCache)
+                .withFilter(configurationFilter)).get("root");
+        err.println("Loaded " + projectPath + " in " + (System.currentTimeMillis() - start) + "ms");
+        return root;
+    }
+
+    private ToolingLogger newToolingLogger(final String prefix) {
+        return new ToolingLogger() {
+            public void log(String message) {
+                if (verbose) {
+                    err.println("[" + prefix + "] " + message);
+                }
+            }
+        };
+    }
+
+    private OutputStream openOutput() throws IOException {
+        if (output == null) {
+            // the writer is closed when we're done, but stdout should stay open
+            return new CloseShieldOutputStream(out);
+        }
+        return new BufferedOutputStream(new FileOutputStream(output));
+    }
+
+    private void writeFile(File file, String projectPath, GradleNode root) throws IOException {
+        GraphWriter writer = format.newWriter(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            writer.write(projectPath, root);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Return the file in the output directory for the given project, named
+     * after the project directory with a number added if that name was
+     * already used by another project.
+     *
+     * @param projectPath the path to the project
+     * @param names       the names already handed out, which the new one is added to
+     */
+    private File outputFile(String projectPath, Set<String> names) {
+        String baseName = new File(projectPath).getAbsoluteFile().getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        String name = baseName;
+        for (int i = 2; !names.add(name); i++) {
+            name = baseName + "-" + i;
+        }
+        return new File(output, name + "." + format.getExtension());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static com.github.rholder.gradle.dependency.FileKeyUtil.sha1Hex;
+
+/**
+ * This is a utility class that extracts the bundled gradle-acumen jar and
+ * its init script into a content-addressed cache directory exactly once, so
+ * that every refresh of every project points Gradle at the same stable files.
+ */
+public class AcumenInitScript {
+
+    /**
+     * Set this system property to use a locally built gradle-acumen jar instead of the bundled one.
+     */
+    public static final String GRADLE_VIEW_DEBUG_ACUMEN_JAR_KEY = "gradle.view.debug.acumen.jar";
+
+    private static final String ACUMEN_JAR_RESOURCE = "/gradle-acumen-0.4.0.jar";
+    private static final String INIT_SCRIPT_RESOURCE = "/init-acumen.gradle";
+
+    private static final String ACUMEN_JAR_NAME = "gradle-acumen.jar";
+    private static final String INIT_SCRIPT_NAME = "init-acumen.gradle";
+
+    // the init script extracted by this JVM, only ever set once it's fully in place
+    private static File initScript;
+
+    /**
+     * Return the init script that applies the gradle-acumen plugin, extracting
+     * it and the plugin jar under the given cache directory if they aren't
+     * there yet. After the first call this only checks that the script still
+     * exists.
+     *
+     * @param cacheDir the base directory to extract into
+     */
+    public static synchronized File getInitScript(File cacheDir) throws IOException {
+        if (initScript != null && initScript.isFile()) {
+            return initScript;
+        }
+
+        String devGradleAcumen = System.getProperty(GRADLE_VIEW_DEBUG_ACUMEN_JAR_KEY);
+        byte[] template = readFromClasspath(INIT_SCRIPT_RESOURCE);
+        byte[] acumenJar = devGradleAcumen == null ? readFromClasspath(ACUMEN_JAR_RESOURCE) : devGradleAcumen.getBytes("UTF-8");
+
+        File targetDir = new File(new File(cacheDir, "acumen"), sha1Hex(template, acumenJar));
+        File targetScript = new File(targetDir, INIT_SCRIPT_NAME);
+        if (!targetScript.isFile()) {
+            extract(targetDir, template, devGradleAcumen == null ? acumenJar : null, devGradleAcumen);
+        }
+
+        initScript = targetScript;
+        return initScript;
+    }
+
+    /**
+     * Fill a scratch directory next to the target and move it into place in
+     * one step, so concurrent refreshes (or IDE instances) never see a half
+     * written jar.
+     */
+    private static void extract(File targetDir, byte[] template, byte[] acumenJar, String devGradleAcumen) throws IOException {
+        File parent = targetDir.getParentFile();
+        FileUtils.forceMkdir(parent);
+        File scratchDir = Files.createTempDirectory(parent.toPath(), ".extract-").toFile();
+        try {
+            File jarFile;
+            if (acumenJar != null) {
+                FileUtils.writeByteArrayToFile(new File(scratchDir, ACUMEN_JAR_NAME), acumenJar);
+                jarFile = new File(targetDir, ACUMEN_JAR_NAME);
+            } else {
+                jarFile = new File(devGradleAcumen);
+            }
+
+            // replace token with extracted file, replace '\' with '/' to handle Windows paths
+            String processed = new String(template, "UTF-8").replace("#ACUMEN_JAR#", jarFile.getAbsolutePath()).replace("\\", "/");
+            FileUtils.writeStringToFile(new File(scratchDir, INIT_SCRIPT_NAME), processed, "UTF-8");
+
+            try {
+                Files.move(scratchDir.toPath(), targetDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // someone else may have won the race, which is fine as long as the result is there
+                if (!new File(targetDir, INIT_SCRIPT_NAME).isFile()) {
+                    throw e;
+                }
+            }
+        } finally {
+            if (scratchDir.exists()) {
+                FileUtils.deleteQuietly(scratchDir);
+            }
+        }
+    }
+
+    private static byte[] readFromClasspath(String classpath) throws IOException {
+        InputStream input = AcumenInitScript.class.getResourceAsStream(classpath);
+        if (input == null) {
+            throw new IOException("Could not find " + classpath + " on the classpath");
+        }
+        try {
+            return IOUtils.toByteArray(input);
+        } finally {
+            input.close();
+        }
+    }
+}
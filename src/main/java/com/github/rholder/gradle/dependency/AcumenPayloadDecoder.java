@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.github.rholder.gradle.acumen.api.AcumenPayloadModel;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Build a GradleNode graph straight from the byte payload of an
+ * AcumenPayloadModel, without materializing any intermediate model objects.
+ * See AcumenPayloadModel for a description of the format.
+ */
+public class AcumenPayloadDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NODE_FIELDS = 4;
+    private static final int EDGE_FIELDS = 4;
+
+    private final byte[] payload;
+    private int position;
+
+    private String[] strings;
+    private int[] nodes;
+    private int[] edges;
+
+    private AcumenPayloadDecoder(byte[] payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Return the root project node of the graph held by the given payload.
+     *
+     * @param payload the payload of an AcumenPayloadModel
+     */
+    public static GradleNode decode(byte[] payload) {
+        return new AcumenPayloadDecoder(payload).decode();
+    }
+
+    private GradleNode decode() {
+        if (readInt() != AcumenPayloadModel.MAGIC || readInt() != AcumenPayloadModel.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unrecognized gradle-acumen payload format");
+        }
+
+        strings = new String[readVarInt()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readVarInt();
+            strings[i] = new String(payload, position, length, UTF_8);
+            position += length;
+        }
+
+        // string references stay shifted by one here, string() takes care of that
+        nodes = new int[readVarInt() * NODE_FIELDS];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = readVarInt();
+        }
+
+        edges = new int[readVarInt() * EDGE_FIELDS];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = readVarInt();
+        }
+
+        return readProject();
+    }
+
+    private GradleNode readProject() {
+        GradleNode projectNode = new GradleNode(readString());
+        projectNode.group = readString();
+        projectNode.nodeType = "project";
+        projectNode.projectPath = readString();
+        projectNode.projectDir = readString();
+
+        int childCount = readVarInt();
+        for (int i = 0; i < childCount; i++) {
+            projectNode.dependencies.add(readProject());
+        }
+
+        int configurationCount = readVarInt();
+        for (int i = 0; i < configurationCount; i++) {
+            GradleNode configurationNode = new GradleNode(readString());
+            configurationNode.nodeType = "configuration";
+            projectNode.dependencies.add(configurationNode);
+            readConfigurationEdges(configurationNode);
+        }
+
+        return projectNode;
+    }
+
+    private void readConfigurationEdges(GradleNode configurationNode) {
+        // edges come in depth first order, so each one hangs off the first occurrence of its from node
+        Map<Integer, GradleNode> expanded = new HashMap<Integer, GradleNode>();
+        int edgeCount = readVarInt();
+        int edge = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            int delta = readVarInt();
+            edge += (delta >>> 1) ^ -(delta & 1);
+
+            int e = edge * EDGE_FIELDS;
+            int from = edges[e] - 1;
+            int to = edges[e + 1];
+            GradleNode parent = from < 0 ? configurationNode : expanded.get(from);
+
+            int n = to * NODE_FIELDS;
+            GradleNode gradleNode;
+            String name = string(nodes[n]);
+            if (name == null) {
+                String version = string(nodes[n + 3]);
+                String requestedVersion = string(edges[e + 2]);
+                if (requestedVersion == null) {
+                    // there is no requested version, only the final version
+                    gradleNode = new GradleNode(parent, string(nodes[n + 1]), string(nodes[n + 2]), version);
+                } else {
+                    // an explicitly requested version exists
+                    gradleNode = new GradleNode(parent, string(nodes[n + 1]), string(nodes[n + 2]), requestedVersion);
+                    if (!version.equals(requestedVersion)) {
+                        // it's been overridden by the final version
+                        gradleNode.replacedByVersion = version;
+                    }
+                }
+                gradleNode.reason = string(edges[e + 3]);
+                gradleNode.nodeType = "dependency";
+
+                if (expanded.containsKey(to)) {
+                    gradleNode.omitted = true;
+                } else {
+                    expanded.put(to, gradleNode);
+                }
+            } else {
+                gradleNode = new GradleNode(name);
+            }
+            parent.dependencies.add(gradleNode);
+        }
+    }
+
+    private String string(int reference) {
+        return reference == 0 ? null : strings[reference - 1];
+    }
+
+    private String readString() {
+        return string(readVarInt());
+    }
+
+    private int readInt() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (payload[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = payload[position++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length integer at " + position);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Instances of this class collect changes to the build files under a project
+ * directory and hand them on in a single batch once no more changes have come
+ * in for a short moment, so that saving several build files at once only
+ * results in one refresh. Changes are fed in by whatever watches the file
+ * system, either the IDE or a {@link NioBuildFileWatcher}.
+ */
+public class BuildFileWatcher {
+
+    private static final int DEFAULT_QUIET_MILLIS = 500;
+
+    // the project directory as it was given and with every symbolic link resolved, changes may come in under either
+    private final Path projectDir;
+    private final Path givenProjectDir;
+    private final BuildFileListener listener;
+    private final Timer quietTimer;
+
+    // relative paths of the build files changed since the last batch
+    private final Set<String> pending = new TreeSet<String>();
+
+    /**
+     * Implementations of this interface are told which build files changed.
+     */
+    public interface BuildFileListener {
+
+        /**
+         * Handle a batch of changes, called on the event dispatch thread.
+         *
+         * @param changedFiles the changed build files, relative to the project path
+         */
+        void buildFilesChanged(Set<String> changedFiles);
+    }
+
+    public BuildFileWatcher(String projectPath, BuildFileListener listener) {
+        this(projectPath, listener, DEFAULT_QUIET_MILLIS);
+    }
+
+    /**
+     * Construct a new watcher for the build files under the given project
+     * directory.
+     *
+     * @param projectPath the path to the target project
+     * @param listener    where to send each batch of changes
+     * @param quietMillis how long to wait for more changes before sending a batch
+     */
+    public BuildFileWatcher(String projectPath, BuildFileListener listener, int quietMillis) {
+        this.projectDir = canonicalFile(new File(projectPath)).toPath();
+        this.givenProjectDir = new File(projectPath).getAbsoluteFile().toPath().normalize();
+        this.listener = listener;
+        this.quietTimer = new Timer(quietMillis, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                flush();
+            }
+        });
+        this.quietTimer.setRepeats(false);
+    }
+
+    /**
+     * Return the canonical path of the watched project directory.
+     */
+    public String getProjectPath() {
+        return projectDir.toString();
+    }
+
+    /**
+     * Record a change to the file at the given path, which is ignored unless
+     * it's a build file somewhere under the project directory.
+     *
+     * @param path the absolute path of the changed file
+     */
+    public void fileChanged(String path) {
+        String relativePath = relativeBuildFilePath(path);
+        if (relativePath == null) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(relativePath);
+        }
+        // every new change pushes the batch back a little further
+        quietTimer.restart();
+    }
+
+    /**
+     * Drop any pending changes and stop sending batches.
+     */
+    public void close() {
+        quietTimer.stop();
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    private void flush() {
+        Set<String> changedFiles;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            changedFiles = new TreeSet<String>(pending);
+            pending.clear();
+        }
+        listener.buildFilesChanged(changedFiles);
+    }
+
+    /**
+     * Return the path of the given file relative to the project directory,
+     * using '/' as a separator just like a BuildFingerprint does, or null if
+     * it isn't a build file under the project directory. The path may be
+     * under the canonical project directory, the one that was given, or a
+     * symbolic link to either of them.
+     */
+    private String relativeBuildFilePath(String path) {
+        Path file = new File(path).getAbsoluteFile().toPath().normalize();
+        Path baseDir = file.startsWith(projectDir) ? projectDir : givenProjectDir;
+        if (!file.startsWith(baseDir) && mayBeBuildFile(file)) {
+            // reached through some other symbolic link, only worth resolving when it could be a build file at all
+            file = canonicalFile(file.toFile()).toPath();
+            baseDir = projectDir;
+        }
+        if (!file.startsWith(baseDir) || file.equals(baseDir)) {
+            return null;
+        }
+
+        Path relative = baseDir.relativize(file);
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < relative.getNameCount(); i++) {
+            if (b.length() > 0) {
+                b.append('/');
+            }
+            b.append(relative.getName(i).toString());
+
+            boolean last = i == relative.getNameCount() - 1;
+            if (last ? !BuildFingerprint.isBuildFile(b.toString()) : BuildFingerprint.isSkippedDirectory(b.toString())) {
+                return null;
+            }
+        }
+        return b.toString();
+    }
+
+    private static boolean mayBeBuildFile(Path file) {
+        Path fileName = file.getFileName();
+        return fileName != null && (BuildFingerprint.isBuildFileName(fileName.toString()) || file.toString().contains("buildSrc"));
+    }
+
+    private static File canonicalFile(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+}
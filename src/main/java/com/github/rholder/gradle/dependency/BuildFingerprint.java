@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A BuildFingerprint captures the size and modification time of every file
+ * under a project directory that can change the outcome of dependency
+ * resolution, such as build scripts, scripts applied from them, settings
+ * scripts, gradle.properties, version catalogs and everything in buildSrc.
+ * Two equal fingerprints mean the build inputs are the same, although
+ * SNAPSHOT and dynamic versions can still resolve differently.
+ */
+public class BuildFingerprint {
+
+    // besides these, every Gradle script and version catalog counts, whatever it's called
+    private static final Set<String> BUILD_FILE_NAMES = new HashSet<String>(Arrays.asList(
+            "gradle.properties",
+            "gradle-wrapper.properties"
+    ));
+
+    // everything in here is compiled into the build, sources included
+    private static final String BUILD_SRC = "buildSrc";
+
+    // build output and source trees never hold build files worth tracking, hidden directories are skipped too
+    private static final Set<String> SKIPPED_DIRECTORY_NAMES = new HashSet<String>(Arrays.asList(
+            "build",
+            "out",
+            "src",
+            "node_modules"
+    ));
+
+    // relative path -> size and last modified time, sorted so equal inputs are always in the same order
+    private final Map<String, Stamp> stamps;
+
+    public BuildFingerprint(Map<String, Stamp> stamps) {
+        this.stamps = Collections.unmodifiableMap(new TreeMap<String, Stamp>(stamps));
+    }
+
+    /**
+     * Walk the given project directory and fingerprint every build input
+     * found there.
+     *
+     * @param projectPath the path to the target project
+     */
+    public static BuildFingerprint compute(String projectPath) {
+        Map<String, Stamp> stamps = new TreeMap<String, Stamp>();
+        File projectDir = new File(projectPath);
+        collect(projectDir, "", stamps);
+        return new BuildFingerprint(stamps);
+    }
+
+    /**
+     * Return true if the given file name is one that can change the resolved
+     * dependency graph wherever it is, such as any Gradle script.
+     *
+     * @param fileName the name of the file, without any directories
+     */
+    public static boolean isBuildFileName(String fileName) {
+        return BUILD_FILE_NAMES.contains(fileName)
+                || fileName.endsWith(".gradle")
+                || fileName.endsWith(".gradle.kts")
+                || fileName.endsWith(".versions.toml");
+    }
+
+    /**
+     * Return true if the file at the given path can change the resolved
+     * dependency graph, which is any file in buildSrc along with every file
+     * whose name passes {@link #isBuildFileName(String)}.
+     *
+     * @param relativePath the path of the file relative to the project directory, using '/' as a separator
+     */
+    public static boolean isBuildFile(String relativePath) {
+        return isInBuildSrc(relativePath) || isBuildFileName(fileName(relativePath));
+    }
+
+    /**
+     * Return true if the directory at the given path never holds build files
+     * worth tracking, such as build output, sources outside of buildSrc or a
+     * hidden directory.
+     *
+     * @param relativePath the path of the directory relative to the project directory, using '/' as a separator
+     */
+    public static boolean isSkippedDirectory(String relativePath) {
+        String name = fileName(relativePath);
+        if (name.startsWith(".")) {
+            return true;
+        }
+        if (isInBuildSrc(relativePath)) {
+            // only what buildSrc builds itself is left out
+            return relativePath.equals(BUILD_SRC + "/build") || relativePath.equals(BUILD_SRC + "/out");
+        }
+        return SKIPPED_DIRECTORY_NAMES.contains(name);
+    }
+
+    private static boolean isInBuildSrc(String relativePath) {
+        return relativePath.equals(BUILD_SRC) || relativePath.startsWith(BUILD_SRC + "/");
+    }
+
+    private static String fileName(String relativePath) {
+        return relativePath.substring(relativePath.lastIndexOf('/') + 1);
+    }
+
+    private static void collect(File dir, String relativePath, Map<String, Stamp> stamps) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            String childPath = relativePath.isEmpty() ? name : relativePath + "/" + name;
+            if (child.isDirectory()) {
+                if (!isSkippedDirectory(childPath)) {
+                    collect(child, childPath, stamps);
+                }
+            } else if (isBuildFile(childPath)) {
+                stamps.put(childPath, new Stamp(child.length(), child.lastModified()));
+            }
+        }
+    }
+
+    /**
+     * Return the size and modification time of each build input, keyed by its
+     * path relative to the project directory using '/' as a separator.
+     */
+    public Map<String, Stamp> getStamps() {
+        return stamps;
+    }
+
+    /**
+     * Return the relative path of every build input that was added, removed or
+     * modified between the given earlier fingerprint and this one.
+     *
+     * @param previous the fingerprint to compare against
+     */
+    public Set<String> changedSince(BuildFingerprint previous) {
+        Set<String> changed = new TreeSet<String>();
+        for (Map.Entry<String, Stamp> stamp : stamps.entrySet()) {
+            if (!stamp.getValue().equals(previous.stamps.get(stamp.getKey()))) {
+                changed.add(stamp.getKey());
+            }
+        }
+        for (String path : previous.stamps.keySet()) {
+            if (!stamps.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof BuildFingerprint && stamps.equals(((BuildFingerprint) o).stamps));
+    }
+
+    @Override
+    public int hashCode() {
+        return stamps.hashCode();
+    }
+
+    /**
+     * The size and last modified time of a single build input.
+     */
+    public static class Stamp {
+        public final long length;
+        public final long lastModified;
+
+        public Stamp(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stamp)) {
+                return false;
+            }
+            Stamp that = (Stamp) o;
+            return length == that.length && lastModified == that.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (length ^ (length >>> 32)) + (int) (lastModified ^ (lastModified >>> 32));
+        }
+    }
+}
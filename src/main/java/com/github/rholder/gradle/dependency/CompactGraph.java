@@ -0,0 +1,416 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A CompactGraph holds a whole GradleNode graph in a handful of primitive
+ * arrays instead of one object per node, for keeping very large builds in
+ * memory for as long as they're shown. Every distinct combination of a node's
+ * strings is pooled as a single row, and nodes are laid out breadth first so
+ * that the children of each one are a contiguous range of the nodes after it,
+ * which leaves about 8 bytes per node.
+ * <p/>
+ * Nodes are read through lightweight GradleNode views that are created as
+ * they're asked for and can be thrown away right after, so anything walking
+ * GradleNode graphs works on a CompactGraph as is. Each view softly holds on
+ * to the views of its children once they've been asked for, so walking the
+ * same part of the graph again doesn't allocate them again for as long as
+ * there's memory to spare. Views of the same node are equal to each other but
+ * aren't always the same instance. Views are read only: the
+ * lists of dependencies throw when they're changed, and the public fields
+ * inherited from GradleNode can be assigned but only change that one view,
+ * never the graph or any other view of the same node.
+ */
+public class CompactGraph {
+
+    private static final int NAME = 0;
+    private static final int GROUP = 1;
+    private static final int ID = 2;
+    private static final int VERSION = 3;
+    private static final int REPLACED_BY_VERSION = 4;
+    private static final int REASON = 5;
+    private static final int NODE_TYPE = 6;
+    private static final int PROJECT_PATH = 7;
+    private static final int PROJECT_DIR = 8;
+    private static final int ROW_FIELDS = 9;
+
+    // every distinct string, references are shifted by one so that 0 stands for null
+    private final String[] strings;
+
+    // ROW_FIELDS string references for each distinct row
+    private final int[] rows;
+
+    // node -> row and the first of its children, with one more offset at the end so every node's children end there
+    private final int[] nodeRows;
+    private final int[] childOffsets;
+    private final BitSet omitted;
+
+    // nodes like configurations are usually built without a parent, which their views keep
+    private final BitSet detached;
+
+    // the display names of each row, shared by every view of it once they've been built
+    private final String[] names;
+    private final String[] fullNames;
+
+    private CompactGraph(String[] strings, int[] rows, int[] nodeRows, int[] childOffsets,
+                         BitSet omitted, BitSet detached) {
+        this.strings = strings;
+        this.rows = rows;
+        this.nodeRows = nodeRows;
+        this.childOffsets = childOffsets;
+        this.omitted = omitted;
+        this.detached = detached;
+        this.names = new String[rows.length / ROW_FIELDS];
+        this.fullNames = new String[names.length];
+    }
+
+    /**
+     * Pack the graph under the given root into a new CompactGraph, or return
+     * the one it's already a view of when it's the root of one.
+     *
+     * @param root the root of the graph
+     */
+    public static CompactGraph of(GradleNode root) {
+        if (root instanceof View && ((View) root).index == 0) {
+            return ((View) root).graph;
+        }
+
+        Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+        Map<Row, Integer> rowIndex = new HashMap<Row, Integer>();
+        IntList rowList = new IntList();
+        IntList nodeRows = new IntList();
+        IntList childOffsets = new IntList();
+        BitSet omitted = new BitSet();
+        BitSet detached = new BitSet();
+
+        // breadth first, so each node's children are numbered right after the ones of the node before it
+        Deque<GradleNode> queue = new ArrayDeque<GradleNode>();
+        queue.add(root);
+        int next = 1;
+        Row probe = new Row(new int[ROW_FIELDS]);
+        for (int n = 0; !queue.isEmpty(); n++) {
+            GradleNode node = queue.remove();
+            probe.fields[NAME] = pool(stringIndex, node.name);
+            probe.fields[GROUP] = pool(stringIndex, node.group);
+            probe.fields[ID] = pool(stringIndex, node.id);
+            probe.fields[VERSION] = pool(stringIndex, node.version);
+            probe.fields[REPLACED_BY_VERSION] = pool(stringIndex, node.replacedByVersion);
+            probe.fields[REASON] = pool(stringIndex, node.reason);
+            probe.fields[NODE_TYPE] = pool(stringIndex, node.nodeType);
+            probe.fields[PROJECT_PATH] = pool(stringIndex, node.projectPath);
+            probe.fields[PROJECT_DIR] = pool(stringIndex, node.projectDir);
+            Integer row = rowIndex.get(probe);
+            if (row == null) {
+                row = rowIndex.size();
+                rowIndex.put(new Row(probe.fields.clone()), row);
+                rowList.addAll(probe.fields);
+            }
+            nodeRows.add(row);
+            if (node.omitted) {
+                omitted.set(n);
+            }
+            if (node.parent == null) {
+                detached.set(n);
+            }
+
+            childOffsets.add(next);
+            for (GradleNode d : node.dependencies) {
+                queue.add(d);
+                next++;
+            }
+        }
+        childOffsets.add(next);
+
+        String[] strings = new String[stringIndex.size()];
+        for (Map.Entry<String, Integer> s : stringIndex.entrySet()) {
+            strings[s.getValue() - 1] = s.getKey();
+        }
+        return new CompactGraph(strings, rowList.toArray(), nodeRows.toArray(), childOffsets.toArray(),
+                omitted, detached);
+    }
+
+    private static int pool(Map<String, Integer> stringIndex, String s) {
+        if (s == null) {
+            return 0;
+        }
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = stringIndex.size() + 1;
+            stringIndex.put(s, index);
+        }
+        return index;
+    }
+
+    /**
+     * Return the graph the given node is a view of, or null if it isn't part
+     * of a CompactGraph.
+     *
+     * @param node the node to check
+     */
+    public static CompactGraph graphOf(GradleNode node) {
+        return node instanceof View ? ((View) node).graph : null;
+    }
+
+    /**
+     * Return the index of the given view in its graph.
+     *
+     * @param node a view over this graph
+     */
+    public int indexOf(GradleNode node) {
+        if (!(node instanceof View) || ((View) node).graph != this) {
+            throw new IllegalArgumentException(node + " is not a node of this graph");
+        }
+        return ((View) node).index;
+    }
+
+    /**
+     * Return how many nodes there are.
+     */
+    public int size() {
+        return nodeRows.length;
+    }
+
+    /**
+     * Return a view of the root node.
+     */
+    public GradleNode getRoot() {
+        return new View(this, 0, null);
+    }
+
+    /**
+     * Return a view of the node at the given index, along with views of every
+     * node above it that it has as a parent. When the view of the parent is
+     * already at hand, {@link #getNode(int, GradleNode)} reuses it instead.
+     *
+     * @param index the index of a node
+     */
+    public GradleNode getNode(int index) {
+        // find the topmost node the chain of parents reaches, then build the views from there down
+        IntList chain = new IntList();
+        int top = index;
+        while (top != 0 && !detached.get(top)) {
+            chain.add(top);
+            top = getParent(top);
+        }
+        GradleNode node = new View(this, top, null);
+        for (int i = chain.size - 1; i >= 0; i--) {
+            node = new View(this, chain.values[i], node);
+        }
+        return node;
+    }
+
+    /**
+     * Return a view of the node at the given index whose parent is the given
+     * view, which must be a view of the node's parent in this graph, or null
+     * for the root.
+     *
+     * @param index  the index of a node
+     * @param parent a view of the node's parent
+     */
+    public GradleNode getNode(int index, GradleNode parent) {
+        int parentIndex = parent == null ? -1 : indexOf(parent);
+        if (parentIndex != getParent(index)) {
+            throw new IllegalArgumentException(parent + " is not the parent of node " + index);
+        }
+        return new View(this, index, parent);
+    }
+
+    /**
+     * Return the index of the parent of the given node, or -1 for the root.
+     *
+     * @param index the index of a node
+     */
+    public int getParent(int index) {
+        if (index == 0) {
+            return -1;
+        }
+        // the parent is the last node whose children start at or before this one, nodes without children share offsets
+        int low = 0;
+        int high = nodeRows.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (childOffsets[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private String string(int row, int field) {
+        int reference = rows[row * ROW_FIELDS + field];
+        return reference == 0 ? null : strings[reference - 1];
+    }
+
+    /**
+     * A read-only GradleNode showing a single node of a CompactGraph.
+     */
+    private static class View extends GradleNode {
+        private final CompactGraph graph;
+        private final int index;
+        private final int row;
+
+        View(CompactGraph graph, int index, GradleNode parent) {
+            super(graph.detached.get(index) ? null : parent, new Children(graph, index));
+            ((Children) dependencies).owner = this;
+            this.graph = graph;
+            this.index = index;
+            this.row = graph.nodeRows[index];
+            this.name = graph.string(row, NAME);
+            this.group = graph.string(row, GROUP);
+            this.id = graph.string(row, ID);
+            this.version = graph.string(row, VERSION);
+            this.replacedByVersion = graph.string(row, REPLACED_BY_VERSION);
+            this.reason = graph.string(row, REASON);
+            this.nodeType = graph.string(row, NODE_TYPE);
+            this.projectPath = graph.string(row, PROJECT_PATH);
+            this.projectDir = graph.string(row, PROJECT_DIR);
+            this.omitted = graph.omitted.get(index);
+        }
+
+        @Override
+        public String getName() {
+            String n = graph.names[row];
+            if (n == null) {
+                n = super.getName();
+                graph.names[row] = n;
+            }
+            return n;
+        }
+
+        @Override
+        public String getFullName() {
+            String n = graph.fullNames[row];
+            if (n == null) {
+                n = super.getFullName();
+                graph.fullNames[row] = n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof View && ((View) o).graph == graph && ((View) o).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(graph) + index;
+        }
+    }
+
+    /**
+     * The children of a view, which are created the first time they're asked
+     * for and reused until the garbage collector needs the memory back.
+     */
+    private static class Children extends AbstractList<GradleNode> implements RandomAccess {
+        private final CompactGraph graph;
+        private final int first;
+        private final int size;
+        private View owner;
+
+        // views are read from whichever thread is walking the graph, the atomic array publishes them safely
+        private volatile SoftReference<AtomicReferenceArray<View>> views;
+
+        Children(CompactGraph graph, int index) {
+            this.graph = graph;
+            this.first = graph.childOffsets[index];
+            this.size = graph.childOffsets[index + 1] - first;
+        }
+
+        @Override
+        public GradleNode get(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            }
+            SoftReference<AtomicReferenceArray<View>> reference = views;
+            AtomicReferenceArray<View> cached = reference == null ? null : reference.get();
+            if (cached == null) {
+                cached = new AtomicReferenceArray<View>(size);
+                views = new SoftReference<AtomicReferenceArray<View>>(cached);
+            }
+
+            // two threads racing here both create a view, which is harmless since they're equal
+            View view = cached.get(i);
+            if (view == null) {
+                view = new View(graph, first + i, owner);
+                cached.set(i, view);
+            }
+            return view;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The string references of a row, compared by value.
+     */
+    private static class Row {
+        private final int[] fields;
+
+        Row(int[] fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row && Arrays.equals(fields, ((Row) o).fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(fields);
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(int[] more) {
+            for (int value : more) {
+                add(value);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
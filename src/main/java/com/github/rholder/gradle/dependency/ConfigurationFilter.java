@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ConfigurationFilter decides which configurations and projects gradle-acumen
+ * resolves, using comma separated name patterns where * matches anything.
+ * Configurations and projects that don't pass are never resolved at all, which
+ * saves a full dependency resolution for each one in large builds. Patterns
+ * left empty don't filter anything.
+ */
+public class ConfigurationFilter {
+
+    /**
+     * Resolve every configuration of every project.
+     */
+    public static final ConfigurationFilter ALL = new ConfigurationFilter("all", "All configurations",
+            "", "", "", "");
+
+    /**
+     * Resolve only the runtime classpaths, including those of variants and
+     * source sets such as testRuntimeClasspath.
+     */
+    public static final ConfigurationFilter RUNTIME_ONLY = new ConfigurationFilter("runtime", "Runtime only",
+            "runtimeClasspath,*RuntimeClasspath", "", "", "");
+
+    /**
+     * Resolve only the compile classpaths, including those of variants and
+     * source sets such as testCompileClasspath.
+     */
+    public static final ConfigurationFilter COMPILE_ONLY = new ConfigurationFilter("compile", "Compile only",
+            "compileClasspath,*CompileClasspath", "", "", "");
+
+    /**
+     * Resolve everything except the configurations of annotation processors,
+     * test fixtures and code quality tools.
+     */
+    public static final ConfigurationFilter WITHOUT_TOOLING = new ConfigurationFilter("no-tooling", "Without build tooling",
+            "", "annotationProcessor,*AnnotationProcessor,kapt*,*Kapt*,testFixtures*,detekt*,checkstyle,pmd,spotbugs*,jacoco*",
+            "", "");
+
+    private static final List<ConfigurationFilter> PRESETS = Collections.unmodifiableList(Arrays.asList(
+            ALL, RUNTIME_ONLY, COMPILE_ONLY, WITHOUT_TOOLING));
+
+    private final String id;
+    private final String title;
+    private final String includeConfigurations;
+    private final String excludeConfigurations;
+    private final String includeProjects;
+    private final String excludeProjects;
+
+    /**
+     * Construct a new filter from the given patterns.
+     *
+     * @param id                    a short name for the filter, such as the one given on the command line
+     * @param title                 what to call the filter when it's shown
+     * @param includeConfigurations only resolve configurations matching one of these patterns
+     * @param excludeConfigurations never resolve configurations matching one of these patterns
+     * @param includeProjects       only resolve projects whose Gradle path matches one of these patterns
+     * @param excludeProjects       never resolve projects whose Gradle path matches one of these patterns
+     */
+    public ConfigurationFilter(String id, String title,
+                               String includeConfigurations, String excludeConfigurations,
+                               String includeProjects, String excludeProjects) {
+        this.id = id;
+        this.title = title;
+        this.includeConfigurations = includeConfigurations;
+        this.excludeConfigurations = excludeConfigurations;
+        this.includeProjects = includeProjects;
+        this.excludeProjects = excludeProjects;
+    }
+
+    /**
+     * Return the filters offered to choose from, starting with {@link #ALL}.
+     */
+    public static List<ConfigurationFilter> getPresets() {
+        return PRESETS;
+    }
+
+    /**
+     * Return the preset with the given id, or null if there isn't one.
+     *
+     * @param id the id of the preset, such as runtime
+     */
+    public static ConfigurationFilter findPreset(String id) {
+        for (ConfigurationFilter preset : PRESETS) {
+            if (preset.id.equals(id)) {
+                return preset;
+            }
+        }
+        return null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getIncludeConfigurations() {
+        return includeConfigurations;
+    }
+
+    public String getExcludeConfigurations() {
+        return excludeConfigurations;
+    }
+
+    public String getIncludeProjects() {
+        return includeProjects;
+    }
+
+    public String getExcludeProjects() {
+        return excludeProjects;
+    }
+
+    /**
+     * Return true if this filter doesn't leave out any configuration or
+     * project.
+     */
+    public boolean isEverything() {
+        return toArguments().isEmpty();
+    }
+
+    /**
+     * Return the project properties that hand this filter to gradle-acumen,
+     * one command line argument each.
+     */
+    public List<String> toArguments() {
+        List<String> arguments = new ArrayList<String>();
+        addArgument(arguments, "acumen.configurations.include", includeConfigurations);
+        addArgument(arguments, "acumen.configurations.exclude", excludeConfigurations);
+        addArgument(arguments, "acumen.projects.include", includeProjects);
+        addArgument(arguments, "acumen.projects.exclude", excludeProjects);
+        return arguments;
+    }
+
+    private static void addArgument(List<String> arguments, String property, String patterns) {
+        if (patterns != null && !patterns.trim().isEmpty()) {
+            arguments.add("-P" + property + "=" + patterns);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // filters that resolve the same things are the same, whatever they're called
+        return this == o || (o instanceof ConfigurationFilter && toArguments().equals(((ConfigurationFilter) o).toArguments()));
+    }
+
+    @Override
+    public int hashCode() {
+        return toArguments().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
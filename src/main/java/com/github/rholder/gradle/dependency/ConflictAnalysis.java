@@ -0,0 +1,351 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ConflictAnalysis lists every module that more than one version was
+ * requested for anywhere in a GradleNode graph, along with the version Gradle
+ * picked, why it picked it and who asked for which version. It's computed in
+ * two passes over every edge of the graph, where the second one only keeps
+ * track of the requesters of modules that turned out to be conflicted.
+ */
+public class ConflictAnalysis {
+
+    private final List<Conflict> conflicts;
+
+    private ConflictAnalysis(List<Conflict> conflicts) {
+        this.conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * Find the version conflicts in the graph under the given root.
+     *
+     * @param root the root of the graph
+     */
+    public static ConflictAnalysis analyze(GradleNode root) {
+        // first pass, find which modules had more than one version requested, keyed by group and then id
+        final Map<String, Map<String, Conflict>> modules = new HashMap<String, Map<String, Conflict>>();
+        walk(root, new EdgeVisitor() {
+            public void visit(String configuration, GradleNode node) {
+                Map<String, Conflict> ids = modules.get(node.group);
+                if (ids == null) {
+                    ids = new HashMap<String, Conflict>();
+                    modules.put(node.group, ids);
+                }
+                Conflict conflict = ids.get(node.id);
+                if (conflict == null) {
+                    conflict = new Conflict(node.group, node.id);
+                    ids.put(node.id, conflict);
+                }
+                conflict.request(node);
+            }
+        });
+
+        final List<Conflict> conflicts = new ArrayList<Conflict>();
+        for (Map<String, Conflict> ids : modules.values()) {
+            for (Iterator<Conflict> i = ids.values().iterator(); i.hasNext(); ) {
+                Conflict conflict = i.next();
+                if (conflict.requestedVersions.size() > 1) {
+                    conflicts.add(conflict);
+                } else {
+                    i.remove();
+                }
+            }
+        }
+
+        // second pass, count who requested each version of the conflicted ones
+        walk(root, new EdgeVisitor() {
+            // siblings are visited one after another, so their parent's name is only built once
+            private GradleNode lastParent;
+            private String lastParentName;
+
+            public void visit(String configuration, GradleNode node) {
+                Map<String, Conflict> ids = modules.get(node.group);
+                Conflict conflict = ids == null ? null : ids.get(node.id);
+                if (conflict == null) {
+                    return;
+                }
+
+                GradleNode parent = node.parent;
+                if (parent == null || parent.name != null) {
+                    conflict.requestedBy(configuration, node.version);
+                } else {
+                    if (parent != lastParent) {
+                        lastParent = parent;
+                        lastParentName = parent.getName();
+                    }
+                    conflict.requestedBy(lastParentName, node.version);
+                }
+            }
+        });
+
+        for (Conflict conflict : conflicts) {
+            conflict.freeze();
+        }
+        Collections.sort(conflicts, new Comparator<Conflict>() {
+            public int compare(Conflict a, Conflict b) {
+                int c = a.group.compareTo(b.group);
+                return c != 0 ? c : a.id.compareTo(b.id);
+            }
+        });
+        return new ConflictAnalysis(conflicts);
+    }
+
+    /**
+     * Return every conflicted module, sorted by group and id.
+     */
+    public List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    private interface EdgeVisitor {
+        void visit(String configuration, GradleNode node);
+    }
+
+    /**
+     * Visit every resolved dependency edge along with the project path and
+     * name of the configuration it was resolved in.
+     */
+    private static void walk(GradleNode root, EdgeVisitor visitor) {
+        Deque<GradleNode> projects = new ArrayDeque<GradleNode>();
+        Deque<GradleNode> stack = new ArrayDeque<GradleNode>();
+        projects.push(root);
+        while (!projects.isEmpty()) {
+            GradleNode project = projects.pop();
+            String projectPath = project.projectPath == null ? project.getName() : project.projectPath;
+            for (GradleNode child : project.dependencies) {
+                if ("project".equals(child.getNodeType())) {
+                    projects.push(child);
+                    continue;
+                }
+
+                String configuration = (":".equals(projectPath) ? "" : projectPath) + ":" + child.getName();
+                for (GradleNode d : child.dependencies) {
+                    stack.push(d);
+                }
+                while (!stack.isEmpty()) {
+                    GradleNode node = stack.pop();
+                    // unresolved dependencies only have a description, there's no version to compare
+                    if (node.name == null) {
+                        visitor.visit(configuration, node);
+                    }
+                    for (GradleNode d : node.dependencies) {
+                        stack.push(d);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A module that more than one version was requested for.
+     */
+    public static class Conflict {
+        private final String group;
+        private final String id;
+
+        // requested version -> how many edges asked for it
+        private final Map<String, int[]> requestedVersions = new LinkedHashMap<String, int[]>(4);
+        private final Set<String> winners = new HashSet<String>(4);
+        private String reason;
+        private int requestCount;
+
+        // requester -> requested version -> how many times, only filled in for conflicted modules
+        private Map<String, Map<String, Requester>> requesterMap = new HashMap<String, Map<String, Requester>>();
+        private int requesterCount;
+        private Requester[] requesters;
+        private String[] versions;
+        private String[] winningVersions;
+
+        private Conflict(String group, String id) {
+            this.group = group;
+            this.id = id;
+        }
+
+        private void request(GradleNode node) {
+            int[] count = requestedVersions.get(node.version);
+            if (count == null) {
+                requestedVersions.put(node.version, new int[]{1});
+            } else {
+                count[0]++;
+            }
+            winners.add(node.getFinalVersion());
+            // the reason of a replaced edge explains the conflict resolution, so it wins over any other
+            if (reason == null || (node.isReplaced() && node.reason != null)) {
+                reason = node.reason;
+            }
+            requestCount++;
+        }
+
+        private void requestedBy(String requester, String version) {
+            Map<String, Requester> versions = requesterMap.get(requester);
+            if (versions == null) {
+                versions = new HashMap<String, Requester>(4);
+                requesterMap.put(requester, versions);
+            }
+            Requester r = versions.get(version);
+            if (r == null) {
+                r = new Requester(requester, version);
+                versions.put(version, r);
+                requesterCount++;
+            }
+            r.count++;
+        }
+
+        private void freeze() {
+            versions = requestedVersions.keySet().toArray(new String[requestedVersions.size()]);
+            Arrays.sort(versions, VersionComparator.INSTANCE);
+
+            winningVersions = winners.toArray(new String[winners.size()]);
+            Arrays.sort(winningVersions, VersionComparator.INSTANCE);
+
+            requesters = new Requester[requesterCount];
+            int i = 0;
+            for (Map<String, Requester> versions : requesterMap.values()) {
+                for (Requester r : versions.values()) {
+                    requesters[i++] = r;
+                }
+            }
+            Arrays.sort(requesters, new Comparator<Requester>() {
+                public int compare(Requester a, Requester b) {
+                    int c = a.name.compareTo(b.name);
+                    return c != 0 ? c : VersionComparator.INSTANCE.compare(a.version, b.version);
+                }
+            });
+            requesterMap = null;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Return the group:id of this module.
+         */
+        public String getModule() {
+            return group + ":" + id;
+        }
+
+        /**
+         * Return the versions Gradle picked, which is usually just one unless
+         * configurations resolved the module differently, newest last.
+         */
+        public String[] getWinningVersions() {
+            return winningVersions;
+        }
+
+        /**
+         * Return the newest version Gradle picked.
+         */
+        public String getWinningVersion() {
+            return winningVersions[winningVersions.length - 1];
+        }
+
+        /**
+         * Return why Gradle picked the winning version, or null if it didn't
+         * say.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * Return every requested version, oldest first.
+         */
+        public String[] getRequestedVersions() {
+            return versions;
+        }
+
+        /**
+         * Return how many edges requested the given version.
+         *
+         * @param version one of the requested versions
+         */
+        public int getRequestCount(String version) {
+            int[] count = requestedVersions.get(version);
+            return count == null ? 0 : count[0];
+        }
+
+        /**
+         * Return how many edges requested this module, in any version.
+         */
+        public int getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * Return who requested which version and how many times, sorted by
+         * requester and then version.
+         */
+        public Requester[] getRequesters() {
+            return requesters;
+        }
+    }
+
+    /**
+     * A module or configuration that requested a specific version of a
+     * conflicted module.
+     */
+    public static class Requester {
+        private final String name;
+        private final String version;
+        private int count;
+
+        private Requester(String name, String version) {
+            this.name = name;
+            this.version = version;
+        }
+
+        /**
+         * Return the module that requested it, or the project path and
+         * configuration for a direct dependency.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Return how many times this requester asked for this version, which
+         * is more than once when it shows up in several configurations.
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+}
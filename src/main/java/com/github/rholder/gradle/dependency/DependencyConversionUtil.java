@@ -16,31 +16,32 @@
 
 package com.github.rholder.gradle.dependency;
 
-import com.github.rholder.gradle.acumen.api.AcumenTreeModel;
+import com.github.rholder.gradle.acumen.api.AcumenPayloadModel;
+import com.github.rholder.gradle.acumen.api.AcumenProjectModel;
 import com.github.rholder.gradle.acumen.api.GradleTreeNode;
 import com.github.rholder.gradle.log.ToolingLogger;
 import com.google.common.collect.Maps;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.gradle.tooling.BuildAction;
 import org.gradle.tooling.BuildActionExecuter;
+import org.gradle.tooling.BuildCancelledException;
 import org.gradle.tooling.BuildController;
-import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.CancellationToken;
 import org.gradle.tooling.ProgressEvent;
 import org.gradle.tooling.ProgressListener;
-import org.gradle.tooling.ProjectConnection;
+import org.gradle.tooling.model.gradle.BasicGradleProject;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * This is a utility class to handle conversion from the dependency tree output
@@ -54,6 +55,16 @@ public class DependencyConversionUtil {
      */
     public static final String GRADLE_VIEW_JAVA_HOME_KEY = "gradle.view.java.home";
 
+    /**
+     * Override this system property if you want to change where the Gradle View plugin keeps its cached files.
+     */
+    public static final String GRADLE_VIEW_CACHE_DIR_KEY = "gradle.view.cache.dir";
+
+    /**
+     * Set this system property to a thread count, or true for one per processor, to resolve subprojects in parallel.
+     */
+    public static final String GRADLE_VIEW_PARALLEL_KEY = "gradle.view.parallel";
+
     /**
      * Use the Gradle Tooling API to extract dependency information on the
      * given path, returning the root node of the dependency graph.
@@ -62,121 +73,244 @@ public class DependencyConversionUtil {
      * @param toolingLogger instance to use for Gradle tooling log messages
      */
     public static Map<String, GradleNode> loadProjectDependenciesFromModel(String projectPath, final ToolingLogger toolingLogger) {
-        if (projectPath == null) {
-            return Collections.singletonMap("root", new GradleNode("No Gradle project directory selected..."));
+        // nothing is shared here, so don't keep the connection around
+        GradleConnectionManager connectionManager = new GradleConnectionManager();
+        try {
+            return loadProjectDependencies(projectPath, toolingLogger, connectionManager, new LoadOptions());
+        } finally {
+            connectionManager.shutdown();
         }
+    }
 
-        ProjectConnection connection = GradleConnector.newConnector()
-                .forProjectDirectory(new File(projectPath))
-                .connect();
+    /**
+     * Use the Gradle Tooling API to extract dependency information for only
+     * the given projects, returning a project node for each of them that holds
+     * the configurations that pass the filter of the given options but none
+     * of its subprojects.
+     */
+    private static Map<String, GradleNode> loadProjectSubtrees(String projectPath,
+                                                               Set<String> projectPaths,
+                                                               ToolingLogger toolingLogger,
+                                                               GradleConnectionManager connectionManager,
+                                                               LoadOptions options) {
+        Map<String, AcumenProjectModel> models = runAction(projectPath,
+                new AcumenProjectsAction(new HashSet<String>(projectPaths)), toolingLogger, connectionManager, null,
+                options.getCancellationToken(), options.getFilter());
 
-        Map<String, GradleNode> dependencyMap = Maps.newHashMap();
-        AcumenTreeModel atm;
+        Map<String, GradleNode> subtrees = Maps.newHashMap();
+        Map<String, String> strings = Maps.newHashMap();
+        for (Map.Entry<String, AcumenProjectModel> model : models.entrySet()) {
+            subtrees.put(model.getKey(), convertToGradleNode(null, model.getValue().getNodeTree(), strings));
+        }
+        return subtrees;
+    }
+
+    private static <T> T runAction(String projectPath,
+                                   BuildAction<T> buildAction,
+                                   final ToolingLogger toolingLogger,
+                                   GradleConnectionManager connectionManager,
+                                   ProjectLoadListener projectLoadListener,
+                                   CancellationToken cancellationToken,
+                                   ConfigurationFilter filter) {
+        GradleConnectionManager.PooledConnection pooledConnection = connectionManager.acquire(projectPath);
         try {
-            @SuppressWarnings("unchecked")
-            BuildActionExecuter<AcumenTreeModel> action = connection.action(new AcumenModelAction());
+            BuildActionExecuter<T> action = pooledConnection.getConnection().action(buildAction);
             action.addProgressListener(new ProgressListener() {
                 public void statusChanged(ProgressEvent event) {
                     toolingLogger.log(event.getDescription());
                 }
             });
 
-            // TODO this needs to be cached
+            // extracted once per plugin version, every refresh after that reuses the same init script
+            File initAcumenFile = AcumenInitScript.getInitScript(getCacheDir());
 
-            // extract from classpath
-            File initAcumenFile = File.createTempFile("init-acumen", ".gradle");
-            initAcumenFile.deleteOnExit();
+            List<String> arguments = new ArrayList<String>();
+            arguments.add("--init-script");
+            arguments.add(initAcumenFile.getAbsolutePath());
 
-            // use a custom plugin, if this value is set
-            File extractedJarFile;
-            String devGradleAcumen = System.getProperty("gradle.view.debug.acumen.jar");
-            if (devGradleAcumen == null) {
-                extractedJarFile = File.createTempFile("gradle-acumen", ".jar");
-                extractedJarFile.deleteOnExit();
-                dumpFromClasspath("/gradle-acumen-0.3.0.jar", extractedJarFile);
-            } else {
-                extractedJarFile = new File(devGradleAcumen);
+            String parallel = System.getProperty(GRADLE_VIEW_PARALLEL_KEY);
+            if (parallel != null) {
+                // project locks are only separate from each other in parallel builds
+                arguments.add("--parallel");
+                arguments.add("-Pacumen.parallel=" + parallel);
+            }
+            arguments.addAll(filter.toArguments());
+
+            if (projectLoadListener != null) {
+                String token = UUID.randomUUID().toString();
+                arguments.add("-Pacumen.stream=" + token);
+                action.setStandardOutput(new ProjectStreamOutputStream(token, projectLoadListener, toolingLogger));
             }
+            action.withArguments(arguments.toArray(new String[arguments.size()]));
 
-            acumenTemplateFromClasspath(extractedJarFile, initAcumenFile);
+            if (cancellationToken != null) {
+                action.withCancellationToken(cancellationToken);
+            }
 
-            action.withArguments("--init-script", initAcumenFile.getAbsolutePath());
             File jdkHome = getJdkHome();
             if (jdkHome != null) {
                 toolingLogger.log("Using Gradle JAVA_HOME=" + jdkHome);
                 action.setJavaHome(jdkHome);
             }
-            atm = action.run();
-
-            GradleNode rootNode = convertToGradleNode(atm);
-            dependencyMap.put("root", rootNode);
+            return action.run();
+        } catch (BuildCancelledException e) {
+            // a newer refresh took over, there's nothing wrong with the build
+            toolingLogger.log("Cancelled loading " + projectPath);
+            throw e;
         } catch (Exception e) {
             toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
             throw new RuntimeException(e);
         } finally {
-            connection.close();
+            pooledConnection.release();
         }
-
-        return dependencyMap;
     }
 
-    private static void acumenTemplateFromClasspath(File extractedJarFile, File outputFile) throws IOException {
-        InputStream input = DependencyConversionUtil.class.getResourceAsStream("/init-acumen.gradle");
+    /**
+     * Use the Gradle Tooling API to extract dependency information on the
+     * given path, returning the root node of the dependency graph. The
+     * connection to the project is borrowed from the given connection manager
+     * so that it stays warm across refreshes. When the given options hold a
+     * cache, the graph is returned from it if none of the project's build
+     * files have changed since it was stored, otherwise only the projects
+     * whose build scripts changed are reloaded where possible and the result
+     * is cached again.
+     *
+     * @param projectPath       the path to the target project to load
+     * @param toolingLogger     instance to use for Gradle tooling log messages
+     * @param connectionManager the pool to borrow a project connection from
+     * @param options           the cache, listener, cancellation token and filter to load with
+     */
+    public static Map<String, GradleNode> loadProjectDependencies(String projectPath,
+                                                                  ToolingLogger toolingLogger,
+                                                                  GradleConnectionManager connectionManager,
+                                                                  LoadOptions options) {
+        if (projectPath == null) {
+            return Collections.singletonMap("root", new GradleNode("No Gradle project directory selected..."));
+        }
+
+        DependencyGraphCache graphCache = options.getGraphCache();
+        if (graphCache == null) {
+            return loadWholeBuild(projectPath, toolingLogger, connectionManager, options);
+        }
 
-        // replace token with extracted file, replace '\' with '/' to handle Windows paths
-        String processed = IOUtils.toString(input).replace("#ACUMEN_JAR#", extractedJarFile.getAbsolutePath()).replace("\\", "/");
-        input.close();
+        ConfigurationFilter filter = options.getFilter();
+        BuildFingerprint fingerprint = BuildFingerprint.compute(projectPath);
+        DependencyGraphCache.Entry cached = graphCache.load(projectPath, filter);
+        if (cached != null && cached.fingerprint.equals(fingerprint)) {
+            toolingLogger.log("No build files have changed, using cached dependencies");
+            Map<String, GradleNode> dependencyMap = Maps.newHashMap();
+            dependencyMap.put("root", cached.root);
+            return dependencyMap;
+        }
 
-        InputStream processedInput = IOUtils.toInputStream(processed);
+        Map<String, GradleNode> dependencyMap = null;
+        if (cached != null) {
+            // when only some subproject build scripts changed, just reload those projects and their dependents
+            Set<String> affectedProjects = ProjectGraphUtil.findAffectedProjects(cached.root, projectPath,
+                    fingerprint.changedSince(cached.fingerprint));
+            if (affectedProjects != null) {
+                toolingLogger.log("Reloading dependencies for " + affectedProjects);
+                Map<String, GradleNode> subtrees = loadProjectSubtrees(projectPath, affectedProjects,
+                        toolingLogger, connectionManager, options);
+                dependencyMap = Maps.newHashMap();
+                dependencyMap.put("root", ProjectGraphUtil.spliceProjects(cached.root, subtrees));
+            }
+        }
+        if (dependencyMap == null) {
+            dependencyMap = loadWholeBuild(projectPath, toolingLogger, connectionManager, options);
+        }
 
-        OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile));
-        IOUtils.copy(processedInput, output);
+        // the graph is held on to for as long as it's shown and cached, so it's packed into primitive arrays first
+        dependencyMap.put("root", CompactGraph.of(dependencyMap.get("root")).getRoot());
 
-        output.close();
-        processedInput.close();
+        try {
+            graphCache.store(projectPath, filter, fingerprint, dependencyMap.get("root"));
+        } catch (IOException e) {
+            // not being able to cache shouldn't keep anyone from seeing their dependencies
+            toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+        }
+        return dependencyMap;
     }
 
-    private static void dumpFromClasspath(String classpath, File outputFile) throws IOException {
-        InputStream input = DependencyConversionUtil.class.getResourceAsStream(classpath);
-        OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile));
-        IOUtils.copy(input, output);
-        input.close();
-        output.close();
-    }
+    private static Map<String, GradleNode> loadWholeBuild(String projectPath,
+                                                          ToolingLogger toolingLogger,
+                                                          GradleConnectionManager connectionManager,
+                                                          LoadOptions options) {
+        AcumenPayloadModel model = runAction(projectPath, new AcumenModelAction(), toolingLogger, connectionManager,
+                options.getProjectLoadListener(), options.getCancellationToken(), options.getFilter());
 
-    private static GradleNode convertToGradleNode(AcumenTreeModel atm) {
-        return convertToGradleNode(null, atm.getNodeTree());
+        Map<String, GradleNode> dependencyMap = Maps.newHashMap();
+        dependencyMap.put("root", AcumenPayloadDecoder.decode(model.getPayload()));
+        return dependencyMap;
     }
 
-    private static GradleNode convertToGradleNode(GradleNode parent, GradleTreeNode treeNode) {
+    /**
+     * Convert the given tree into a GradleNode graph, where every string is
+     * replaced by an equal one from the given pool so that each distinct
+     * group, id, version and reason is only held once no matter how many times
+     * it was deserialized. This is package-private so that it can be
+     * benchmarked.
+     */
+    static GradleNode convertToGradleNode(GradleNode parent, GradleTreeNode treeNode, Map<String, String> strings) {
         GradleNode gradleNode;
         if (treeNode.getName() == null) {
-            if (treeNode.getRequestedVersion() == null) {
+            String version = intern(strings, treeNode.getVersion());
+            String requestedVersion = intern(strings, treeNode.getRequestedVersion());
+            String group = intern(strings, treeNode.getGroup());
+            String id = intern(strings, treeNode.getId());
+            if (requestedVersion == null) {
                 // there is no requested version, only the final version
-                gradleNode = new GradleNode(parent, treeNode.getGroup(), treeNode.getId(), treeNode.getVersion());
+                gradleNode = new GradleNode(parent, group, id, version);
             } else {
                 // an explicitly requested version exists
-                gradleNode = new GradleNode(parent, treeNode.getGroup(), treeNode.getId(), treeNode.getRequestedVersion());
-                if (!treeNode.getVersion().equals(treeNode.getRequestedVersion())) {
+                gradleNode = new GradleNode(parent, group, id, requestedVersion);
+                if (!version.equals(requestedVersion)) {
                     // it's been overridden by the final version
-                    gradleNode.replacedByVersion = treeNode.getVersion();
+                    gradleNode.replacedByVersion = version;
                 }
             }
 
             gradleNode.omitted = treeNode.getSeenBefore();
-            gradleNode.reason = treeNode.getReason();
+            gradleNode.reason = intern(strings, treeNode.getReason());
         } else {
-            gradleNode = new GradleNode(treeNode.getName());
+            gradleNode = new GradleNode(intern(strings, treeNode.getName()));
+            gradleNode.projectPath = treeNode.getProjectPath();
+            gradleNode.projectDir = treeNode.getProjectDir();
         }
-        gradleNode.nodeType = treeNode.getNodeType();
+        gradleNode.nodeType = intern(strings, treeNode.getNodeType());
 
         for (GradleTreeNode c : treeNode.getChildren()) {
-            gradleNode.dependencies.add(convertToGradleNode(gradleNode, c));
+            gradleNode.dependencies.add(convertToGradleNode(gradleNode, c, strings));
         }
 
         return gradleNode;
     }
 
+    private static String intern(Map<String, String> strings, String s) {
+        if (s == null) {
+            return null;
+        }
+        String interned = strings.get(s);
+        if (interned == null) {
+            strings.put(s, s);
+            interned = s;
+        }
+        return interned;
+    }
+
+    /**
+     * Return the base directory for files cached across refreshes and
+     * restarts, which is the value of the gradle.view.cache.dir system
+     * property if it's set, otherwise .gradle-view in the user's home.
+     */
+    public static File getCacheDir() {
+        String cacheDir = System.getProperty(GRADLE_VIEW_CACHE_DIR_KEY);
+        if (cacheDir != null) {
+            return new File(cacheDir);
+        }
+        return new File(System.getProperty("user.home"), ".gradle-view");
+    }
+
     /**
      * Return a lazy guess at the JDK home based on the JAVA_HOME.
      *
@@ -201,10 +335,29 @@ public class DependencyConversionUtil {
         return null;
     }
 
-    private static class AcumenModelAction implements Serializable, BuildAction {
+    private static class AcumenModelAction implements Serializable, BuildAction<AcumenPayloadModel> {
+        @Override
+        public AcumenPayloadModel execute(BuildController controller) {
+            return controller.getModel(AcumenPayloadModel.class);
+        }
+    }
+
+    private static class AcumenProjectsAction implements Serializable, BuildAction<HashMap<String, AcumenProjectModel>> {
+        private final HashSet<String> projectPaths;
+
+        AcumenProjectsAction(HashSet<String> projectPaths) {
+            this.projectPaths = projectPaths;
+        }
+
         @Override
-        public AcumenTreeModel execute(BuildController controller) {
-            return controller.getModel(AcumenTreeModel.class);
+        public HashMap<String, AcumenProjectModel> execute(BuildController controller) {
+            HashMap<String, AcumenProjectModel> models = new HashMap<String, AcumenProjectModel>();
+            for (BasicGradleProject project : controller.getBuildModel().getProjects()) {
+                if (projectPaths.contains(project.getPath())) {
+                    models.put(project.getPath(), controller.getModel(project, AcumenProjectModel.class));
+                }
+            }
+            return models;
         }
     }
 }
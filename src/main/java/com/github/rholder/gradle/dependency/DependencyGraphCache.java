@@ -0,0 +1,397 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.rholder.gradle.dependency.FileKeyUtil.canonicalPath;
+import static com.github.rholder.gradle.dependency.FileKeyUtil.sha1Hex;
+
+/**
+ * Instances of this class persist the most recently loaded GradleNode graph of
+ * each project on disk, along with the BuildFingerprint of the build inputs it
+ * was loaded from, so that an unchanged build never has to be resolved twice.
+ * Graphs loaded with a ConfigurationFilter are kept apart from each other.
+ * Graphs are written in a compact binary format that pools every distinct
+ * string once, and only the few most recently used ones are also kept in
+ * memory.
+ */
+public class DependencyGraphCache {
+
+    private static final int MAGIC = 0x47564743; // GVGC
+    private static final int FORMAT_VERSION = 3;
+
+    private static final int FLAG_OMITTED = 1;
+
+    // only the graphs that are likely to be revalidated soon are worth keeping in memory
+    private static final int MAX_ENTRIES = 4;
+
+    private final File cacheDir;
+
+    // the latest entries read or written, least recently used first, so revalidating doesn't read them back from disk
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // bumped on every store and invalidate, so that a read that raced with one isn't kept
+    private long generation;
+
+    /**
+     * Construct a new cache that keeps its files in the given directory.
+     *
+     * @param cacheDir where to keep cached graphs
+     */
+    public DependencyGraphCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Return the cached graph for the given project, or null if there isn't a
+     * readable one. The entry may be stale, compare its fingerprint with the
+     * current one before trusting it.
+     *
+     * @param projectPath the path to the target project
+     */
+    public Entry load(String projectPath) {
+        return load(projectPath, ConfigurationFilter.ALL);
+    }
+
+    /**
+     * Return the cached graph for the given project that was loaded with the
+     * given filter, or null if there isn't a readable one. The entry may be
+     * stale, compare its fingerprint with the current one before trusting it.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the graph was loaded with
+     */
+    public Entry load(String projectPath, ConfigurationFilter filter) {
+        String key = cacheKey(projectPath, filter);
+        long readGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            readGeneration = generation;
+        }
+
+        // files are only ever replaced by an atomic move, so they can be read without holding the lock
+        File cacheFile = new File(cacheDir, key + ".bin");
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        Entry entry;
+        try {
+            entry = read(cacheFile);
+        } catch (IOException e) {
+            // corrupt or written by an older version, it'll be replaced on the next load
+            FileUtils.deleteQuietly(cacheFile);
+            return null;
+        }
+
+        synchronized (this) {
+            Entry current = entries.get(key);
+            if (current != null) {
+                return current;
+            }
+            if (generation == readGeneration) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Store the given graph as the latest one for the given project.
+     *
+     * @param projectPath the path to the target project
+     * @param fingerprint the build inputs the graph was loaded from
+     * @param root        the root of the graph
+     */
+    public Entry store(String projectPath, BuildFingerprint fingerprint, GradleNode root) throws IOException {
+        return store(projectPath, ConfigurationFilter.ALL, fingerprint, root);
+    }
+
+    /**
+     * Store the given graph as the latest one for the given project loaded
+     * with the given filter.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the graph was loaded with
+     * @param fingerprint the build inputs the graph was loaded from
+     * @param root        the root of the graph
+     */
+    public Entry store(String projectPath, ConfigurationFilter filter, BuildFingerprint fingerprint,
+                       GradleNode root) throws IOException {
+        String key = cacheKey(projectPath, filter);
+        Entry entry = new Entry(fingerprint, root);
+
+        // the slow part happens in a scratch file of its own, only moving it into place needs the lock
+        FileUtils.forceMkdir(cacheDir);
+        File scratchFile = File.createTempFile(key, ".tmp", cacheDir);
+        try {
+            write(scratchFile, entry);
+            synchronized (this) {
+                Files.move(scratchFile.toPath(), new File(cacheDir, key + ".bin").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                generation++;
+                entries.put(key, entry);
+            }
+        } finally {
+            FileUtils.deleteQuietly(scratchFile);
+        }
+        return entry;
+    }
+
+    /**
+     * Forget the cached graph for the given project loaded with the given
+     * filter, so that the next load resolves it again even if no build files
+     * have changed, such as when a SNAPSHOT or dynamic version moved on.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the graph was loaded with
+     */
+    public synchronized void invalidate(String projectPath, ConfigurationFilter filter) {
+        String key = cacheKey(projectPath, filter);
+        generation++;
+        entries.remove(key);
+        FileUtils.deleteQuietly(new File(cacheDir, key + ".bin"));
+    }
+
+    private static Entry read(File cacheFile) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unrecognized cache file format in " + cacheFile);
+            }
+
+            Map<String, BuildFingerprint.Stamp> stamps = new HashMap<String, BuildFingerprint.Stamp>();
+            int stampCount = readVarInt(input);
+            for (int i = 0; i < stampCount; i++) {
+                String path = input.readUTF();
+                stamps.put(path, new BuildFingerprint.Stamp(input.readLong(), input.readLong()));
+            }
+
+            return new Entry(new BuildFingerprint(stamps), CompactGraph.of(readGraph(input)).getRoot());
+        } finally {
+            input.close();
+        }
+    }
+
+    private static GradleNode readNode(DataInputStream input, String[] strings, GradleNode parent) throws IOException {
+        int flags = input.readByte();
+        String name = readString(input, strings);
+        String group = readString(input, strings);
+
+        GradleNode node;
+        if (name == null) {
+            node = new GradleNode(parent, group, readString(input, strings), readString(input, strings));
+        } else {
+            node = new GradleNode(name);
+            node.group = group;
+        }
+        node.reason = readString(input, strings);
+        node.nodeType = readString(input, strings);
+        node.replacedByVersion = readString(input, strings);
+        node.projectPath = readString(input, strings);
+        node.projectDir = readString(input, strings);
+        node.omitted = (flags & FLAG_OMITTED) != 0;
+
+        int childCount = readVarInt(input);
+        for (int i = 0; i < childCount; i++) {
+            node.dependencies.add(readNode(input, strings, node));
+        }
+        return node;
+    }
+
+    private static void write(File cacheFile, Entry entry) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+
+            Map<String, BuildFingerprint.Stamp> stamps = entry.fingerprint.getStamps();
+            writeVarInt(output, stamps.size());
+            for (Map.Entry<String, BuildFingerprint.Stamp> stamp : stamps.entrySet()) {
+                output.writeUTF(stamp.getKey());
+                output.writeLong(stamp.getValue().length);
+                output.writeLong(stamp.getValue().lastModified);
+            }
+
+            writeGraph(output, entry.root);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Write the graph under the given node in the same compact binary format
+     * used by cache files, where every distinct string is pooled up front and
+     * only written once.
+     *
+     * @param output where to write the graph
+     * @param root   the root of the graph
+     */
+    public static void writeGraph(DataOutputStream output, GradleNode root) throws IOException {
+        Map<String, Integer> pool = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        poolStrings(root, pool, strings);
+
+        writeVarInt(output, strings.size());
+        for (String s : strings) {
+            output.writeUTF(s);
+        }
+        writeNode(output, root, pool);
+    }
+
+    /**
+     * Read back a graph written by {@link #writeGraph(DataOutputStream, GradleNode)}.
+     *
+     * @param input where to read the graph from
+     */
+    public static GradleNode readGraph(DataInputStream input) throws IOException {
+        int stringCount = readVarInt(input);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = input.readUTF();
+        }
+        return readNode(input, strings, null);
+    }
+
+    private static void writeNode(DataOutputStream output, GradleNode node, Map<String, Integer> pool) throws IOException {
+        output.writeByte(node.omitted ? FLAG_OMITTED : 0);
+        writeString(output, node.name, pool);
+        // projects have a group too, which their dependents resolve them by
+        writeString(output, node.group, pool);
+        if (node.name == null) {
+            writeString(output, node.id, pool);
+            writeString(output, node.version, pool);
+        }
+        writeString(output, node.reason, pool);
+        writeString(output, node.nodeType, pool);
+        writeString(output, node.replacedByVersion, pool);
+        writeString(output, node.projectPath, pool);
+        writeString(output, node.projectDir, pool);
+
+        writeVarInt(output, node.dependencies.size());
+        for (GradleNode d : node.dependencies) {
+            writeNode(output, d, pool);
+        }
+    }
+
+    private static void poolStrings(GradleNode node, Map<String, Integer> pool, List<String> strings) {
+        for (String s : new String[]{node.name, node.group, node.id, node.version, node.reason, node.nodeType,
+                node.replacedByVersion, node.projectPath, node.projectDir}) {
+            if (s != null && !pool.containsKey(s)) {
+                pool.put(s, strings.size());
+                strings.add(s);
+            }
+        }
+        for (GradleNode d : node.dependencies) {
+            poolStrings(d, pool, strings);
+        }
+    }
+
+    // string references are shifted by one so that 0 can stand for null
+    private static void writeString(DataOutputStream output, String s, Map<String, Integer> pool) throws IOException {
+        writeVarInt(output, s == null ? 0 : pool.get(s) + 1);
+    }
+
+    private static String readString(DataInputStream input, String[] strings) throws IOException {
+        int index = readVarInt(input);
+        return index == 0 ? null : strings[index - 1];
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Return the name cached files of the given project are stored under,
+     * which is the same for every path to the same directory.
+     *
+     * @param projectPath the path to the target project
+     */
+    public static String cacheKey(String projectPath) {
+        return cacheKey(projectPath, ConfigurationFilter.ALL);
+    }
+
+    /**
+     * Return the name cached files of the given project loaded with the given
+     * filter are stored under. A filter that leaves nothing out shares its
+     * name with {@link #cacheKey(String)}.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the graph was loaded with
+     */
+    public static String cacheKey(String projectPath, ConfigurationFilter filter) {
+        String path = canonicalPath(projectPath);
+        for (String argument : filter.toArguments()) {
+            path += "\n" + argument;
+        }
+        return sha1Hex(path.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * A cached graph and the fingerprint of the build inputs it came from.
+     */
+    public static class Entry {
+        public final BuildFingerprint fingerprint;
+        public final GradleNode root;
+
+        public Entry(BuildFingerprint fingerprint, GradleNode root) {
+            this.fingerprint = fingerprint;
+            this.root = root;
+        }
+    }
+}
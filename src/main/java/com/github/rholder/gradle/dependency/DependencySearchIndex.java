@@ -0,0 +1,461 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A DependencySearchIndex is built once for each loaded GradleNode graph so
+ * that dependencies can be looked up while someone types. Every distinct
+ * dependency, by its full group:id:version name, is indexed by the trigrams
+ * of its lowercased name and by the prefixes of its group, id and version.
+ * Queries are case insensitive and match anywhere in the name, except for
+ * queries shorter than three characters which only match the start of a
+ * group, id or version.
+ */
+public class DependencySearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // every node of the graph in depth first order, with the index of its parent or -1 for the root
+    private final GradleNode[] nodes;
+    private final int[] parents;
+
+    // a compact graph's nodes are looked up by their index in it instead, so that no views are held on to
+    private final CompactGraph graph;
+    private final int[] graphIndexes;
+
+    // the lowercased name of each distinct dependency and the indexes of every node showing it
+    private final String[] names;
+    private final int[][] occurrences;
+
+    // trigram -> sorted indexes of the names containing it
+    private final Map<String, int[]> grams;
+
+    // every group, id and version token, sorted, along with the index of the name it came from
+    private final String[] prefixTokens;
+    private final int[] prefixNames;
+
+    /**
+     * Index every node reachable from the given root.
+     *
+     * @param root the root of the graph to index
+     */
+    public DependencySearchIndex(GradleNode root) {
+        graph = CompactGraph.graphOf(root);
+        List<GradleNode> nodeList = graph == null ? new ArrayList<GradleNode>() : null;
+        int[] graphIndexList = new int[64];
+        int size = 0;
+        int[] parentList = new int[64];
+
+        Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+        List<String> nameList = new ArrayList<String>();
+        List<List<Integer>> occurrenceList = new ArrayList<List<Integer>>();
+
+        Deque<GradleNode> stack = new ArrayDeque<GradleNode>();
+        Deque<Integer> parentStack = new ArrayDeque<Integer>();
+        stack.push(root);
+        parentStack.push(-1);
+        while (!stack.isEmpty()) {
+            GradleNode node = stack.pop();
+            int index = size++;
+            if (index == parentList.length) {
+                parentList = Arrays.copyOf(parentList, index * 2);
+                graphIndexList = graph == null ? graphIndexList : Arrays.copyOf(graphIndexList, index * 2);
+            }
+            parentList[index] = parentStack.pop();
+            if (graph == null) {
+                nodeList.add(node);
+            } else {
+                graphIndexList[index] = graph.indexOf(node);
+            }
+
+            if (isDependency(node)) {
+                String name = node.getFullName().toLowerCase();
+                Integer n = nameIndex.get(name);
+                if (n == null) {
+                    n = nameList.size();
+                    nameIndex.put(name, n);
+                    nameList.add(name);
+                    occurrenceList.add(new ArrayList<Integer>());
+                }
+                occurrenceList.get(n).add(index);
+            }
+
+            // children are pushed in reverse so they're indexed in their original order
+            for (int i = node.dependencies.size() - 1; i >= 0; i--) {
+                stack.push(node.dependencies.get(i));
+                parentStack.push(index);
+            }
+        }
+
+        nodes = graph == null ? nodeList.toArray(new GradleNode[size]) : null;
+        graphIndexes = graph == null ? null : Arrays.copyOf(graphIndexList, size);
+        parents = Arrays.copyOf(parentList, size);
+        names = nameList.toArray(new String[nameList.size()]);
+        occurrences = new int[names.length][];
+        for (int n = 0; n < names.length; n++) {
+            occurrences[n] = toArray(occurrenceList.get(n));
+        }
+
+        Map<String, List<Integer>> gramLists = new HashMap<String, List<Integer>>();
+        List<Token> tokens = new ArrayList<Token>();
+        for (int n = 0; n < names.length; n++) {
+            String name = names[n];
+            for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+                String gram = name.substring(i, i + GRAM_LENGTH);
+                List<Integer> postings = gramLists.get(gram);
+                if (postings == null) {
+                    postings = new ArrayList<Integer>();
+                    gramLists.put(gram, postings);
+                }
+                // names are visited in order, so a repeated gram is always at the end
+                if (postings.isEmpty() || postings.get(postings.size() - 1) != n) {
+                    postings.add(n);
+                }
+            }
+            for (String token : name.split("[: ]+")) {
+                if (!token.isEmpty() && !"->".equals(token)) {
+                    tokens.add(new Token(token, n));
+                }
+            }
+        }
+
+        grams = new HashMap<String, int[]>();
+        for (Map.Entry<String, List<Integer>> gram : gramLists.entrySet()) {
+            grams.put(gram.getKey(), toArray(gram.getValue()));
+        }
+
+        Collections.sort(tokens);
+        prefixTokens = new String[tokens.size()];
+        prefixNames = new int[tokens.size()];
+        for (int i = 0; i < prefixTokens.length; i++) {
+            prefixTokens[i] = tokens.get(i).token;
+            prefixNames[i] = tokens.get(i).name;
+        }
+    }
+
+    // the node at the given position, whose parent was already built if it's from a compact graph
+    private GradleNode node(int i, GradleNode parent) {
+        return graph == null ? nodes[i] : graph.getNode(graphIndexes[i], parent);
+    }
+
+    // resolved dependencies and the ones that couldn't be resolved, which have no node type
+    private static boolean isDependency(GradleNode node) {
+        return !"project".equals(node.getNodeType()) && !"configuration".equals(node.getNodeType());
+    }
+
+    /**
+     * Return the dependencies matching the given query, or null if the query
+     * is blank. When the given previous result came from a query that this
+     * one only adds to, only its matches are checked again instead of going
+     * back to the index.
+     *
+     * @param query    what to look for
+     * @param previous the result of the last search, or null
+     */
+    public Result search(String query, Result previous) {
+        String q = query == null ? "" : query.trim().toLowerCase();
+        if (q.isEmpty()) {
+            return null;
+        }
+
+        int[] candidates;
+        if (previous != null && previous.index == this && narrows(previous.query, q)) {
+            candidates = previous.matchedNames;
+        } else if (q.length() < GRAM_LENGTH) {
+            return new Result(this, q, prefixMatches(q));
+        } else {
+            candidates = gramCandidates(q);
+        }
+        return new Result(this, q, filter(candidates, q));
+    }
+
+    /**
+     * Return true if everything matching the given query also matches the
+     * previous one, so that a search can start from the previous result.
+     */
+    private static boolean narrows(String previous, String query) {
+        if (previous.length() < GRAM_LENGTH) {
+            // prefix matches only narrow down while the query is still a prefix
+            return query.length() < GRAM_LENGTH && query.startsWith(previous);
+        }
+        return query.contains(previous);
+    }
+
+    private int[] prefixMatches(String q) {
+        int start = Arrays.binarySearch(prefixTokens, q);
+        if (start < 0) {
+            start = -start - 1;
+        }
+
+        List<Integer> matches = new ArrayList<Integer>();
+        for (int i = start; i < prefixTokens.length && prefixTokens[i].startsWith(q); i++) {
+            matches.add(prefixNames[i]);
+        }
+        int[] matched = toArray(matches);
+        Arrays.sort(matched);
+        return distinct(matched);
+    }
+
+    private int[] gramCandidates(String q) {
+        int[] candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= q.length(); i++) {
+            int[] postings = grams.get(q.substring(i, i + GRAM_LENGTH));
+            if (postings == null) {
+                return new int[0];
+            }
+            candidates = candidates == null ? postings : intersect(candidates, postings);
+        }
+        return candidates;
+    }
+
+    // short queries have to match the same way whether they were typed out or narrowed down to
+    private int[] filter(int[] candidates, String q) {
+        boolean prefixOnly = q.length() < GRAM_LENGTH;
+        int[] matched = new int[candidates.length];
+        int count = 0;
+        for (int n : candidates) {
+            if (prefixOnly ? hasTokenPrefix(names[n], q) : names[n].contains(q)) {
+                matched[count++] = n;
+            }
+        }
+        return Arrays.copyOf(matched, count);
+    }
+
+    /**
+     * Return true if one of the group, id or version tokens of the given name
+     * starts with the given query, just like the tokens in the prefix index.
+     */
+    private static boolean hasTokenPrefix(String name, String q) {
+        for (int i = 0; i < name.length(); i++) {
+            boolean tokenStart = !isSeparator(name.charAt(i)) && (i == 0 || isSeparator(name.charAt(i - 1)));
+            if (tokenStart && name.startsWith(q, i) && !isArrow(name, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ':' || c == ' ';
+    }
+
+    // the arrow between a requested and a replaced version isn't a token of its own
+    private static boolean isArrow(String name, int i) {
+        return name.startsWith("->", i) && (i + 2 == name.length() || isSeparator(name.charAt(i + 2)));
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] both = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                both[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+    private static int[] distinct(int[] sorted) {
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static class Token implements Comparable<Token> {
+        final String token;
+        final int name;
+
+        Token(String token, int name) {
+            this.token = token;
+            this.name = name;
+        }
+
+        public int compareTo(Token o) {
+            return token.compareTo(o.token);
+        }
+    }
+
+    /**
+     * The dependencies matching a single query. Matching nodes and every node
+     * above them are collected the first time they're asked for, so a result
+     * only ever holds as many nodes as there are matches and ancestors.
+     */
+    public static class Result {
+        private final DependencySearchIndex index;
+        private final String query;
+        private final int[] matchedNames;
+
+        // the matching and visible nodes, or their indexes in the compact graph the index was built from
+        private Set<GradleNode> matches;
+        private Set<GradleNode> visible;
+        private BitSet matchIndexes;
+        private BitSet visibleIndexes;
+
+        private Result(DependencySearchIndex index, String query, int[] matchedNames) {
+            this.index = index;
+            this.query = query;
+            this.matchedNames = matchedNames;
+        }
+
+        /**
+         * Return the lowercased query this is the result of.
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Return the number of distinct dependencies that matched.
+         */
+        public int getMatchCount() {
+            return matchedNames.length;
+        }
+
+        /**
+         * Return true if the given node is one of the matching dependencies.
+         *
+         * @param node the node to check
+         */
+        public boolean isMatch(GradleNode node) {
+            collect();
+            if (index.graph != null) {
+                return CompactGraph.graphOf(node) == index.graph && matchIndexes.get(index.graph.indexOf(node));
+            }
+            return matches.contains(node);
+        }
+
+        /**
+         * Return true if the given node either matched or has a matching node
+         * somewhere below it, meaning it should stay visible in a filtered
+         * tree.
+         *
+         * @param node the node to check
+         */
+        public boolean isVisible(GradleNode node) {
+            collect();
+            if (index.graph != null) {
+                return CompactGraph.graphOf(node) == index.graph && visibleIndexes.get(index.graph.indexOf(node));
+            }
+            return visible.contains(node);
+        }
+
+        /**
+         * Return the path from the root down to each matching node, stopping
+         * after the given number of paths.
+         *
+         * @param limit the most paths to return
+         */
+        public List<GradleNode[]> getPaths(int limit) {
+            List<GradleNode[]> paths = new ArrayList<GradleNode[]>();
+            for (int n : matchedNames) {
+                for (int occurrence : index.occurrences[n]) {
+                    if (paths.size() == limit) {
+                        return paths;
+                    }
+                    paths.add(pathTo(occurrence));
+                }
+            }
+            return paths;
+        }
+
+        private GradleNode[] pathTo(int occurrence) {
+            int depth = 0;
+            for (int i = occurrence; i >= 0; i = index.parents[i]) {
+                depth++;
+            }
+            int[] positions = new int[depth];
+            for (int i = occurrence; i >= 0; i = index.parents[i]) {
+                positions[--depth] = i;
+            }
+
+            // built from the root down so that each node is created once, on top of its parent
+            GradleNode[] path = new GradleNode[positions.length];
+            for (int d = 0; d < path.length; d++) {
+                path[d] = index.node(positions[d], d == 0 ? null : path[d - 1]);
+            }
+            return path;
+        }
+
+        private void collect() {
+            if (matches != null || matchIndexes != null) {
+                return;
+            }
+            if (index.graph != null) {
+                // nodes of a compact graph are only compared by their index, so no views are needed here
+                matchIndexes = new BitSet();
+                visibleIndexes = new BitSet();
+                for (int n : matchedNames) {
+                    for (int occurrence : index.occurrences[n]) {
+                        matchIndexes.set(index.graphIndexes[occurrence]);
+
+                        // stop climbing as soon as this part of the path was already seen
+                        for (int i = occurrence; i >= 0 && !visibleIndexes.get(index.graphIndexes[i]); i = index.parents[i]) {
+                            visibleIndexes.set(index.graphIndexes[i]);
+                        }
+                    }
+                }
+                return;
+            }
+
+            matches = new HashSet<GradleNode>();
+            visible = new HashSet<GradleNode>();
+            for (int n : matchedNames) {
+                for (int occurrence : index.occurrences[n]) {
+                    matches.add(index.nodes[occurrence]);
+
+                    // stop climbing as soon as this part of the path was already seen
+                    int i = occurrence;
+                    while (i >= 0 && visible.add(index.nodes[i])) {
+                        i = index.parents[i];
+                    }
+                }
+            }
+        }
+    }
+}
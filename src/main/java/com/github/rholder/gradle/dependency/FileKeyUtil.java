@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This is a utility class for the keys that files, connections, refreshes
+ * and cache entries are looked up by, so that every path to the same
+ * directory ends up with the same key.
+ */
+class FileKeyUtil {
+
+    private FileKeyUtil() {
+    }
+
+    /**
+     * Return the canonical path of the given file, falling back to its
+     * absolute path when it can't be resolved, such as when it doesn't exist.
+     *
+     * @param file the file to find the path of
+     */
+    static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Return the canonical path of the given path like {@link #canonicalPath(File)}.
+     *
+     * @param path the path to resolve
+     */
+    static String canonicalPath(String path) {
+        return canonicalPath(new File(path));
+    }
+
+    /**
+     * Return the SHA-1 digest of the given contents, one after another, as
+     * lowercase hex.
+     *
+     * @param contents what to digest
+     */
+    static String sha1Hex(byte[]... contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (byte[] content : contents) {
+            digest.update(content);
+        }
+
+        StringBuilder b = new StringBuilder();
+        for (byte d : digest.digest()) {
+            b.append(String.format("%02x", d));
+        }
+        return b.toString();
+    }
+}
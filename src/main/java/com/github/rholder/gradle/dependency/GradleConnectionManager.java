@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ProjectConnection;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rholder.gradle.dependency.FileKeyUtil.canonicalPath;
+
+/**
+ * Instances of this class keep a bounded pool of warm ProjectConnection
+ * instances keyed by canonical project directory so that repeated refreshes
+ * of the same project don't pay for connection setup every time. Idle
+ * connections are closed after a timeout and the least recently used ones are
+ * closed when the pool grows past its cap.
+ */
+public class GradleConnectionManager {
+
+    /**
+     * Override this system property to change how long an unused connection stays open, in seconds.
+     */
+    public static final String GRADLE_VIEW_IDLE_TIMEOUT_KEY = "gradle.view.connection.idle.timeout";
+
+    /**
+     * Override this system property to change the maximum number of connections kept open.
+     */
+    public static final String GRADLE_VIEW_MAX_CONNECTIONS_KEY = "gradle.view.connection.max";
+
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 600;
+    private static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+    private final long idleTimeoutMillis;
+    private final int maxConnections;
+
+    // access ordered, so iteration starts from the least recently used connection
+    private final Map<String, PooledConnection> connections = new LinkedHashMap<String, PooledConnection>(16, 0.75f, true);
+
+    private ScheduledExecutorService evictor;
+    private boolean shutdown = false;
+
+    public GradleConnectionManager() {
+        this(TimeUnit.SECONDS.toMillis(Long.getLong(GRADLE_VIEW_IDLE_TIMEOUT_KEY, DEFAULT_IDLE_TIMEOUT_SECONDS)),
+                Integer.getInteger(GRADLE_VIEW_MAX_CONNECTIONS_KEY, DEFAULT_MAX_CONNECTIONS));
+    }
+
+    /**
+     * Construct a new connection manager with the given limits.
+     *
+     * @param idleTimeoutMillis close connections that haven't been used for this long
+     * @param maxConnections    the maximum number of idle connections to keep open
+     */
+    public GradleConnectionManager(long idleTimeoutMillis, int maxConnections) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    /**
+     * Return a pooled connection for the given project directory, connecting
+     * if there isn't one open already. Callers must release the returned
+     * instance when they are done with it.
+     *
+     * @param projectPath the path to the target project
+     */
+    public synchronized PooledConnection acquire(String projectPath) {
+        if (shutdown) {
+            throw new IllegalStateException("This connection manager has already been shut down");
+        }
+
+        String key = canonicalPath(projectPath);
+        PooledConnection pooled = connections.get(key);
+        if (pooled == null) {
+            ProjectConnection connection = GradleConnector.newConnector()
+                    .forProjectDirectory(new File(key))
+                    .connect();
+            pooled = new PooledConnection(key, connection);
+            connections.put(key, pooled);
+            evictOverflow();
+            scheduleEviction();
+        }
+        pooled.leases++;
+        return pooled;
+    }
+
+    /**
+     * Close and forget any pooled connection for the given project directory.
+     * A connection that is still in use is closed as soon as it is released.
+     *
+     * @param projectPath the path to the target project
+     */
+    public void evict(String projectPath) {
+        PooledConnection pooled;
+        synchronized (this) {
+            pooled = connections.remove(canonicalPath(projectPath));
+        }
+        if (pooled != null) {
+            pooled.retire();
+        }
+    }
+
+    /**
+     * Close every pooled connection and reject any further requests.
+     */
+    public void shutdown() {
+        List<PooledConnection> retired;
+        synchronized (this) {
+            shutdown = true;
+            retired = new ArrayList<PooledConnection>(connections.values());
+            connections.clear();
+            if (evictor != null) {
+                evictor.shutdownNow();
+                evictor = null;
+            }
+        }
+        for (PooledConnection pooled : retired) {
+            pooled.retire();
+        }
+    }
+
+    private synchronized void release(PooledConnection pooled) {
+        pooled.leases--;
+        pooled.lastUsed = System.currentTimeMillis();
+        if (pooled.leases == 0 && pooled.retired) {
+            pooled.connection.close();
+        }
+    }
+
+    /**
+     * Retire the least recently used connections until we're back under the
+     * cap, must be called while holding the lock.
+     */
+    private void evictOverflow() {
+        Iterator<PooledConnection> it = connections.values().iterator();
+        while (connections.size() > maxConnections && it.hasNext()) {
+            PooledConnection pooled = it.next();
+            it.remove();
+            pooled.retire();
+        }
+    }
+
+    private synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = connections.values().iterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+            if (pooled.leases == 0 && now - pooled.lastUsed >= idleTimeoutMillis) {
+                it.remove();
+                pooled.retire();
+            }
+        }
+    }
+
+    /**
+     * Lazily start the background idle connection sweeper, must be called
+     * while holding the lock.
+     */
+    private void scheduleEviction() {
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("gradle-view-connection-evictor")
+                    .setDaemon(true)
+                    .build());
+            long period = Math.max(1000, idleTimeoutMillis / 2);
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    evictIdle();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A leased handle to a shared ProjectConnection.
+     */
+    public class PooledConnection {
+
+        private final String projectPath;
+        private final ProjectConnection connection;
+
+        private int leases = 0;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean retired = false;
+
+        private PooledConnection(String projectPath, ProjectConnection connection) {
+            this.projectPath = projectPath;
+            this.connection = connection;
+        }
+
+        /**
+         * Return the canonical path of the project this connection points to.
+         */
+        public String getProjectPath() {
+            return projectPath;
+        }
+
+        public ProjectConnection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Hand this connection back to the pool, it must not be used after
+         * this call.
+         */
+        public void release() {
+            GradleConnectionManager.this.release(this);
+        }
+
+        private void retire() {
+            synchronized (GradleConnectionManager.this) {
+                retired = true;
+                if (leases > 0) {
+                    // the last release() closes it
+                    return;
+                }
+            }
+            connection.close();
+        }
+    }
+}
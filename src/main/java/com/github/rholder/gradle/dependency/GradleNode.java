@@ -16,6 +16,9 @@
 
 package com.github.rholder.gradle.dependency;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,10 +26,15 @@ import java.util.List;
  * A GradleNode encapsulates all the data needed to render a viewable tree
  * representation. A non-dependency node does not refer to a specific dependency
  * but instead can represent the root node or a configuration entry (such as
- * compile or runtime).
+ * compile or runtime). The display names of a dependency node are built the
+ * first time they're asked for and cached from then on, so its coordinates
+ * must not change after that.
  */
 public class GradleNode implements Comparable<GradleNode> {
 
+    // display names are shared by every node with the same coordinates, nodes repeat a lot in large graphs
+    private static final Interner<String> DISPLAY_NAMES = Interners.newWeakInterner();
+
     // name is filled in by configuration type nodes
     public String name;
 
@@ -40,8 +48,16 @@ public class GradleNode implements Comparable<GradleNode> {
     public boolean omitted = false;
     public String replacedByVersion = null;
 
+    // the Gradle path and directory are filled in by project type nodes
+    public String projectPath;
+    public String projectDir;
+
     // child dependencies
-    public List<GradleNode> dependencies = new ArrayList<GradleNode>();
+    public List<GradleNode> dependencies;
+
+    // cached by getName() and getFullName() for dependency nodes
+    private String displayName;
+    private String fullDisplayName;
 
     /**
      * Construct a non-dependency parent or root node.
@@ -51,6 +67,7 @@ public class GradleNode implements Comparable<GradleNode> {
     public GradleNode(String name) {
         this.name = name;
         this.parent = null;
+        this.dependencies = new ArrayList<GradleNode>();
     }
 
     /**
@@ -66,6 +83,19 @@ public class GradleNode implements Comparable<GradleNode> {
         this.group = group;
         this.id = id;
         this.version = version;
+        this.dependencies = new ArrayList<GradleNode>();
+    }
+
+    /**
+     * Construct a node whose children are kept somewhere else, such as a view
+     * over a CompactGraph.
+     *
+     * @param parent       the parent to set for this node
+     * @param dependencies the children of this node
+     */
+    GradleNode(GradleNode parent, List<GradleNode> dependencies) {
+        this.parent = parent;
+        this.dependencies = dependencies;
     }
 
     /**
@@ -73,7 +103,16 @@ public class GradleNode implements Comparable<GradleNode> {
      * group:id:version of a dependency node.
      */
     public String getName() {
-        return name == null ? group + ":" + id + ":" + getFinalVersion() : name;
+        if (name != null) {
+            return name;
+        }
+        // racing threads can only ever build equal names, so this needs no locking
+        String n = displayName;
+        if (n == null) {
+            n = DISPLAY_NAMES.intern(group + ":" + id + ":" + getFinalVersion());
+            displayName = n;
+        }
+        return n;
     }
 
     /**
@@ -82,7 +121,15 @@ public class GradleNode implements Comparable<GradleNode> {
      * replaced by another version.
      */
     public String getFullName() {
-        return name == null ? group + ":" + id + ":" + version + (isReplaced() ? " -> " + replacedByVersion : "") : name;
+        if (name != null) {
+            return name;
+        }
+        String n = fullDisplayName;
+        if (n == null) {
+            n = isReplaced() ? DISPLAY_NAMES.intern(group + ":" + id + ":" + version + " -> " + replacedByVersion) : getName();
+            fullDisplayName = n;
+        }
+        return n;
     }
 
     /**
@@ -137,11 +184,33 @@ public class GradleNode implements Comparable<GradleNode> {
     }
 
     /**
-     * Return the String comparison based on the return value of getName().
+     * Compare the name of non-dependency nodes, or the group, id and final
+     * version of dependency nodes, one field at a time so that sorting never
+     * allocates anything. A non-dependency node comes before a dependency node
+     * whose group is the same as its name.
      *
      * @param o the other instance to compare against
      */
     public int compareTo(GradleNode o) {
-        return getName().compareTo(o.getName());
+        int c = compare(name != null ? name : group, o.name != null ? o.name : o.group);
+        if (c != 0) {
+            return c;
+        }
+        if (name != null || o.name != null) {
+            return name == null ? 1 : (o.name == null ? -1 : 0);
+        }
+        c = compare(id, o.id);
+        return c != 0 ? c : compare(getFinalVersion(), o.getFinalVersion());
+    }
+
+    // interned coordinates are usually the same instance, which is checked first
+    private static int compare(String a, String b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null || b == null) {
+            return a == null ? -1 : 1;
+        }
+        return a.compareTo(b);
     }
 }
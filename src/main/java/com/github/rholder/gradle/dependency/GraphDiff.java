@@ -0,0 +1,322 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A GraphDiff lists every module whose resolved version differs between two
+ * GradleNode graphs, such as before and after bumping a platform BOM. Modules
+ * are matched on their project, configuration, group and id through a hash
+ * index of each graph, so comparing takes time linear in the size of both
+ * graphs plus sorting the changes.
+ */
+public class GraphDiff {
+
+    /**
+     * The ways a module can change between two graphs.
+     */
+    public enum Kind {
+        ADDED,
+        REMOVED,
+        UPGRADED,
+        DOWNGRADED;
+
+        /**
+         * Return the kind of change the given node stands for, or null if it
+         * isn't a change node.
+         *
+         * @param node a node from {@link GraphDiff#toGradleNode(String)}
+         */
+        public static Kind of(GradleNode node) {
+            return node instanceof ChangeNode ? ((ChangeNode) node).kind : null;
+        }
+    }
+
+    private final List<Change> changes;
+    private final int[] counts = new int[Kind.values().length];
+
+    private GraphDiff(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+        for (Change change : changes) {
+            counts[change.kind.ordinal()]++;
+        }
+    }
+
+    /**
+     * Compare the resolved versions of every module in the given graphs.
+     *
+     * @param before the root of the older graph
+     * @param after  the root of the newer graph
+     */
+    public static GraphDiff compare(GradleNode before, GradleNode after) {
+        Map<ModuleKey, String> beforeVersions = index(before);
+        Map<ModuleKey, String> afterVersions = index(after);
+
+        List<Change> changes = new ArrayList<Change>();
+        for (Map.Entry<ModuleKey, String> entry : beforeVersions.entrySet()) {
+            String beforeVersion = entry.getValue();
+            String afterVersion = afterVersions.get(entry.getKey());
+            if (afterVersion == null) {
+                changes.add(new Change(entry.getKey(), Kind.REMOVED, beforeVersion, null));
+            } else if (!afterVersion.equals(beforeVersion)) {
+                Kind kind = VersionComparator.INSTANCE.compare(afterVersion, beforeVersion) > 0
+                        ? Kind.UPGRADED : Kind.DOWNGRADED;
+                changes.add(new Change(entry.getKey(), kind, beforeVersion, afterVersion));
+            }
+        }
+        for (Map.Entry<ModuleKey, String> entry : afterVersions.entrySet()) {
+            if (!beforeVersions.containsKey(entry.getKey())) {
+                changes.add(new Change(entry.getKey(), Kind.ADDED, null, entry.getValue()));
+            }
+        }
+
+        Collections.sort(changes, new Comparator<Change>() {
+            public int compare(Change a, Change b) {
+                int c = a.key.project.compareTo(b.key.project);
+                if (c == 0) {
+                    c = a.key.configuration.compareTo(b.key.configuration);
+                }
+                if (c == 0) {
+                    c = a.key.group.compareTo(b.key.group);
+                }
+                if (c == 0) {
+                    c = a.key.id.compareTo(b.key.id);
+                }
+                return c;
+            }
+        });
+        return new GraphDiff(changes);
+    }
+
+    /**
+     * Return the resolved version of every module of every configuration in
+     * the given graph, keyed by project, configuration, group and id.
+     */
+    private static Map<ModuleKey, String> index(GradleNode root) {
+        Map<ModuleKey, String> versions = new HashMap<ModuleKey, String>();
+        Deque<GradleNode> projects = new ArrayDeque<GradleNode>();
+        Deque<GradleNode> stack = new ArrayDeque<GradleNode>();
+        projects.push(root);
+        while (!projects.isEmpty()) {
+            GradleNode project = projects.pop();
+            String projectPath = project.projectPath == null ? project.getName() : project.projectPath;
+            for (GradleNode child : project.dependencies) {
+                if ("project".equals(child.getNodeType())) {
+                    projects.push(child);
+                    continue;
+                }
+
+                String configuration = child.getName();
+                for (GradleNode d : child.dependencies) {
+                    stack.push(d);
+                }
+                while (!stack.isEmpty()) {
+                    GradleNode node = stack.pop();
+                    // unresolved dependencies only have a description, there's no version to compare
+                    if (node.name == null) {
+                        ModuleKey key = new ModuleKey(projectPath, configuration, node.group, node.id);
+                        if (!versions.containsKey(key)) {
+                            versions.put(key, node.getFinalVersion());
+                        }
+                    }
+                    for (GradleNode d : node.dependencies) {
+                        stack.push(d);
+                    }
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Return every change, sorted by project, configuration, group and id.
+     */
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Return how many changes of the given kind there are.
+     *
+     * @param kind the kind of change to count
+     */
+    public int getCount(Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    /**
+     * Return a short summary of how many modules changed, in each way.
+     */
+    public String getSummary() {
+        return getCount(Kind.ADDED) + " added, " + getCount(Kind.REMOVED) + " removed, "
+                + getCount(Kind.UPGRADED) + " upgraded, " + getCount(Kind.DOWNGRADED) + " downgraded";
+    }
+
+    /**
+     * Return the changes as a graph that can be shown like any other, with
+     * the given title at the root, a node for each project and configuration
+     * that has changes, and a node for each change under them. Change nodes
+     * are dependency nodes that carry the version from before, the version
+     * from after as their replacedByVersion when both exist, and their kind,
+     * which {@link Kind#of(GradleNode)} returns.
+     *
+     * @param title the name of the root node
+     */
+    public GradleNode toGradleNode(String title) {
+        GradleNode root = new GradleNode(title);
+        if (changes.isEmpty()) {
+            root.dependencies.add(new GradleNode("No changes"));
+            return root;
+        }
+
+        GradleNode projectNode = null;
+        GradleNode configurationNode = null;
+        for (Change change : changes) {
+            if (projectNode == null || !projectNode.projectPath.equals(change.key.project)) {
+                projectNode = new GradleNode(change.key.project);
+                projectNode.nodeType = "project";
+                projectNode.projectPath = change.key.project;
+                root.dependencies.add(projectNode);
+                configurationNode = null;
+            }
+            if (configurationNode == null || !configurationNode.name.equals(change.key.configuration)) {
+                configurationNode = new GradleNode(change.key.configuration);
+                configurationNode.nodeType = "configuration";
+                projectNode.dependencies.add(configurationNode);
+            }
+
+            GradleNode changeNode = new ChangeNode(configurationNode, change);
+            configurationNode.dependencies.add(changeNode);
+        }
+        return root;
+    }
+
+    /**
+     * A node of {@link #toGradleNode(String)} that stands for a change, which
+     * is shown like any other dependency apart from its kind.
+     */
+    private static class ChangeNode extends GradleNode {
+        private final Kind kind;
+
+        private ChangeNode(GradleNode parent, Change change) {
+            super(parent, change.key.group, change.key.id,
+                    change.beforeVersion != null ? change.beforeVersion : change.afterVersion);
+            if (change.beforeVersion != null && change.afterVersion != null) {
+                replacedByVersion = change.afterVersion;
+            }
+            nodeType = "dependency";
+            kind = change.kind;
+        }
+    }
+
+    /**
+     * A single module whose resolved version differs between two graphs.
+     */
+    public static class Change {
+        private final ModuleKey key;
+        private final Kind kind;
+        private final String beforeVersion;
+        private final String afterVersion;
+
+        private Change(ModuleKey key, Kind kind, String beforeVersion, String afterVersion) {
+            this.key = key;
+            this.kind = kind;
+            this.beforeVersion = beforeVersion;
+            this.afterVersion = afterVersion;
+        }
+
+        public String getProject() {
+            return key.project;
+        }
+
+        public String getConfiguration() {
+            return key.configuration;
+        }
+
+        public String getGroup() {
+            return key.group;
+        }
+
+        public String getId() {
+            return key.id;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Return the resolved version before, or null if the module was added.
+         */
+        public String getBeforeVersion() {
+            return beforeVersion;
+        }
+
+        /**
+         * Return the resolved version after, or null if the module was removed.
+         */
+        public String getAfterVersion() {
+            return afterVersion;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + key.project + " " + key.configuration + " " + key.group + ":" + key.id + " "
+                    + beforeVersion + " -> " + afterVersion;
+        }
+    }
+
+    private static class ModuleKey {
+        private final String project;
+        private final String configuration;
+        private final String group;
+        private final String id;
+        private final int hash;
+
+        ModuleKey(String project, String configuration, String group, String id) {
+            this.project = project;
+            this.configuration = configuration;
+            this.group = String.valueOf(group);
+            this.id = String.valueOf(id);
+            this.hash = ((project.hashCode() * 31 + configuration.hashCode()) * 31 + this.group.hashCode()) * 31
+                    + this.id.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ModuleKey)) {
+                return false;
+            }
+            ModuleKey that = (ModuleKey) o;
+            return hash == that.hash && id.equals(that.id) && group.equals(that.group)
+                    && configuration.equals(that.configuration) && project.equals(that.project);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.gradle.tooling.CancellationToken;
+
+/**
+ * Instances of this class hold everything optional about loading a project's
+ * dependencies. Nothing is set by default, which loads every configuration
+ * of every project straight from Gradle without caching the result.
+ */
+public class LoadOptions {
+
+    private DependencyGraphCache graphCache;
+    private ProjectLoadListener projectLoadListener;
+    private CancellationToken cancellationToken;
+    private ConfigurationFilter filter = ConfigurationFilter.ALL;
+
+    /**
+     * Check the given cache before loading anything and store what's loaded
+     * in it afterwards, only resolving the projects whose build scripts
+     * changed when it holds an older graph of the same build.
+     *
+     * @param graphCache the cache to use, or null to always load the whole build
+     */
+    public LoadOptions withGraphCache(DependencyGraphCache graphCache) {
+        this.graphCache = graphCache;
+        return this;
+    }
+
+    /**
+     * Hand each project to the given listener as soon as its configurations
+     * are resolved, so that it can be shown while the rest of the build is
+     * still loading. Only builds that load the whole project report to it.
+     *
+     * @param projectLoadListener where to send each project, or null to only return the result
+     */
+    public LoadOptions withProjectLoadListener(ProjectLoadListener projectLoadListener) {
+        this.projectLoadListener = projectLoadListener;
+        return this;
+    }
+
+    /**
+     * Stop the build early with a BuildCancelledException once the given
+     * token is cancelled. Nothing is cached in that case.
+     *
+     * @param cancellationToken the token to cancel the build with, or null
+     */
+    public LoadOptions withCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+
+    /**
+     * Only resolve the configurations and projects that pass the given
+     * filter. Graphs loaded with different filters are cached separately.
+     *
+     * @param filter which configurations and projects to resolve
+     */
+    public LoadOptions withFilter(ConfigurationFilter filter) {
+        this.filter = filter == null ? ConfigurationFilter.ALL : filter;
+        return this;
+    }
+
+    public DependencyGraphCache getGraphCache() {
+        return graphCache;
+    }
+
+    public ProjectLoadListener getProjectLoadListener() {
+        return projectLoadListener;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    public ConfigurationFilter getFilter() {
+        return filter;
+    }
+}
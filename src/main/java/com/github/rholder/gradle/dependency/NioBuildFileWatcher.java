@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * A BuildFileWatcher that watches the project directory itself with a
+ * WatchService, for when there's no IDE around to report file changes.
+ * Every directory that could hold a build file is registered, including ones
+ * created after the watcher was started.
+ */
+public class NioBuildFileWatcher extends BuildFileWatcher {
+
+    private final WatchService watchService;
+
+    /**
+     * Start watching the build files under the given project directory.
+     *
+     * @param projectPath the path to the target project
+     * @param listener    where to send each batch of changes
+     */
+    public NioBuildFileWatcher(String projectPath, BuildFileListener listener) throws IOException {
+        super(projectPath, listener);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerAll(new File(getProjectPath()), "");
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                watch();
+            }
+        }, "gradle-view-build-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // nothing left to do with it either way
+        }
+    }
+
+    private void registerAll(File dir, String relativePath) throws IOException {
+        dir.toPath().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String childPath = relativePath.isEmpty() ? child.getName() : relativePath + "/" + child.getName();
+            if (child.isDirectory() && !BuildFingerprint.isSkippedDirectory(childPath)) {
+                registerAll(child, childPath);
+            }
+        }
+    }
+
+    // the path of the given file relative to the project directory, using '/' as a separator
+    private String relativePath(File file) {
+        Path relative = new File(getProjectPath()).toPath().relativize(file.toPath());
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // some events were lost, so any build file might have changed
+                        for (String path : BuildFingerprint.compute(getProjectPath()).getStamps().keySet()) {
+                            fileChanged(new File(getProjectPath(), path).getPath());
+                        }
+                        continue;
+                    }
+
+                    File file = dir.resolve((Path) event.context()).toFile();
+                    String relativePath = relativePath(file);
+                    if (event.kind() == ENTRY_CREATE && file.isDirectory()
+                            && !BuildFingerprint.isSkippedDirectory(relativePath)) {
+                        // a new subproject, anything already in it is reported as if it was just created
+                        registerAll(file, relativePath);
+                        for (String path : BuildFingerprint.compute(getProjectPath()).getStamps().keySet()) {
+                            if (path.startsWith(relativePath + "/")) {
+                                fileChanged(new File(getProjectPath(), path).getPath());
+                            }
+                        }
+                    }
+                    fileChanged(file.getPath());
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed, we're done
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // stop watching rather than report changes to a directory we can't keep up with
+            close();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.github.rholder.gradle.dependency.FileKeyUtil.canonicalPath;
+
+/**
+ * This is a utility class for working with the project nodes of a GradleNode
+ * graph, so that only the projects affected by a change need to be reloaded
+ * and spliced back into an existing graph.
+ */
+public class ProjectGraphUtil {
+
+    /**
+     * Return the Gradle paths of every project whose resolved dependencies may
+     * have changed because of the given changed build files, or null if the
+     * whole build needs to be loaded again. Projects that depend on a changed
+     * project are included since they resolve its dependencies too.
+     *
+     * @param root         the root of the previously loaded graph
+     * @param projectPath  the path to the target project
+     * @param changedFiles the changed build files, relative to the project path
+     */
+    public static Set<String> findAffectedProjects(GradleNode root, String projectPath, Set<String> changedFiles) {
+        Map<String, GradleNode> projectsByPath = new LinkedHashMap<String, GradleNode>();
+        collectProjects(root, projectsByPath);
+
+        Map<String, GradleNode> projectsByDir = new HashMap<String, GradleNode>();
+        for (GradleNode project : projectsByPath.values()) {
+            if (project.projectDir != null) {
+                projectsByDir.put(canonicalPath(new File(project.projectDir)), project);
+            }
+        }
+
+        File rootDir = new File(projectPath);
+        Set<String> changedModules = new HashSet<String>();
+        for (String changedFile : changedFiles) {
+            String fileName = changedFile.substring(changedFile.lastIndexOf('/') + 1);
+            if (!"build.gradle".equals(fileName) && !"build.gradle.kts".equals(fileName)) {
+                // settings, properties, version catalogs and the wrapper can change every project
+                return null;
+            }
+
+            GradleNode project = projectsByDir.get(canonicalPath(new File(rootDir, changedFile).getParentFile()));
+            if (project == null || ":".equals(project.projectPath)) {
+                // a brand new project, buildSrc, or a root build script that probably configures everything else
+                return null;
+            }
+            if (project.group == null) {
+                // loaded before projects knew their group, so there's no telling who depends on it
+                return null;
+            }
+            changedModules.add(project.group + ":" + project.name);
+        }
+
+        Set<String> affected = new TreeSet<String>();
+        for (GradleNode project : projectsByPath.values()) {
+            if (changedModules.contains(project.group + ":" + project.name) || dependsOnAny(project, changedModules)) {
+                affected.add(project.projectPath);
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Return a copy of the given graph where the configurations of each project
+     * in the given replacements are swapped out for the ones of its
+     * replacement. Subprojects are kept from the original graph and dependency
+     * nodes are shared between both graphs, so the original is left as is.
+     *
+     * @param node         the root of the graph to splice into
+     * @param replacements project nodes without subprojects, keyed by Gradle path
+     */
+    public static GradleNode spliceProjects(GradleNode node, Map<String, GradleNode> replacements) {
+        GradleNode replacement = node.projectPath == null ? null : replacements.get(node.projectPath);
+        GradleNode source = replacement != null ? replacement : node;
+
+        GradleNode spliced = new GradleNode(source.name);
+        spliced.group = source.group;
+        spliced.id = source.id;
+        spliced.version = source.version;
+        spliced.reason = source.reason;
+        spliced.nodeType = source.nodeType;
+        spliced.projectPath = source.projectPath;
+        spliced.projectDir = source.projectDir;
+
+        // subprojects come first, just like they do from gradle-acumen
+        for (GradleNode child : node.dependencies) {
+            if (isProject(child)) {
+                spliced.dependencies.add(spliceProjects(child, replacements));
+            }
+        }
+        for (GradleNode child : source.dependencies) {
+            if (!isProject(child)) {
+                spliced.dependencies.add(child);
+            }
+        }
+        return spliced;
+    }
+
+    private static boolean isProject(GradleNode node) {
+        return "project".equals(node.getNodeType());
+    }
+
+    private static void collectProjects(GradleNode node, Map<String, GradleNode> projectsByPath) {
+        if (isProject(node) && node.projectPath != null && !projectsByPath.containsKey(node.projectPath)) {
+            projectsByPath.put(node.projectPath, node);
+        }
+        for (GradleNode child : node.dependencies) {
+            if (isProject(child)) {
+                collectProjects(child, projectsByPath);
+            }
+        }
+    }
+
+    /**
+     * Return true if any configuration of the given project pulls in one of
+     * the given projects, which resolve like any other module with the
+     * project's group and name. A bare name isn't enough, since an external
+     * org.foo:core has nothing to do with a project called core.
+     *
+     * @param project the project to check the configurations of
+     * @param modules the group and name of each project, separated by ':'
+     */
+    private static boolean dependsOnAny(GradleNode project, Set<String> modules) {
+        Deque<GradleNode> stack = new ArrayDeque<GradleNode>();
+        for (GradleNode child : project.dependencies) {
+            if (!isProject(child)) {
+                stack.push(child);
+            }
+        }
+        while (!stack.isEmpty()) {
+            GradleNode node = stack.pop();
+            if (node.name == null && modules.contains(node.group + ":" + node.id)) {
+                return true;
+            }
+            for (GradleNode d : node.dependencies) {
+                stack.push(d);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+/**
+ * Implementations of this interface are handed the dependencies of each
+ * project as soon as they're resolved, well before the whole build finishes
+ * loading.
+ */
+public interface ProjectLoadListener {
+
+    /**
+     * Called with a project node that holds the project's configurations but
+     * none of its subprojects, from whichever thread is reading build output.
+     *
+     * @param projectNode the project that was just resolved
+     */
+    void projectLoaded(GradleNode projectNode);
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.github.rholder.gradle.log.ToolingLogger;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Instances of this class receive the standard output of a build and pick out
+ * the lines gradle-acumen writes for each resolved project, which are the
+ * stream token followed by the Base64 encoded AcumenPayloadModel payload of a
+ * single project. Every other line is ignored.
+ */
+public class ProjectStreamOutputStream extends OutputStream {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] prefix;
+    private final ProjectLoadListener listener;
+    private final ToolingLogger toolingLogger;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    /**
+     * Construct a new stream that hands each project tagged with the given
+     * token to the given listener.
+     *
+     * @param token         the token gradle-acumen was asked to tag its lines with
+     * @param listener      where to send each decoded project
+     * @param toolingLogger instance to use for a project that can't be decoded
+     */
+    public ProjectStreamOutputStream(String token, ProjectLoadListener listener, ToolingLogger toolingLogger) {
+        this.prefix = (token + " ").getBytes(UTF_8);
+        this.listener = listener;
+        this.toolingLogger = toolingLogger;
+    }
+
+    @Override
+    public void write(int b) {
+        if (b == '\n') {
+            processLine();
+        } else {
+            line.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n') {
+                line.write(b, start, i - start);
+                processLine();
+                start = i + 1;
+            }
+        }
+        line.write(b, start, off + len - start);
+    }
+
+    private void processLine() {
+        byte[] bytes = line.toByteArray();
+        line.reset();
+
+        int end = bytes.length;
+        if (end > 0 && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end < prefix.length || !Arrays.equals(prefix, Arrays.copyOf(bytes, prefix.length))) {
+            return;
+        }
+
+        try {
+            String encoded = new String(bytes, prefix.length, end - prefix.length, UTF_8);
+            listener.projectLoaded(AcumenPayloadDecoder.decode(Base64.getDecoder().decode(encoded)));
+        } catch (Exception e) {
+            // the complete model still arrives at the end, so a bad line only costs an early look
+            toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.gradle.tooling.CancellationToken;
+import org.gradle.tooling.CancellationTokenSource;
+import org.gradle.tooling.GradleConnector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rholder.gradle.dependency.FileKeyUtil.canonicalPath;
+
+/**
+ * Instances of this class make sure there is only ever one refresh running
+ * for each project directory. A refresh requested while another one is
+ * waiting to start replaces it, and a refresh requested while another one is
+ * running cancels the running one through its CancellationToken and becomes
+ * the single follow-up that starts once it's done, no matter how many more
+ * requests arrive in the meantime. Every refresh waits a short moment before
+ * it starts so that a burst of requests only ever results in one build.
+ */
+public class RefreshScheduler {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+    private final long debounceMillis;
+
+    private final Map<String, ProjectRefresh> refreshes = new HashMap<String, ProjectRefresh>();
+    private boolean shutdown = false;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("gradle-view-refresh-timer")
+            .setDaemon(true)
+            .build());
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("gradle-view-refresh-%d")
+            .setDaemon(true)
+            .build());
+
+    public RefreshScheduler() {
+        this(DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Construct a new scheduler that waits the given time before starting
+     * each refresh.
+     *
+     * @param debounceMillis how long to wait for more requests before starting a refresh
+     */
+    public RefreshScheduler(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Implementations of this interface do the actual work of a refresh.
+     */
+    public interface RefreshTask {
+
+        /**
+         * Run this refresh, passing the given token on to the Gradle tooling
+         * API so that the build stops early once it's been superseded. The
+         * scheduler has nowhere to show a failure, so implementations must
+         * report their own, such as to the ToolingLogger of the view being
+         * refreshed, before throwing. Anything thrown from here is dropped
+         * after that so that the next refresh of the project can still start.
+         *
+         * @param cancellationToken cancelled when a newer refresh was requested
+         */
+        void run(CancellationToken cancellationToken) throws Exception;
+    }
+
+    /**
+     * Request the given refresh of the given project directory.
+     *
+     * @param projectPath the path to the target project, may be null
+     * @param task        what to run
+     */
+    public synchronized void request(String projectPath, RefreshTask task) {
+        if (shutdown) {
+            return;
+        }
+
+        String key = projectPath == null ? "" : canonicalPath(projectPath);
+        ProjectRefresh refresh = refreshes.get(key);
+        if (refresh == null) {
+            refresh = new ProjectRefresh(key);
+            refreshes.put(key, refresh);
+        }
+
+        refresh.next = task;
+        if (refresh.running != null) {
+            // the running build is out of date now, stop it so the follow-up can start sooner
+            refresh.running.cancel();
+        } else if (!refresh.scheduled) {
+            schedule(refresh, debounceMillis);
+        }
+    }
+
+    /**
+     * Cancel anything that's running, drop anything that's waiting and stop
+     * accepting any further requests.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (ProjectRefresh refresh : refreshes.values()) {
+            refresh.next = null;
+            if (refresh.running != null) {
+                refresh.running.cancel();
+            }
+        }
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+
+    /**
+     * Start the next task of the given refresh after the given delay, must be
+     * called while holding the lock.
+     */
+    private void schedule(final ProjectRefresh refresh, long delayMillis) {
+        refresh.scheduled = true;
+        timer.schedule(new Runnable() {
+            public void run() {
+                start(refresh);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void start(final ProjectRefresh refresh) {
+        refresh.scheduled = false;
+        final RefreshTask task = refresh.next;
+        if (task == null) {
+            refreshes.remove(refresh.key);
+            return;
+        }
+        refresh.next = null;
+        refresh.running = GradleConnector.newCancellationTokenSource();
+
+        final CancellationToken token = refresh.running.token();
+        workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    task.run(token);
+                } catch (Exception e) {
+                    // already reported by the task as RefreshTask requires, this only keeps the next one from being stuck
+                } finally {
+                    finish(refresh);
+                }
+            }
+        });
+    }
+
+    private synchronized void finish(ProjectRefresh refresh) {
+        refresh.running = null;
+        if (refresh.next != null && !shutdown) {
+            // requests already waited for the build that just finished, there's no need to wait again
+            schedule(refresh, 0);
+        } else {
+            refreshes.remove(refresh.key);
+        }
+    }
+
+    private static class ProjectRefresh {
+        private final String key;
+
+        // the latest requested task that hasn't started yet
+        private RefreshTask next;
+        private boolean scheduled;
+        private CancellationTokenSource running;
+
+        private ProjectRefresh(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ReverseDependencyIndex answers "why is this here?" for a GradleNode graph
+ * by recording, for every module coordinate, which modules and configurations
+ * pull it in. Each distinct group:id:version and each configuration of each
+ * project is a single vertex, so an edge hidden below an omitted node in the
+ * tree is still recorded from wherever it was first resolved, and the size of
+ * the index follows the number of distinct edges rather than the size of the
+ * tree.
+ */
+public class ReverseDependencyIndex {
+
+    // the node shown for each vertex, the first occurrence for a module or a
+    // node named after the project and configuration for a configuration
+    private final GradleNode[] vertices;
+
+    // vertex -> the vertices depending on it, sorted by name
+    private final int[][] dependents;
+
+    // every module vertex sorted by name
+    private final int[] modules;
+
+    /**
+     * Index every edge of the graph below the given root.
+     *
+     * @param root the root of the graph to index
+     */
+    public ReverseDependencyIndex(GradleNode root) {
+        List<GradleNode> vertexList = new ArrayList<GradleNode>();
+        List<Boolean> configurationList = new ArrayList<Boolean>();
+        Map<String, Integer> moduleIndex = new HashMap<String, Integer>();
+        Map<GradleNode, Integer> configurationIndex = new HashMap<GradleNode, Integer>();
+        Set<Long> edges = new HashSet<Long>();
+
+        // each entry is a node along with the vertex that depends on it and the path of its project
+        Deque<Object[]> stack = new ArrayDeque<Object[]>();
+        stack.push(new Object[]{root, -1, ":"});
+        while (!stack.isEmpty()) {
+            Object[] entry = stack.pop();
+            GradleNode node = (GradleNode) entry[0];
+            int parent = (Integer) entry[1];
+            String projectPath = (String) entry[2];
+
+            int vertex;
+            if ("project".equals(node.getNodeType())) {
+                vertex = -1;
+                projectPath = node.projectPath != null ? node.projectPath : node.getName();
+            } else if ("configuration".equals(node.getNodeType())) {
+                Integer existing = configurationIndex.get(node);
+                if (existing == null) {
+                    existing = vertexList.size();
+                    configurationIndex.put(node, existing);
+                    GradleNode configurationNode = new GradleNode(projectPath + (projectPath.endsWith(":") ? "" : ":") + node.getName());
+                    configurationNode.nodeType = "configuration";
+                    vertexList.add(configurationNode);
+                    configurationList.add(true);
+                }
+                vertex = existing;
+            } else {
+                String name = node.getName();
+                Integer existing = moduleIndex.get(name);
+                if (existing == null) {
+                    existing = vertexList.size();
+                    moduleIndex.put(name, existing);
+                    vertexList.add(node);
+                    configurationList.add(false);
+                }
+                vertex = existing;
+                if (parent >= 0) {
+                    edges.add(((long) parent << 32) | vertex);
+                }
+            }
+
+            for (int i = node.dependencies.size() - 1; i >= 0; i--) {
+                stack.push(new Object[]{node.dependencies.get(i), vertex, projectPath});
+            }
+        }
+
+        vertices = vertexList.toArray(new GradleNode[vertexList.size()]);
+        boolean[] configurations = new boolean[vertices.length];
+        for (int v = 0; v < vertices.length; v++) {
+            configurations[v] = configurationList.get(v);
+        }
+
+        // rank every vertex by name once so that each list of dependents sorts on plain numbers
+        Integer[] byName = new Integer[vertices.length];
+        for (int v = 0; v < byName.length; v++) {
+            byName[v] = v;
+        }
+        Arrays.sort(byName, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return vertices[a].compareTo(vertices[b]);
+            }
+        });
+        int[] rank = new int[vertices.length];
+        int moduleCount = 0;
+        for (int r = 0; r < byName.length; r++) {
+            rank[byName[r]] = r;
+            if (!configurations[byName[r]]) {
+                moduleCount++;
+            }
+        }
+        modules = new int[moduleCount];
+        int m = 0;
+        for (Integer v : byName) {
+            if (!configurations[v]) {
+                modules[m++] = v;
+            }
+        }
+
+        int[] counts = new int[vertices.length];
+        for (long edge : edges) {
+            counts[(int) edge]++;
+        }
+        long[][] ranked = new long[vertices.length][];
+        for (int v = 0; v < vertices.length; v++) {
+            ranked[v] = new long[counts[v]];
+            counts[v] = 0;
+        }
+        for (long edge : edges) {
+            int from = (int) (edge >>> 32);
+            int to = (int) edge;
+            ranked[to][counts[to]++] = ((long) rank[from] << 32) | from;
+        }
+        dependents = new int[vertices.length][];
+        for (int v = 0; v < vertices.length; v++) {
+            Arrays.sort(ranked[v]);
+            dependents[v] = new int[ranked[v].length];
+            for (int i = 0; i < ranked[v].length; i++) {
+                dependents[v][i] = (int) ranked[v][i];
+            }
+        }
+    }
+
+    /**
+     * Return every module vertex, sorted by name.
+     */
+    public int[] getModules() {
+        return modules;
+    }
+
+    /**
+     * Return the node to display for the given vertex.
+     *
+     * @param vertex the vertex to display
+     */
+    public GradleNode getNode(int vertex) {
+        return vertices[vertex];
+    }
+
+    /**
+     * Return the vertices that directly depend on the given one, sorted by
+     * name.
+     *
+     * @param vertex the vertex to look up
+     */
+    public int[] getDependents(int vertex) {
+        return dependents[vertex];
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compare version strings roughly the way Gradle does when it picks the
+ * newest version. Versions are split into parts at '.', '-', '_' and '+' and
+ * wherever digits and letters meet. Numeric parts compare as numbers and are
+ * newer than any other part. Well-known qualifiers are ordered dev, then
+ * anything unknown in alphabetical order, then rc, snapshot, final, ga,
+ * release and sp. When one version has extra parts, a numeric extra part
+ * makes it newer and anything else makes it older, so 1.0.1 &gt; 1.0 &gt;
+ * 1.0-rc1.
+ */
+public class VersionComparator implements Comparator<String> {
+
+    public static final VersionComparator INSTANCE = new VersionComparator();
+
+    private static final List<String> QUALIFIERS = Arrays.asList("rc", "snapshot", "final", "ga", "release", "sp");
+
+    public int compare(String a, String b) {
+        if (a.equals(b)) {
+            return 0;
+        }
+
+        List<String> aParts = split(a);
+        List<String> bParts = split(b);
+        int common = Math.min(aParts.size(), bParts.size());
+        for (int i = 0; i < common; i++) {
+            int c = compareParts(aParts.get(i), bParts.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+
+        if (aParts.size() == bParts.size()) {
+            // only separators differ, such as 1.0-1 and 1.0.1, which still need a stable order
+            return a.compareTo(b);
+        }
+        if (aParts.size() > bParts.size()) {
+            return isNumeric(aParts.get(common)) ? 1 : -1;
+        }
+        return isNumeric(bParts.get(common)) ? -1 : 1;
+    }
+
+    private static int compareParts(String a, String b) {
+        boolean aNumeric = isNumeric(a);
+        boolean bNumeric = isNumeric(b);
+        if (aNumeric && bNumeric) {
+            // compare by length first so that huge numbers never overflow
+            String aDigits = stripLeadingZeros(a);
+            String bDigits = stripLeadingZeros(b);
+            if (aDigits.length() != bDigits.length()) {
+                return aDigits.length() < bDigits.length() ? -1 : 1;
+            }
+            return Integer.signum(aDigits.compareTo(bDigits));
+        }
+        if (aNumeric) {
+            return 1;
+        }
+        if (bNumeric) {
+            return -1;
+        }
+
+        int aRank = rank(a);
+        int bRank = rank(b);
+        if (aRank != bRank) {
+            return aRank < bRank ? -1 : 1;
+        }
+        return Integer.signum(a.compareToIgnoreCase(b));
+    }
+
+    // dev is oldest, unknown qualifiers come next, then the well-known ones in order
+    private static int rank(String part) {
+        if ("dev".equalsIgnoreCase(part)) {
+            return -2;
+        }
+        return QUALIFIERS.indexOf(part.toLowerCase());
+    }
+
+    private static List<String> split(String version) {
+        List<String> parts = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i <= version.length(); i++) {
+            boolean end = i == version.length();
+            char c = end ? 0 : version.charAt(i);
+            if (end || c == '.' || c == '-' || c == '_' || c == '+') {
+                if (i > start) {
+                    parts.add(version.substring(start, i));
+                }
+                start = i + 1;
+            } else if (i > start && Character.isDigit(c) != Character.isDigit(version.charAt(i - 1))) {
+                parts.add(version.substring(start, i));
+                start = i;
+            }
+        }
+        return parts;
+    }
+
+    private static boolean isNumeric(String part) {
+        for (int i = 0; i < part.length(); i++) {
+            if (!Character.isDigit(part.charAt(i))) {
+                return false;
+            }
+        }
+        return !part.isEmpty();
+    }
+
+    private static String stripLeadingZeros(String digits) {
+        int i = 0;
+        while (i < digits.length() - 1 && digits.charAt(i) == '0') {
+            i++;
+        }
+        return digits.substring(i);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read back the graphs written by a BinaryGraphWriter.
+ */
+public class BinaryGraphReader {
+
+    /**
+     * Return every graph in the given stream keyed by the project directory
+     * it was loaded from, in the order they were written. The stream is read
+     * to the end but not closed.
+     *
+     * @param input where to read the graphs from
+     */
+    public static Map<String, GradleNode> read(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        DataInputStream data = new DataInputStream(buffered);
+        if (data.readInt() != BinaryGraphWriter.MAGIC || data.readInt() != BinaryGraphWriter.FORMAT_VERSION) {
+            throw new IOException("Not a binary dependency graph export");
+        }
+
+        Map<String, GradleNode> graphs = new LinkedHashMap<String, GradleNode>();
+        while (true) {
+            // the format has no record count, so look ahead for the end of the stream
+            buffered.mark(1);
+            if (buffered.read() < 0) {
+                return graphs;
+            }
+            buffered.reset();
+
+            String projectPath = data.readUTF();
+            graphs.put(projectPath, DependencyGraphCache.readGraph(data));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A GraphWriter for the compact binary form, which starts with a magic number
+ * and format version followed by a record for each project. Each record is the
+ * project directory as modified UTF-8 and then the graph in the same pooled
+ * string format used by DependencyGraphCache files.
+ */
+public class BinaryGraphWriter extends GraphWriter {
+
+    public static final int MAGIC = 0x47564758; // GVGX
+    public static final int FORMAT_VERSION = 2;
+
+    private final DataOutputStream output;
+
+    public BinaryGraphWriter(OutputStream output) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.output.writeInt(MAGIC);
+        this.output.writeInt(FORMAT_VERSION);
+    }
+
+    @Override
+    public void write(String projectPath, GradleNode root) throws IOException {
+        output.writeUTF(projectPath);
+        DependencyGraphCache.writeGraph(output, root);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * A GraphWriter for CSV, writing a single header followed by one row for each
+ * dependency edge in the order the hierarchy would show them. Rows carry the
+ * project directory, Gradle project path and configuration they belong to,
+ * their depth below the configuration starting at 1, and the coordinates of
+ * the dependency that pulled them in, which is empty for direct dependencies.
+ */
+public class CsvGraphWriter extends GraphWriter {
+
+    private static final String HEADER =
+            "projectDir,project,configuration,depth,group,id,version,replacedBy,omitted,parent\n";
+
+    private final Writer writer;
+
+    public CsvGraphWriter(OutputStream output) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"));
+        this.writer.write(HEADER);
+    }
+
+    @Override
+    public void write(String projectPath, GradleNode root) throws IOException {
+        writeProject(projectPath, root);
+    }
+
+    private void writeProject(String projectPath, GradleNode project) throws IOException {
+        for (GradleNode child : project.dependencies) {
+            if ("project".equals(child.getNodeType())) {
+                writeProject(projectPath, child);
+            } else {
+                for (GradleNode dependency : child.dependencies) {
+                    writeDependency(projectPath, project.projectPath, child.name, 1, dependency, null);
+                }
+            }
+        }
+    }
+
+    private void writeDependency(String projectPath, String project, String configuration, int depth,
+                                 GradleNode node, GradleNode parent) throws IOException {
+        writeValue(projectPath, false);
+        writeValue(project, true);
+        writeValue(configuration, true);
+        writeValue(String.valueOf(depth), true);
+        if (node.name == null) {
+            writeValue(node.group, true);
+            writeValue(node.id, true);
+            writeValue(node.version, true);
+        } else {
+            // an unresolved dependency only has a description
+            writeValue(node.name, true);
+            writeValue(null, true);
+            writeValue(null, true);
+        }
+        writeValue(node.replacedByVersion, true);
+        writeValue(String.valueOf(node.omitted), true);
+        writeValue(parent == null ? null : parent.getName(), true);
+        writer.write('\n');
+
+        for (GradleNode child : node.dependencies) {
+            writeDependency(projectPath, project, configuration, depth + 1, child, node);
+        }
+    }
+
+    private void writeValue(String value, boolean separate) throws IOException {
+        if (separate) {
+            writer.write(',');
+        }
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+        } else {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The formats a dependency graph can be exported in.
+ */
+public enum ExportFormat {
+
+    JSON("json") {
+        @Override
+        public GraphWriter newWriter(OutputStream output) throws IOException {
+            return new JsonGraphWriter(output);
+        }
+    },
+
+    CSV("csv") {
+        @Override
+        public GraphWriter newWriter(OutputStream output) throws IOException {
+            return new CsvGraphWriter(output);
+        }
+    },
+
+    BINARY("bin") {
+        @Override
+        public GraphWriter newWriter(OutputStream output) throws IOException {
+            return new BinaryGraphWriter(output);
+        }
+    };
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Return the file extension for files in this format, without the dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Return a new writer for this format that writes to the given output.
+     *
+     * @param output where to write graphs
+     */
+    public abstract GraphWriter newWriter(OutputStream output) throws IOException;
+
+    /**
+     * Return the format with the given name, ignoring case, or null if there
+     * isn't one.
+     *
+     * @param name the name of the format
+     */
+    public static ExportFormat forName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Implementations of this class write the dependency graphs of one or more
+ * projects, one after the other, to a single output.
+ */
+public abstract class GraphWriter implements Closeable {
+
+    /**
+     * Write the graph loaded from the given project directory.
+     *
+     * @param projectPath the path to the project the graph was loaded from
+     * @param root        the root of the graph
+     */
+    public abstract void write(String projectPath, GradleNode root) throws IOException;
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instances of this class stream a GradleNode graph out as JSON, one node at a
+ * time through a fixed size buffer, without ever building the document or a
+ * copy of the graph in memory and without recursing, so deep graphs are fine.
+ * Each graph is written as a single line in the following schema:
+ *
+ * <pre>
+ * graph := {"format": "gradle-view-graph", "version": 1, "projectDir": string, "root": node}
+ * node  := {"type": string,
+ *           "name": string, "path": string, "dir": string,
+ *           "group": string, "id": string, "version": string, "replacedBy": string, "reason": string,
+ *           "omitted": true,
+ *           "@id": number,
+ *           "children": [node, ...]}
+ *        | {"@ref": number}
+ * </pre>
+ *
+ * Members of a node that aren't set are left out, so a project node usually
+ * only has a "type", "name", "path" and "dir", and a dependency node only a
+ * "type", "group", "id" and "version". A subtree that shows up more than once
+ * with exactly the same contents is only written in full the first time,
+ * where it's given an "@id". Every later copy is written as {"@ref": n}
+ * instead, which stands for the subtree with that "@id". Numbers start at 1
+ * and count up in the order the subtrees are first written.
+ */
+public class JsonGraphExporter {
+
+    public static final String FORMAT = "gradle-view-graph";
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+
+    // structure of the graph being written, see Subtrees
+    private Subtrees subtrees;
+    private int[] refs;
+    private int nextRef;
+
+    // whether the node being written has any members yet, every later one is preceded by a comma
+    private boolean hasMembers;
+
+    // the nodes whose children are being written, from the root down
+    private GradleNode[] openNodes = new GradleNode[64];
+    private int[] openChildIndexes = new int[64];
+    private int[] openChildOrders = new int[64];
+    private int depth;
+
+    /**
+     * Construct a new exporter that writes UTF-8 to the given stream.
+     *
+     * @param output where to write graphs
+     */
+    public JsonGraphExporter(OutputStream output) throws IOException {
+        this(new OutputStreamWriter(output, "UTF-8"));
+    }
+
+    /**
+     * Construct a new exporter that writes to the given writer. Nothing is
+     * buffered in front of it besides the exporter's own buffer.
+     *
+     * @param writer where to write graphs
+     */
+    public JsonGraphExporter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Write the given graph as a single line, without the line break.
+     *
+     * @param projectPath the path to the project the graph was loaded from
+     * @param root        the root of the graph
+     */
+    public void export(String projectPath, GradleNode root) throws IOException {
+        subtrees = new Subtrees(root);
+        refs = new int[subtrees.count.length];
+        nextRef = 0;
+        try {
+            write("{\"format\":");
+            writeString(FORMAT);
+            write(",\"version\":");
+            writeInt(FORMAT_VERSION);
+            write(",\"projectDir\":");
+            writeString(projectPath);
+            write(",\"root\":");
+            writeTree(root);
+            write('}');
+        } finally {
+            subtrees = null;
+            refs = null;
+            Arrays.fill(openNodes, 0, depth, null);
+            depth = 0;
+        }
+    }
+
+    /**
+     * Write a line break, to separate graphs written to the same output.
+     */
+    public void newLine() throws IOException {
+        write('\n');
+    }
+
+    /**
+     * Write out anything still in the buffer and flush the underlying writer.
+     */
+    public void flush() throws IOException {
+        drain();
+        writer.flush();
+    }
+
+    /**
+     * Flush and close the underlying writer.
+     */
+    public void close() throws IOException {
+        drain();
+        writer.close();
+    }
+
+    private void writeTree(GradleNode root) throws IOException {
+        openNode(root, 0);
+        while (depth > 0) {
+            int top = depth - 1;
+            GradleNode node = openNodes[top];
+            int i = openChildIndexes[top];
+            if (i < node.dependencies.size()) {
+                if (i > 0) {
+                    write(',');
+                }
+                // children follow each other in pre-order, each one right after all of its predecessor's subtree
+                int childOrder = openChildOrders[top];
+                openChildOrders[top] += subtrees.size[childOrder];
+                openChildIndexes[top] = i + 1;
+                openNode(node.dependencies.get(i), childOrder);
+            } else {
+                write("]}");
+                openNodes[top] = null;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Write the start of the given node, or all of it when it has no children
+     * to write, where order is its position in a pre-order walk of the graph.
+     */
+    private void openNode(GradleNode node, int order) throws IOException {
+        int structure = subtrees.structure[order];
+        boolean shared = subtrees.count[structure] > 1;
+        if (shared && refs[structure] != 0) {
+            write("{\"@ref\":");
+            writeInt(refs[structure]);
+            write('}');
+            return;
+        }
+
+        write('{');
+        hasMembers = false;
+        writeField("type", node.nodeType);
+        writeField("name", node.name);
+        writeField("path", node.projectPath);
+        writeField("dir", node.projectDir);
+        writeField("group", node.group);
+        writeField("id", node.id);
+        writeField("version", node.version);
+        writeField("replacedBy", node.replacedByVersion);
+        writeField("reason", node.reason);
+        if (node.omitted) {
+            writeKey("omitted");
+            write("true");
+        }
+        if (shared) {
+            refs[structure] = ++nextRef;
+            writeKey("@id");
+            writeInt(refs[structure]);
+        }
+
+        if (node.dependencies.isEmpty()) {
+            write('}');
+            return;
+        }
+        writeKey("children");
+        write('[');
+        if (depth == openNodes.length) {
+            openNodes = Arrays.copyOf(openNodes, depth * 2);
+            openChildIndexes = Arrays.copyOf(openChildIndexes, depth * 2);
+            openChildOrders = Arrays.copyOf(openChildOrders, depth * 2);
+        }
+        openNodes[depth] = node;
+        openChildIndexes[depth] = 0;
+        openChildOrders[depth] = order + 1;
+        depth++;
+    }
+
+    private void writeField(String key, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writeKey(key);
+        writeString(value);
+    }
+
+    private void writeKey(String key) throws IOException {
+        if (hasMembers) {
+            write(',');
+        }
+        hasMembers = true;
+        write('"');
+        write(key);
+        write("\":");
+    }
+
+    private void writeString(String s) throws IOException {
+        write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                write('\\');
+                write(c);
+            } else if (c == '\n') {
+                write("\\n");
+            } else if (c == '\r') {
+                write("\\r");
+            } else if (c == '\t') {
+                write("\\t");
+            } else if (c < 0x20) {
+                write("\\u00");
+                write(HEX[c >> 4]);
+                write(HEX[c & 0xF]);
+            } else {
+                write(c);
+            }
+        }
+        write('"');
+    }
+
+    private void writeInt(int value) throws IOException {
+        if (value >= 10) {
+            writeInt(value / 10);
+        }
+        write((char) ('0' + value % 10));
+    }
+
+    private void write(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = c;
+    }
+
+    private void drain() throws IOException {
+        writer.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Instances of this class number every node of a graph in pre-order and
+     * give each one the number of its structure, which is the same for any
+     * two nodes whose subtrees have exactly the same contents. Only a few ints
+     * are kept per node, and one key per distinct subtree.
+     */
+    private static class Subtrees {
+
+        // pre-order position -> structure number and subtree size, including the node itself
+        private int[] structure = new int[1024];
+        private int[] size = new int[1024];
+
+        // structure number -> how many times the subtree is written in full or referenced
+        private final int[] count;
+
+        Subtrees(GradleNode root) {
+            Map<SubtreeKey, Integer> structures = new HashMap<SubtreeKey, Integer>();
+            number(root, structures);
+            count = new int[structures.size()];
+            countCopies(root);
+        }
+
+        /**
+         * Walk the graph depth first, numbering each subtree once all of its
+         * children have been numbered.
+         */
+        private void number(GradleNode root, Map<SubtreeKey, Integer> structures) {
+            GradleNode[] nodes = new GradleNode[64];
+            int[] orders = new int[64];
+            int[] childIndexes = new int[64];
+            int[][] childStructures = new int[64][];
+            int depth = 0;
+            int nextOrder = 0;
+
+            nodes[0] = root;
+            orders[0] = nextOrder++;
+            childStructures[0] = new int[root.dependencies.size()];
+            depth++;
+            while (depth > 0) {
+                int top = depth - 1;
+                GradleNode node = nodes[top];
+                int i = childIndexes[top];
+                if (i < node.dependencies.size()) {
+                    childIndexes[top] = i + 1;
+                    GradleNode child = node.dependencies.get(i);
+                    if (depth == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, depth * 2);
+                        orders = Arrays.copyOf(orders, depth * 2);
+                        childIndexes = Arrays.copyOf(childIndexes, depth * 2);
+                        childStructures = Arrays.copyOf(childStructures, depth * 2);
+                    }
+                    nodes[depth] = child;
+                    orders[depth] = nextOrder++;
+                    childIndexes[depth] = 0;
+                    childStructures[depth] = new int[child.dependencies.size()];
+                    depth++;
+                } else {
+                    int order = orders[top];
+                    int[] children = childStructures[top];
+                    SubtreeKey key = new SubtreeKey(node, children);
+                    Integer id = structures.get(key);
+                    if (id == null) {
+                        id = structures.size();
+                        structures.put(key, id);
+                    }
+
+                    ensureCapacity(order + 1);
+                    structure[order] = id;
+                    size[order] = nextOrder - order;
+
+                    nodes[top] = null;
+                    childStructures[top] = null;
+                    depth--;
+                    if (depth > 0) {
+                        childStructures[depth - 1][childIndexes[depth - 1] - 1] = id;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Walk the graph the same way it's written, counting each subtree
+         * with children without looking inside the copies that will only be
+         * written as references.
+         */
+        private void countCopies(GradleNode root) {
+            GradleNode[] nodes = new GradleNode[64];
+            int[] orders = new int[64];
+            int[] childOrders = new int[64];
+            int depth = 0;
+
+            nodes[depth] = root;
+            orders[depth] = 0;
+            depth++;
+            while (depth > 0) {
+                depth--;
+                GradleNode node = nodes[depth];
+                int order = orders[depth];
+                nodes[depth] = null;
+
+                List<GradleNode> children = node.dependencies;
+                if (children.isEmpty() || count[structure[order]]++ > 0) {
+                    continue;
+                }
+
+                int needed = depth + children.size();
+                if (needed > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, Math.max(needed, nodes.length * 2));
+                    orders = Arrays.copyOf(orders, nodes.length);
+                }
+                if (children.size() > childOrders.length) {
+                    childOrders = new int[Math.max(children.size(), childOrders.length * 2)];
+                }
+
+                // each child starts right after all of its predecessor's subtree
+                int childOrder = order + 1;
+                for (int i = 0; i < children.size(); i++) {
+                    childOrders[i] = childOrder;
+                    childOrder += size[childOrder];
+                }
+                // pushed in reverse so they come off in the same order they're written in
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    nodes[depth] = children.get(i);
+                    orders[depth] = childOrders[i];
+                    depth++;
+                }
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > structure.length) {
+                int length = Math.max(capacity, structure.length * 2);
+                structure = Arrays.copyOf(structure, length);
+                size = Arrays.copyOf(size, length);
+            }
+        }
+    }
+
+    /**
+     * A key for a subtree made out of the contents of its root and the
+     * structure numbers of its children.
+     */
+    private static class SubtreeKey {
+        private final GradleNode node;
+        private final int[] children;
+        private final int hash;
+
+        SubtreeKey(GradleNode node, int[] children) {
+            this.node = node;
+            this.children = children;
+            this.hash = 31 * Arrays.hashCode(new Object[]{node.name, node.group, node.id, node.version,
+                    node.replacedByVersion, node.nodeType, node.projectPath}) + Arrays.hashCode(children);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SubtreeKey)) {
+                return false;
+            }
+            SubtreeKey that = (SubtreeKey) o;
+            GradleNode a = node;
+            GradleNode b = that.node;
+            return hash == that.hash
+                    && a.omitted == b.omitted
+                    && equal(a.name, b.name)
+                    && equal(a.group, b.group)
+                    && equal(a.id, b.id)
+                    && equal(a.version, b.version)
+                    && equal(a.replacedByVersion, b.replacedByVersion)
+                    && equal(a.reason, b.reason)
+                    && equal(a.nodeType, b.nodeType)
+                    && equal(a.projectPath, b.projectPath)
+                    && equal(a.projectDir, b.projectDir)
+                    && Arrays.equals(children, that.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A GraphWriter for JSON, writing each project as a single line in the schema
+ * described by JsonGraphExporter, so that the graphs of several projects can
+ * be written to the same output and read back one line at a time.
+ */
+public class JsonGraphWriter extends GraphWriter {
+
+    private final JsonGraphExporter exporter;
+
+    public JsonGraphWriter(OutputStream output) throws IOException {
+        this.exporter = new JsonGraphExporter(output);
+    }
+
+    @Override
+    public void write(String projectPath, GradleNode root) throws IOException {
+        exporter.export(projectPath, root);
+        exporter.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        exporter.close();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.ConfigurationFilter;
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.GradleNode;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Instances of this class keep one saved snapshot of the dependency graph of
+ * each project and ConfigurationFilter, so a later graph can be compared
+ * against one that resolved the same configurations. Snapshots are
+ * written in the binary export format, so a file exported from the command
+ * line can be used as a snapshot too.
+ */
+public class SnapshotStore {
+
+    private final File snapshotDir;
+
+    /**
+     * Construct a new store that keeps its snapshots in the given directory.
+     *
+     * @param snapshotDir where to keep snapshots
+     */
+    public SnapshotStore(File snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * Save the given graph as the snapshot of the given project, replacing
+     * any earlier one.
+     *
+     * @param projectPath the path to the target project
+     * @param root        the root of the graph
+     */
+    public void save(String projectPath, GradleNode root) throws IOException {
+        save(projectPath, ConfigurationFilter.ALL, root);
+    }
+
+    /**
+     * Save the given graph, which was loaded with the given filter, as the
+     * snapshot of the given project, replacing any earlier one saved with the
+     * same filter.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the graph was loaded with
+     * @param root        the root of the graph
+     */
+    public synchronized void save(String projectPath, ConfigurationFilter filter, GradleNode root) throws IOException {
+        FileUtils.forceMkdir(snapshotDir);
+        File scratchFile = File.createTempFile("snapshot", ".tmp", snapshotDir);
+        try {
+            GraphWriter writer = new BinaryGraphWriter(new FileOutputStream(scratchFile));
+            try {
+                writer.write(projectPath, root);
+            } finally {
+                writer.close();
+            }
+            Files.move(scratchFile.toPath(), snapshotFile(projectPath, filter).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.deleteQuietly(scratchFile);
+        }
+    }
+
+    /**
+     * Return the saved snapshot of the given project, or null if there isn't
+     * one.
+     *
+     * @param projectPath the path to the target project
+     */
+    public GradleNode load(String projectPath) throws IOException {
+        return load(projectPath, ConfigurationFilter.ALL);
+    }
+
+    /**
+     * Return the saved snapshot of the given project that was loaded with the
+     * given filter, or null if there isn't one.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the snapshot was loaded with
+     */
+    public synchronized GradleNode load(String projectPath, ConfigurationFilter filter) throws IOException {
+        File snapshotFile = snapshotFile(projectPath, filter);
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+        InputStream input = new FileInputStream(snapshotFile);
+        try {
+            Map<String, GradleNode> graphs = BinaryGraphReader.read(input);
+            return graphs.isEmpty() ? null : graphs.values().iterator().next();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Return when the snapshot of the given project was saved, in
+     * milliseconds since the epoch, or 0 if there isn't one.
+     *
+     * @param projectPath the path to the target project
+     */
+    public long getSavedTime(String projectPath) {
+        return getSavedTime(projectPath, ConfigurationFilter.ALL);
+    }
+
+    /**
+     * Return when the snapshot of the given project loaded with the given
+     * filter was saved, in milliseconds since the epoch, or 0 if there isn't
+     * one.
+     *
+     * @param projectPath the path to the target project
+     * @param filter      the filter the snapshot was loaded with
+     */
+    public long getSavedTime(String projectPath, ConfigurationFilter filter) {
+        return snapshotFile(projectPath, filter).lastModified();
+    }
+
+    private File snapshotFile(String projectPath, ConfigurationFilter filter) {
+        return new File(snapshotDir, DependencyGraphCache.cacheKey(projectPath, filter) + ".bin");
+    }
+}
@@ -16,10 +16,24 @@
 
 package com.github.rholder.gradle.intellij;
 
+import com.github.rholder.gradle.dependency.BuildFileWatcher;
+import com.github.rholder.gradle.dependency.ConfigurationFilter;
+import com.github.rholder.gradle.dependency.ConflictAnalysis;
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.DependencySearchIndex;
+import com.github.rholder.gradle.dependency.GraphDiff;
 import com.github.rholder.gradle.dependency.GradleNode;
+import com.github.rholder.gradle.dependency.LoadOptions;
+import com.github.rholder.gradle.dependency.ProjectLoadListener;
+import com.github.rholder.gradle.dependency.RefreshScheduler;
+import com.github.rholder.gradle.export.SnapshotStore;
+import com.github.rholder.gradle.log.BufferedToolingLogger;
 import com.github.rholder.gradle.log.ToolingLogger;
+import com.github.rholder.gradle.ui.ConflictPanel;
 import com.github.rholder.gradle.ui.DependencyCellRenderer;
+import com.github.rholder.gradle.ui.DependencyTreeModel;
 import com.github.rholder.gradle.ui.ViewActionListener;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionToolbar;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
@@ -31,37 +45,77 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.SimpleToolWindowPanel;
 import com.intellij.openapi.ui.Splitter;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SearchTextField;
 import com.intellij.ui.treeStructure.SimpleTree;
 import com.intellij.util.Consumer;
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.gradle.tooling.BuildCancelledException;
+import org.gradle.tooling.CancellationToken;
 
+import javax.swing.JPanel;
+import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.JTree;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.tree.TreePath;
+import java.awt.BorderLayout;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import static com.github.rholder.gradle.dependency.DependencyConversionUtil.loadProjectDependenciesFromModel;
-import static com.github.rholder.gradle.ui.TreeUtil.convertToHierarchyTreeNode;
-import static com.github.rholder.gradle.ui.TreeUtil.convertToSortedTreeNode;
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.loadProjectDependencies;
 
 public class DependencyViewer extends SimpleToolWindowPanel {
 
+    // how many matches to expand the hierarchy down to when the filter changes
+    private static final int EXPANDED_MATCHES = 20;
+
     private final Project project;
     private final ToolWindow toolWindow;
     private final Splitter splitter;
     private final ToolingLogger toolingLogger;
     private final DependencyCellRenderer dependencyCellRenderer;
     private final JTextArea information;
+    private final JTabbedPane tabs;
+    private final ConflictPanel conflictPanel;
     private String gradleBaseDir;
     private boolean shouldPromptForCurrentProject;
+    private final GradleService gradleService;
+
+    // the build files of gradleBaseDir are only watched while auto refresh is on, only touched on the event dispatch thread
+    private boolean autoRefresh;
+    private volatile ConfigurationFilter configurationFilter = ConfigurationFilter.ALL;
+    private LocalFileSystem.WatchRequest watchRequest;
+    private volatile BuildFileWatcher buildFileWatcher;
+    private volatile boolean comparing;
+
+    // the tree model showing "Loading..." while a build loads, only touched on the event dispatch thread
+    private DependencyTreeModel loadingTreeModel;
+
+    // the search index, tree and filter of what's currently shown, only touched on the event dispatch thread
+    private final SearchTextField filterField;
+    private DependencySearchIndex searchIndex;
+    private DependencySearchIndex.Result searchResult;
+    private DependencyTreeModel treeModel;
+    private JTree tree;
+    private GradleNode currentRoot;
 
     public DependencyViewer(Project p, ToolWindow t) {
         super(true, true);
@@ -69,6 +123,10 @@ public class DependencyViewer extends SimpleToolWindowPanel {
         this.toolWindow = t;
         this.splitter = new Splitter(false, 0.75f);
         this.information = new JTextArea();
+        this.conflictPanel = new ConflictPanel();
+        this.tabs = new JTabbedPane();
+        this.tabs.addTab("Dependencies", new JPanel());
+        this.tabs.addTab("Conflicts", conflictPanel);
         this.toolingLogger = initToolingLogger();
 
         this.dependencyCellRenderer = new DependencyCellRenderer();
@@ -78,13 +136,25 @@ public class DependencyViewer extends SimpleToolWindowPanel {
         this.dependencyCellRenderer.normalUnselected = JBColor.BLACK;
         this.information.setEditable(false);
 
+        this.filterField = new SearchTextField();
+        this.filterField.addDocumentListener(newFilterListener());
+
         this.shouldPromptForCurrentProject = true;
 
         // TODO clean all of this up
-        GradleService gradleService = ServiceManager.getService(project, GradleService.class);
+        this.gradleService = ServiceManager.getService(project, GradleService.class);
         gradleService.addListener(new ViewActionListener() {
             @Override
             public void refresh() {
+                refresh(false);
+            }
+
+            @Override
+            public void refreshWithoutCache() {
+                refresh(true);
+            }
+
+            private void refresh(boolean ignoreCache) {
                 // prompt only on first use of tool panel
                 if (shouldPromptForCurrentProject) {
                     // ask to initialize view for this project to the current project
@@ -102,29 +172,8 @@ public class DependencyViewer extends SimpleToolWindowPanel {
                 // initialize an empty view even if the gradleBaseDir is set while we load everything in the background
                 updateView(null, null);
 
-                new SwingWorker<GradleNode, Void>() {
-                    protected GradleNode doInBackground() throws Exception {
-                        try {
-                            Map<String, GradleNode> dependencyMap = loadProjectDependenciesFromModel(gradleBaseDir, toolingLogger);
-                            GradleNode rootDependency = dependencyMap.get("root");
-
-                            GradleNode target = dependencyCellRenderer.selectedGradleNode;
-                            GradleNode selectedDependency;
-                            if(target != null && target.group != null) {
-                                selectedDependency = target;
-                            } else {
-                                selectedDependency = new GradleNode("No dependency selected");
-                            }
-
-                            updateView(rootDependency, selectedDependency);
-                            return rootDependency;
-                        } catch(Exception e) {
-                            e.printStackTrace();
-                            toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
-                            throw new RuntimeException(e);
-                        }
-                    }
-                }.execute();
+                updateBuildFileWatcher();
+                loadDependencies(false, ignoreCache);
             }
 
             @Override
@@ -133,18 +182,63 @@ public class DependencyViewer extends SimpleToolWindowPanel {
                 SwingUtilities.invokeLater(new Runnable() {
                     @Override
                     public void run() {
+                        // rows change width, which the tree only notices when told its nodes changed
+                        if(tree != null) {
+                            tree.treeDidChange();
+                        }
                         splitter.repaint();
                         splitter.validate();
                     }
                 });
             }
 
+            @Override
+            public void toggleAutoRefresh() {
+                autoRefresh = !autoRefresh;
+                updateBuildFileWatcher();
+            }
+
+            @Override
+            public void saveSnapshot() {
+                DependencyViewer.this.saveSnapshot();
+            }
+
+            @Override
+            public void toggleCompareWithSnapshot() {
+                comparing = !comparing;
+                showCurrentRoot();
+            }
+
+            @Override
+            public void chooseConfigurationFilter() {
+                List<ConfigurationFilter> presets = ConfigurationFilter.getPresets();
+                String[] titles = new String[presets.size()];
+                for(int i = 0; i < titles.length; i++) {
+                    titles[i] = presets.get(i).getTitle();
+                }
+
+                int chosen = Messages.showChooseDialog(
+                        "Which configurations should be resolved? Skipped configurations are never resolved.",
+                        "Gradle Dependency Viewer", titles, configurationFilter.getTitle(), Messages.getQuestionIcon());
+                if(chosen >= 0 && !presets.get(chosen).equals(configurationFilter)) {
+                    configurationFilter = presets.get(chosen);
+                    refresh();
+                }
+            }
+
             @Override
             public void reset() {
                 gradleBaseDir = null;
                 refresh();
             }
         });
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, newBuildFileChangeListener());
+        Disposer.register(project, new Disposable() {
+            public void dispose() {
+                // nothing else releases the watched root, which would otherwise outlive the project
+                stopWatchingBuildFiles();
+            }
+        });
         gradleService.refresh();
 
         setContent(splitter);
@@ -156,15 +250,200 @@ public class DependencyViewer extends SimpleToolWindowPanel {
         setToolbar(actionToolbar.getComponent());
     }
 
+    /**
+     * Load the dependencies of the current project in the background. When
+     * asked to keep the current view, it stays on screen until the new graph
+     * is ready instead of being replaced by the cached graph first. When
+     * asked to ignore the cache, the cached graph is dropped and the build is
+     * resolved again even if no build files changed.
+     */
+    private void loadDependencies(final boolean keepCurrentView, final boolean ignoreCache) {
+        // overlapping refreshes of the same build are coalesced, and a running one is cancelled
+        final String projectDir = gradleBaseDir;
+        final ConfigurationFilter filter = configurationFilter;
+        gradleService.getRefreshScheduler().request(projectDir, new RefreshScheduler.RefreshTask() {
+            public void run(CancellationToken cancellationToken) throws Exception {
+                try {
+                    GradleNode target = dependencyCellRenderer.getSelectedGradleNode();
+                    GradleNode selectedDependency;
+                    if(target != null && target.group != null) {
+                        selectedDependency = target;
+                    } else {
+                        selectedDependency = new GradleNode("No dependency selected");
+                    }
+
+                    // show the last known graph right away, it's replaced below if any build files changed
+                    DependencyGraphCache graphCache = gradleService.getGraphCache();
+                    if(ignoreCache && projectDir != null) {
+                        graphCache.invalidate(projectDir, filter);
+                    }
+                    DependencyGraphCache.Entry cached = projectDir == null ? null : graphCache.load(projectDir, filter);
+                    if(cached == null || !keepCurrentView) {
+                        updateView(cached == null ? null : cached.root, selectedDependency);
+                    }
+
+                    // without a cached graph to look at, show each project as soon as it's resolved
+                    Map<String, GradleNode> dependencyMap = loadProjectDependencies(projectDir, toolingLogger,
+                            gradleService.getConnectionManager(), new LoadOptions()
+                                    .withGraphCache(graphCache)
+                                    .withProjectLoadListener(cached == null ? newProjectLoadListener() : null)
+                                    .withCancellationToken(cancellationToken)
+                                    .withFilter(filter));
+                    GradleNode rootDependency = dependencyMap.get("root");
+                    if(cached == null || rootDependency != cached.root) {
+                        updateView(rootDependency, selectedDependency);
+                    }
+                } catch(BuildCancelledException e) {
+                    // a newer refresh is already waiting to update the view
+                } catch(Exception e) {
+                    e.printStackTrace();
+                    toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start watching the build files of the current project if auto refresh
+     * is turned on, replacing any watcher of a previous project. Changes are
+     * reported by the IDE's virtual file system.
+     */
+    private void updateBuildFileWatcher() {
+        stopWatchingBuildFiles();
+
+        if(autoRefresh && gradleBaseDir != null) {
+            // directories outside of the open project aren't watched for changes unless we ask
+            watchRequest = LocalFileSystem.getInstance().addRootToWatch(gradleBaseDir, true);
+            buildFileWatcher = new BuildFileWatcher(gradleBaseDir, new BuildFileWatcher.BuildFileListener() {
+                public void buildFilesChanged(Set<String> changedFiles) {
+                    toolingLogger.log("Build files changed " + changedFiles);
+                    loadDependencies(true, false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop watching the build files of the current project, if they're being
+     * watched.
+     */
+    private void stopWatchingBuildFiles() {
+        if(buildFileWatcher != null) {
+            buildFileWatcher.close();
+            buildFileWatcher = null;
+        }
+        if(watchRequest != null) {
+            LocalFileSystem.getInstance().removeWatchedRoot(watchRequest);
+            watchRequest = null;
+        }
+    }
+
+    private BulkFileListener newBuildFileChangeListener() {
+        return new BulkFileListener.Adapter() {
+            @Override
+            public void after(List<? extends VFileEvent> events) {
+                BuildFileWatcher watcher = buildFileWatcher;
+                if(watcher != null) {
+                    for(VFileEvent event : events) {
+                        watcher.fileChanged(event.getPath());
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Save what's currently shown as the snapshot of the current project, in
+     * the background.
+     */
+    private void saveSnapshot() {
+        final GradleNode root = currentRoot;
+        final String projectDir = gradleBaseDir;
+        final ConfigurationFilter filter = configurationFilter;
+        if(root == null || projectDir == null) {
+            toolingLogger.log("Nothing has been loaded yet, there's nothing to save");
+            return;
+        }
+        new SwingWorker<Void, Void>() {
+            protected Void doInBackground() throws Exception {
+                try {
+                    gradleService.getSnapshotStore().save(projectDir, filter, root);
+                    toolingLogger.log("Saved a snapshot of " + projectDir);
+                } catch(IOException e) {
+                    toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+                }
+                return null;
+            }
+        }.execute();
+    }
+
+    /**
+     * Show what's currently loaded again, such as after turning the
+     * comparison with the saved snapshot on or off.
+     */
+    private void showCurrentRoot() {
+        final GradleNode root = currentRoot;
+        if(root != null) {
+            new SwingWorker<Void, Void>() {
+                protected Void doInBackground() throws Exception {
+                    updateView(root, null);
+                    return null;
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     * Return the changes between the saved snapshot of the current project
+     * and the given graph, or null if they aren't being compared.
+     */
+    private GradleNode compareWithSnapshot(GradleNode rootDependency) {
+        String projectDir = gradleBaseDir;
+        if(!comparing || rootDependency == null || projectDir == null) {
+            return null;
+        }
+        try {
+            SnapshotStore snapshotStore = gradleService.getSnapshotStore();
+            // only a snapshot that resolved the same configurations is worth comparing with
+            ConfigurationFilter filter = configurationFilter;
+            GradleNode snapshot = snapshotStore.load(projectDir, filter);
+            if(snapshot == null) {
+                toolingLogger.log("There's no saved snapshot of " + projectDir + " with " + filter.getTitle().toLowerCase()
+                        + " to compare with yet");
+                return null;
+            }
+            GraphDiff diff = GraphDiff.compare(snapshot, rootDependency);
+            return diff.toGradleNode("Changes since snapshot of " + new Date(snapshotStore.getSavedTime(projectDir, filter))
+                    + " (" + diff.getSummary() + ")");
+        } catch(IOException e) {
+            toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+            return null;
+        }
+    }
+
     private ToolingLogger initToolingLogger() {
-        return new ToolingLogger() {
-            public void log(final String line) {
-                // note: lots of log messages will freeze the dispatch thread
+        // batches lines onto the dispatch thread, since lots of log messages would otherwise freeze it
+        return new BufferedToolingLogger(information) {
+            @Override
+            protected boolean shouldShow() {
+                return gradleBaseDir != null;
+            }
+
+            @Override
+            protected void showLastLine(String line) {
+                toolWindow.setTitle("- " + gradleBaseDir + " - " + line);
+            }
+        };
+    }
+
+    private ProjectLoadListener newProjectLoadListener() {
+        return new ProjectLoadListener() {
+            public void projectLoaded(final GradleNode projectNode) {
                 SwingUtilities.invokeLater(new Runnable() {
                     public void run() {
-                        if(gradleBaseDir != null) {
-                            toolWindow.setTitle("- " + gradleBaseDir + " - " + line);
-                            information.append(line + "\n");
+                        if(loadingTreeModel != null) {
+                            loadingTreeModel.insertLoadedProject(projectNode);
                         }
                     }
                 });
@@ -172,33 +451,82 @@ public class DependencyViewer extends SimpleToolWindowPanel {
         };
     }
 
-    public void updateView(GradleNode rootDependency, final GradleNode selectedDependency) {
-        // TODO replace this hack with something that populates the GradleNode graph
-
-        DefaultMutableTreeNode fullRoot = new DefaultMutableTreeNode(new GradleNode("Project Dependencies"));
-        if(rootDependency == null) {
-            DefaultMutableTreeNode loading = new DefaultMutableTreeNode(new GradleNode("Loading..."));
-            fullRoot.add(loading);
-        } else {
-            DefaultMutableTreeNode flattenedRoot = convertToSortedTreeNode(rootDependency);
-            DefaultMutableTreeNode hierarchyRoot = convertToHierarchyTreeNode(rootDependency);
-            fullRoot.add(flattenedRoot);
-            fullRoot.add(hierarchyRoot);
+    private DocumentListener newFilterListener() {
+        return new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        };
+    }
+
+    /**
+     * Prune the tree down to whatever matches the filter field, narrowing the
+     * previous result when the filter only got longer.
+     */
+    private void applyFilter() {
+        if(searchIndex == null || treeModel == null) {
+            return;
         }
+        // filtering creates the nodes again, so whatever was expanded and is still shown is expanded again after
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(new TreePath(treeModel.getRoot()));
+        List<TreePath> expandedPaths = expanded == null ? new ArrayList<TreePath>() : Collections.list(expanded);
 
-        TreeModel treeModel = new DefaultTreeModel(fullRoot);
+        searchResult = searchIndex.search(filterField.getText(), searchResult);
+        treeModel.setFilter(searchResult);
+        for(TreePath path : expandedPaths) {
+            TreePath found = treeModel.findPath(path);
+            if(found != null) {
+                tree.expandPath(found);
+            }
+        }
+        for(TreePath path : treeModel.getMatchPaths(EXPANDED_MATCHES)) {
+            tree.makeVisible(path);
+        }
+    }
+
+    public void updateView(final GradleNode rootDependency, final GradleNode selectedDependency) {
+        // nodes are only created as they're expanded, and dropped again when they're collapsed
+        final DependencyTreeModel treeModel = new DependencyTreeModel(rootDependency,
+                compareWithSnapshot(rootDependency));
         final SimpleTree fullTree = new SimpleTree(treeModel);
-        fullTree.setCellRenderer(dependencyCellRenderer);
+        fullTree.addTreeExpansionListener(treeModel);
+        fullTree.addTreeWillExpandListener(treeModel);
+        dependencyCellRenderer.install(fullTree);
+
+        // built here so that neither typing in the filter field nor sorting conflicts has to wait on them
+        final DependencySearchIndex index = rootDependency == null ? null : new DependencySearchIndex(rootDependency);
+        final ConflictAnalysis conflicts = rootDependency == null ? null : ConflictAnalysis.analyze(rootDependency);
 
         // expand path for first level from root
         //fullTree.expandPath(new TreePath(hierarchyRoot.getNextNode().getPath()));
 
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
+                loadingTreeModel = rootDependency == null ? treeModel : null;
+                currentRoot = rootDependency;
                 if(gradleBaseDir != null) {
                     toolWindow.setTitle("- " + gradleBaseDir);
                 }
-                splitter.setFirstComponent(ScrollPaneFactory.createScrollPane(fullTree));
+                searchIndex = index;
+                searchResult = null;
+                DependencyViewer.this.treeModel = treeModel;
+                tree = fullTree;
+                applyFilter();
+
+                JPanel treePanel = new JPanel(new BorderLayout());
+                treePanel.add(filterField, BorderLayout.NORTH);
+                treePanel.add(ScrollPaneFactory.createScrollPane(fullTree), BorderLayout.CENTER);
+                tabs.setComponentAt(0, treePanel);
+                conflictPanel.setAnalysis(conflicts);
+                splitter.setFirstComponent(tabs);
                 splitter.setSecondComponent(ScrollPaneFactory.createScrollPane(information));
             }
         });
@@ -16,13 +16,22 @@
 
 package com.github.rholder.gradle.intellij;
 
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.GradleConnectionManager;
+import com.github.rholder.gradle.dependency.RefreshScheduler;
+import com.github.rholder.gradle.export.SnapshotStore;
 import com.github.rholder.gradle.ui.ViewActionListener;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
 import com.intellij.openapi.project.Project;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.GRADLE_VIEW_CACHE_DIR_KEY;
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.getCacheDir;
+
 /**
  * Instances of this class maintain IntelliJ Project specific service state and
  * manage listener callbacks.
@@ -31,8 +40,56 @@ public class GradleService extends AbstractProjectComponent {
 
     private List<ViewActionListener> registeredListeners = new ArrayList<ViewActionListener>();
 
+    private final GradleConnectionManager connectionManager = new GradleConnectionManager();
+    private final DependencyGraphCache graphCache;
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler();
+    private final SnapshotStore snapshotStore;
+
     public GradleService(Project project) {
         super(project);
+
+        // keep extracted and cached files with the rest of the IDE's caches unless told otherwise
+        if (System.getProperty(GRADLE_VIEW_CACHE_DIR_KEY) == null) {
+            System.setProperty(GRADLE_VIEW_CACHE_DIR_KEY, new File(PathManager.getSystemPath(), "gradle-view").getPath());
+        }
+        this.graphCache = new DependencyGraphCache(new File(getCacheDir(), "graphs"));
+        this.snapshotStore = new SnapshotStore(new File(getCacheDir(), "snapshots"));
+    }
+
+    @Override
+    public void projectClosed() {
+        refreshScheduler.shutdown();
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Return the pool of Gradle connections shared by every view of this
+     * Project.
+     */
+    public GradleConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * Return the on-disk cache of previously loaded dependency graphs.
+     */
+    public DependencyGraphCache getGraphCache() {
+        return graphCache;
+    }
+
+    /**
+     * Return the scheduler that coalesces the refreshes of every view of this
+     * Project.
+     */
+    public RefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
+    /**
+     * Return the saved snapshots that dependency graphs can be compared with.
+     */
+    public SnapshotStore getSnapshotStore() {
+        return snapshotStore;
     }
 
     public void addListener(ViewActionListener listener) {
@@ -51,9 +108,39 @@ public class GradleService extends AbstractProjectComponent {
         }
     }
 
+    public void refreshWithoutCache() {
+        for(ViewActionListener r : registeredListeners) {
+            r.refreshWithoutCache();
+        }
+    }
+
     public void toggleShowReplaced() {
         for(ViewActionListener r : registeredListeners) {
             r.toggleShowReplaced();
         }
     }
+
+    public void toggleAutoRefresh() {
+        for(ViewActionListener r : registeredListeners) {
+            r.toggleAutoRefresh();
+        }
+    }
+
+    public void saveSnapshot() {
+        for(ViewActionListener r : registeredListeners) {
+            r.saveSnapshot();
+        }
+    }
+
+    public void toggleCompareWithSnapshot() {
+        for(ViewActionListener r : registeredListeners) {
+            r.toggleCompareWithSnapshot();
+        }
+    }
+
+    public void chooseConfigurationFilter() {
+        for(ViewActionListener r : registeredListeners) {
+            r.chooseConfigurationFilter();
+        }
+    }
 }
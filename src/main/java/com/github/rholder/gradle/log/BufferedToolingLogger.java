@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.log;
+
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A ToolingLogger that can be called from any thread as often as a build
+ * likes. Messages are queued without locking and appended to a text area in
+ * a single batch at most every FLUSH_INTERVAL_MS on the event dispatch
+ * thread, and the text area only ever keeps its last maxLines lines so it
+ * doesn't grow without bound across refreshes.
+ */
+public class BufferedToolingLogger implements ToolingLogger {
+
+    public static final int DEFAULT_MAX_LINES = 5000;
+
+    // roughly ten frames a second is plenty for a scrolling log
+    public static final int FLUSH_INTERVAL_MS = 100;
+
+    private final Queue<String> pending = new ConcurrentLinkedQueue<String>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final JTextArea textArea;
+    private final int maxLines;
+    private final Timer timer;
+
+    /**
+     * Construct a new logger that appends to the given text area, keeping at
+     * most DEFAULT_MAX_LINES lines in it.
+     *
+     * @param textArea where to show logged messages
+     */
+    public BufferedToolingLogger(JTextArea textArea) {
+        this(textArea, DEFAULT_MAX_LINES);
+    }
+
+    /**
+     * Construct a new logger that appends to the given text area, keeping at
+     * most the given number of lines in it.
+     *
+     * @param textArea where to show logged messages
+     * @param maxLines the most lines to keep
+     */
+    public BufferedToolingLogger(JTextArea textArea, int maxLines) {
+        this.textArea = textArea;
+        this.maxLines = maxLines;
+        this.timer = new Timer(FLUSH_INTERVAL_MS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                flush();
+            }
+        });
+        this.timer.setRepeats(false);
+    }
+
+    public void log(String message) {
+        pending.offer(message);
+        if (flushScheduled.compareAndSet(false, true)) {
+            timer.restart();
+        }
+    }
+
+    /**
+     * Return true if logged messages should be shown right now, otherwise
+     * they're dropped at the next flush. This is called on the event dispatch
+     * thread.
+     */
+    protected boolean shouldShow() {
+        return true;
+    }
+
+    /**
+     * Called on the event dispatch thread with the most recent message after
+     * each batch is shown, such as to put it in a title.
+     *
+     * @param message the most recent message
+     */
+    protected void showLastLine(String message) {
+    }
+
+    private void flush() {
+        // clear the flag first so anything logged while draining schedules another flush
+        flushScheduled.set(false);
+
+        // only the last maxLines messages of a burst would survive anyway, so keep just those
+        ArrayDeque<String> batch = new ArrayDeque<String>();
+        String message;
+        while ((message = pending.poll()) != null) {
+            if (batch.size() == maxLines) {
+                batch.pollFirst();
+            }
+            batch.addLast(message);
+        }
+        if (batch.isEmpty() || !shouldShow()) {
+            return;
+        }
+
+        StringBuilder b = new StringBuilder();
+        for (String line : batch) {
+            b.append(line).append('\n');
+        }
+        textArea.append(b.toString());
+
+        // the trailing newline leaves an empty last line, which isn't counted
+        int excess = textArea.getLineCount() - 1 - maxLines;
+        if (excess > 0) {
+            try {
+                textArea.replaceRange("", 0, textArea.getLineEndOffset(excess - 1));
+            } catch (BadLocationException e) {
+                textArea.setText("");
+            }
+        }
+
+        showLastLine(batch.getLast());
+    }
+}
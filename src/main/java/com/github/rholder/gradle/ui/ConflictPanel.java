@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.ui;
+
+import com.github.rholder.gradle.dependency.ConflictAnalysis;
+import com.github.rholder.gradle.dependency.VersionComparator;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+import java.awt.BorderLayout;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This panel shows a sortable table of every version conflict found by a
+ * ConflictAnalysis, with the requesters of whichever conflict is selected
+ * listed underneath it. Everything shown is precomputed, so sorting and
+ * selecting never walk the graph again.
+ */
+public class ConflictPanel extends JPanel {
+
+    private final ConflictTableModel conflictModel = new ConflictTableModel();
+    private final RequesterTableModel requesterModel = new RequesterTableModel();
+    private final JTable conflictTable;
+
+    public ConflictPanel() {
+        super(new BorderLayout());
+
+        conflictTable = new JTable(conflictModel);
+        conflictTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        TableRowSorter<ConflictTableModel> conflictSorter = new TableRowSorter<ConflictTableModel>(conflictModel);
+        conflictSorter.setComparator(1, VersionComparator.INSTANCE);
+        conflictTable.setRowSorter(conflictSorter);
+        conflictTable.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            public void valueChanged(ListSelectionEvent e) {
+                if(!e.getValueIsAdjusting()) {
+                    int row = conflictTable.getSelectedRow();
+                    requesterModel.setConflict(row < 0 ? null :
+                            conflictModel.getConflict(conflictTable.convertRowIndexToModel(row)));
+                }
+            }
+        });
+
+        JTable requesterTable = new JTable(requesterModel);
+        TableRowSorter<RequesterTableModel> requesterSorter = new TableRowSorter<RequesterTableModel>(requesterModel);
+        requesterSorter.setComparator(1, VersionComparator.INSTANCE);
+        requesterTable.setRowSorter(requesterSorter);
+
+        JSplitPane splitter = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(conflictTable), new JScrollPane(requesterTable));
+        splitter.setResizeWeight(0.6);
+        add(splitter, BorderLayout.CENTER);
+    }
+
+    /**
+     * Show the conflicts of the given analysis, or nothing if it's null.
+     *
+     * @param analysis the conflicts to show
+     */
+    public void setAnalysis(ConflictAnalysis analysis) {
+        conflictModel.setConflicts(analysis == null ?
+                Collections.<ConflictAnalysis.Conflict>emptyList() : analysis.getConflicts());
+        requesterModel.setConflict(null);
+    }
+
+    private static class ConflictTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"Module", "Winner", "Versions", "Requests", "Requesters", "Reason"};
+
+        private List<ConflictAnalysis.Conflict> conflicts = Collections.emptyList();
+
+        void setConflicts(List<ConflictAnalysis.Conflict> conflicts) {
+            this.conflicts = conflicts;
+            fireTableDataChanged();
+        }
+
+        ConflictAnalysis.Conflict getConflict(int row) {
+            return conflicts.get(row);
+        }
+
+        public int getRowCount() {
+            return conflicts.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 3 || column == 4 ? Integer.class : String.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            ConflictAnalysis.Conflict conflict = conflicts.get(row);
+            switch(column) {
+                case 0:
+                    return conflict.getModule();
+                case 1:
+                    return conflict.getWinningVersion();
+                case 2:
+                    return join(conflict.getRequestedVersions());
+                case 3:
+                    return conflict.getRequestCount();
+                case 4:
+                    return conflict.getRequesters().length;
+                default:
+                    return conflict.getReason();
+            }
+        }
+
+        private static String join(String[] versions) {
+            StringBuilder b = new StringBuilder();
+            for(String version : versions) {
+                if(b.length() > 0) {
+                    b.append(", ");
+                }
+                b.append(version);
+            }
+            return b.toString();
+        }
+    }
+
+    private static class RequesterTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"Requester", "Requested Version", "Count"};
+
+        private ConflictAnalysis.Requester[] requesters = new ConflictAnalysis.Requester[0];
+
+        void setConflict(ConflictAnalysis.Conflict conflict) {
+            requesters = conflict == null ? new ConflictAnalysis.Requester[0] : conflict.getRequesters();
+            fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return requesters.length;
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 2 ? Integer.class : String.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            ConflictAnalysis.Requester requester = requesters[row];
+            switch(column) {
+                case 0:
+                    return requester.getName();
+                case 1:
+                    return requester.getVersion();
+                default:
+                    return requester.getCount();
+            }
+        }
+    }
+}
@@ -16,33 +16,145 @@
 
 package com.github.rholder.gradle.ui;
 
+import com.github.rholder.gradle.dependency.GraphDiff;
 import com.github.rholder.gradle.dependency.GradleNode;
 
 import javax.swing.JLabel;
 import javax.swing.JTree;
+import javax.swing.ToolTipManager;
+import javax.swing.event.TreeSelectionEvent;
+import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreeCellRenderer;
+import javax.swing.tree.TreePath;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Insets;
+import java.awt.Rectangle;
 
 /**
  * Add some text highlighting and other visual indicators to the view of
  * GradleNode nodes in the tree depending on whether they've been replaced by
  * another dependency or omitted because they've been included elsewhere up the
- * tree.
+ * tree. Trees are drawn with fixed row heights, and the style, text and width
+ * of each LazyDependencyTreeNode are worked out the first time it's drawn, so
+ * that drawing a row never allocates anything and scrolling through very large
+ * trees stays smooth. Call {@link #install(JTree)} to use it on a tree.
  */
 public class DependencyCellRenderer extends JLabel implements TreeCellRenderer {
 
-    public boolean showReplaced = true;
+    /**
+     * How a node is drawn, which only depends on the node itself.
+     */
+    public enum Style {
+        NORMAL(""),
+        OMITTED(""),
+        ADDED("+ "),
+        REMOVED("- "),
+        UPGRADED("\u2191 "),
+        DOWNGRADED("\u2193 ");
+
+        private final String prefix;
+
+        Style(String prefix) {
+            this.prefix = prefix;
+        }
 
-    public GradleNode selectedGradleNode;
+        /**
+         * Return the style of the given node.
+         *
+         * @param node the node to draw
+         */
+        public static Style of(GradleNode node) {
+            GraphDiff.Kind change = GraphDiff.Kind.of(node);
+            if(change == GraphDiff.Kind.ADDED) {
+                return ADDED;
+            } else if(change == GraphDiff.Kind.REMOVED) {
+                return REMOVED;
+            } else if(change == GraphDiff.Kind.UPGRADED) {
+                return UPGRADED;
+            } else if(change == GraphDiff.Kind.DOWNGRADED) {
+                return DOWNGRADED;
+            }
+            return node.isOmitted() ? OMITTED : NORMAL;
+        }
+
+        /**
+         * Return the text to draw for the given node, which is in this style.
+         *
+         * @param node         the node to draw
+         * @param showReplaced true to show the version a dependency was replaced by
+         */
+        public String textOf(GradleNode node, boolean showReplaced) {
+            // changes always show both versions
+            if(this != NORMAL && this != OMITTED) {
+                return prefix + node.getFullName();
+            }
+            return showReplaced ? node.getFullName() : node.getName();
+        }
+    }
+
+    public boolean showReplaced = true;
 
     public Color omittedSelected = Color.MAGENTA;
     public Color omittedUnselected = Color.LIGHT_GRAY;
     public Color normalSelected = Color.RED;
     public Color normalUnselected = Color.BLACK;
 
+    // changes from a GraphDiff, which look the same whether they're selected or not
+    public Color added = new Color(0x00, 0x80, 0x00);
+    public Color removed = new Color(0xC0, 0x00, 0x00);
+    public Color upgraded = new Color(0x00, 0x50, 0xC0);
+    public Color downgraded = new Color(0xC0, 0x60, 0x00);
+
+    // the node of the lead selection of the last tree this was installed on, read when refreshing
+    private volatile GradleNode selectedGradleNode;
+
+    // every row has the same height, and is as wide as its text
+    private final Dimension preferredSize = new Dimension();
+    private final Insets insets = new Insets(0, 0, 0, 0);
+    private FontMetrics metrics;
+    private int rowHeight;
+
+    /**
+     * Draw the given tree with this renderer, giving every row the same
+     * height, and keep track of the node selected in it.
+     *
+     * @param tree the tree to draw
+     */
+    public void install(JTree tree) {
+        measure(tree);
+        tree.setCellRenderer(this);
+        tree.setRowHeight(rowHeight);
+        // with a fixed row height, rows are laid out as they're drawn instead of all at once
+        tree.setLargeModel(true);
+        tree.addTreeSelectionListener(new TreeSelectionListener() {
+            public void valueChanged(TreeSelectionEvent e) {
+                TreePath path = e.getNewLeadSelectionPath();
+                Object node = path == null ? null : path.getLastPathComponent();
+                selectedGradleNode = node instanceof DefaultMutableTreeNode ?
+                        (GradleNode) ((DefaultMutableTreeNode) node).getUserObject() : null;
+            }
+        });
+        ToolTipManager.sharedInstance().registerComponent(tree);
+    }
+
+    private void measure(JTree tree) {
+        setFont(tree.getFont());
+        metrics = getFontMetrics(getFont());
+        rowHeight = metrics.getHeight() + 2;
+    }
+
+    /**
+     * Return the node that was last selected in a tree this was installed on,
+     * or null if nothing is selected.
+     */
+    public GradleNode getSelectedGradleNode() {
+        return selectedGradleNode;
+    }
+
     public Component getTreeCellRendererComponent(JTree tree,
                                                   Object value,
                                                   boolean selected,
@@ -50,23 +162,96 @@ public class DependencyCellRenderer extends JLabel implements TreeCellRenderer {
                                                   boolean leaf,
                                                   int row,
                                                   boolean hasFocus) {
-        GradleNode gradleDependency = (GradleNode) ((DefaultMutableTreeNode) value).getUserObject();
-        String text = showReplaced ? gradleDependency.getFullName() : gradleDependency.getName();
+        if(metrics == null) {
+            measure(tree);
+        }
 
-        if(gradleDependency.isOmitted()) {
-            setForeground(selected ? omittedSelected : omittedUnselected);
+        Style style;
+        String text;
+        int textWidth;
+        if(value instanceof LazyDependencyTreeNode) {
+            LazyDependencyTreeNode node = (LazyDependencyTreeNode) value;
+            style = node.getStyle();
+            text = node.getText(showReplaced);
+            textWidth = node.getTextWidth(metrics);
         } else {
-            setForeground(selected ? normalSelected : normalUnselected);
+            // section titles and placeholders, of which there are only ever a few
+            GradleNode gradleNode = (GradleNode) ((DefaultMutableTreeNode) value).getUserObject();
+            style = Style.of(gradleNode);
+            text = style.textOf(gradleNode, showReplaced);
+            textWidth = metrics.stringWidth(text);
         }
 
-        if(selected) {
-            this.selectedGradleNode = gradleDependency;
+        switch(style) {
+            case ADDED:
+                setForeground(added);
+                break;
+            case REMOVED:
+                setForeground(removed);
+                break;
+            case UPGRADED:
+                setForeground(upgraded);
+                break;
+            case DOWNGRADED:
+                setForeground(downgraded);
+                break;
+            case OMITTED:
+                setForeground(selected ? omittedSelected : omittedUnselected);
+                break;
+            default:
+                setForeground(selected ? normalSelected : normalUnselected);
+                break;
         }
 
         setText(text);
-        setToolTipText(text);
-        setPreferredSize(new Dimension(640, getPreferredSize().height));
-
+        getInsets(insets);
+        preferredSize.width = textWidth + insets.left + insets.right;
+        preferredSize.height = rowHeight;
         return this;
     }
+
+    @Override
+    public Dimension getPreferredSize() {
+        // the tree only ever reads this, so the same instance is handed out every time
+        return preferredSize;
+    }
+
+    @Override
+    public String getToolTipText() {
+        return getText();
+    }
+
+    // like DefaultTreeCellRenderer, a renderer is only ever stamped onto the tree so none of these need to do anything
+
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void repaint(Rectangle r) {
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    }
+
+    @Override
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
 }
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.ui;
+
+import com.github.rholder.gradle.dependency.DependencySearchIndex;
+import com.github.rholder.gradle.dependency.GradleNode;
+import com.github.rholder.gradle.dependency.ReverseDependencyIndex;
+
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.ExpandVetoException;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tree model behind the dependency views. Its nodes are created from the
+ * GradleNode graph only as they're expanded, and are dropped again when their
+ * branch is collapsed, so the size of the Swing tree follows what's visible
+ * rather than the number of edges in the graph. Children are created a page
+ * at a time, so expanding a node with thousands of them only creates the
+ * first page along with a "show more" node for the rest. Register it as a
+ * TreeExpansionListener of the tree that displays it to evict collapsed
+ * branches, and as a TreeWillExpandListener so that expanding a "show more"
+ * node loads the next page.
+ */
+public class DependencyTreeModel extends DefaultTreeModel implements TreeExpansionListener, TreeWillExpandListener {
+
+    /**
+     * Override this system property to change how many children of a node are
+     * created before the rest are put behind a "show more" node.
+     */
+    public static final String GRADLE_VIEW_PAGE_SIZE_KEY = "gradle.view.tree.page.size";
+
+    private static final int DEFAULT_PAGE_SIZE = 500;
+
+    private LazyDependencyTreeNode listRoot;
+    private DefaultMutableTreeNode hierarchyRoot;
+    private LazyDependencyTreeNode projectRoot;
+    private LazyDependencyTreeNode dependentsRoot;
+
+    // who depends on each module, for the "Dependents" view
+    private ReverseDependencyIndex reverseIndex;
+
+    // the search result the tree is pruned to, or null to show everything
+    private DependencySearchIndex.Result filter;
+
+    private int pageSize = Math.max(1, Integer.getInteger(GRADLE_VIEW_PAGE_SIZE_KEY, DEFAULT_PAGE_SIZE));
+
+    /**
+     * Construct a new model showing the "Dependency List", "Dependency
+     * Hierarchy" and "Dependents" of the given root dependency, or a
+     * "Loading..." placeholder that loaded projects can be added above if
+     * it's null. Expanding a module under "Dependents" shows what pulls it in,
+     * all the way up to the configurations that resolved it.
+     *
+     * @param rootDependency the root of the GradleNode graph, or null while it's loading
+     */
+    public DependencyTreeModel(GradleNode rootDependency) {
+        this(rootDependency, null);
+    }
+
+    /**
+     * Construct a new model like {@link #DependencyTreeModel(GradleNode)}
+     * that also shows the given changes first, such as the ones from
+     * GraphDiff.toGradleNode, which are left out by filtering.
+     *
+     * @param rootDependency the root of the GradleNode graph, or null while it's loading
+     * @param changes        the root of the changes to show, or null for none
+     */
+    public DependencyTreeModel(GradleNode rootDependency, GradleNode changes) {
+        super(new DefaultMutableTreeNode(new GradleNode("Project Dependencies")));
+
+        DefaultMutableTreeNode fullRoot = (DefaultMutableTreeNode) getRoot();
+        if (changes != null) {
+            fullRoot.add(new LazyDependencyTreeNode(this, changes, LazyDependencyTreeNode.View.CHANGES));
+        }
+        if (rootDependency == null) {
+            fullRoot.add(new DefaultMutableTreeNode(new GradleNode("Loading...")));
+        } else {
+            listRoot = new LazyDependencyTreeNode(this, new GradleNode("Dependency List"), rootDependency,
+                    LazyDependencyTreeNode.View.LIST);
+            fullRoot.add(listRoot);
+
+            hierarchyRoot = new DefaultMutableTreeNode(new GradleNode("Dependency Hierarchy"));
+            projectRoot = new LazyDependencyTreeNode(this, rootDependency, LazyDependencyTreeNode.View.HIERARCHY);
+            hierarchyRoot.add(projectRoot);
+            fullRoot.add(hierarchyRoot);
+
+            reverseIndex = new ReverseDependencyIndex(rootDependency);
+            dependentsRoot = new LazyDependencyTreeNode(this, new GradleNode("Dependents"), rootDependency,
+                    LazyDependencyTreeNode.View.DEPENDENTS);
+            fullRoot.add(dependentsRoot);
+        }
+    }
+
+    /**
+     * Add the given project, which was just resolved, just above the
+     * "Loading..." placeholder. This must be called on the event dispatch
+     * thread.
+     *
+     * @param projectNode the project to add
+     */
+    public void insertLoadedProject(GradleNode projectNode) {
+        DefaultMutableTreeNode fullRoot = (DefaultMutableTreeNode) getRoot();
+        insertNodeInto(new LazyDependencyTreeNode(this, projectNode, LazyDependencyTreeNode.View.HIERARCHY), fullRoot,
+                Math.max(0, fullRoot.getChildCount() - 1));
+    }
+
+    /**
+     * Prune the tree down to the matches of the given search result and the
+     * nodes above them, or show everything again if it's null. Every branch
+     * below the top level sections is dropped and created again as it's
+     * expanded, so a tree displaying this model loses what was expanded
+     * there; use {@link #findPath(TreePath)} to expand it again. This must be
+     * called on the event dispatch thread.
+     *
+     * @param filter the search result to prune the tree to, or null
+     */
+    public void setFilter(DependencySearchIndex.Result filter) {
+        this.filter = filter;
+        if (listRoot != null) {
+            listRoot.unload();
+            nodeStructureChanged(listRoot);
+            projectRoot.unload();
+            nodeStructureChanged(projectRoot);
+            dependentsRoot.unload();
+            nodeStructureChanged(dependentsRoot);
+        }
+    }
+
+    /**
+     * Return true if the tree is currently pruned to a search result.
+     */
+    public boolean isFiltered() {
+        return filter != null;
+    }
+
+    /**
+     * Return how many children of a node are created before the rest are put
+     * behind a "show more" node.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Change how many children of a node are created before the rest are put
+     * behind a "show more" node. Nodes that were already loaded keep their
+     * pages until they're loaded again.
+     *
+     * @param pageSize the number of children in a page, at least 1
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1, but was " + pageSize);
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Replace the given "show more" node with the next page of its parent's
+     * children. This must be called on the event dispatch thread.
+     *
+     * @param more the "show more" node to replace
+     */
+    public void showMore(LazyDependencyTreeNode more) {
+        LazyDependencyTreeNode parent = (LazyDependencyTreeNode) more.getParent();
+        int index = parent.loadNextPage();
+        nodesWereRemoved(parent, new int[]{index}, new Object[]{more});
+
+        int[] added = new int[parent.getChildCount() - index];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = index + i;
+        }
+        nodesWereInserted(parent, added);
+    }
+
+    ReverseDependencyIndex getReverseIndex() {
+        return reverseIndex;
+    }
+
+    boolean accepts(GradleNode node, LazyDependencyTreeNode.View view) {
+        if (filter == null) {
+            return true;
+        }
+        // flattened dependencies and the modules listed under "Dependents" only stay when they match themselves
+        if (view == LazyDependencyTreeNode.View.LIST_DEPENDENCY || view == LazyDependencyTreeNode.View.DEPENDENT) {
+            return filter.isMatch(node);
+        }
+        return filter.isVisible(node);
+    }
+
+    /**
+     * Return the path through the "Dependency Hierarchy" to each match of the
+     * current filter, stopping after the given number of paths. Every node
+     * along these paths is created, so keep the limit small.
+     *
+     * @param limit the most paths to return
+     */
+    public List<TreePath> getMatchPaths(int limit) {
+        List<TreePath> treePaths = new ArrayList<TreePath>();
+        if (filter == null || projectRoot == null) {
+            return treePaths;
+        }
+
+        for (GradleNode[] path : filter.getPaths(limit)) {
+            if (!path[0].equals(projectRoot.getUserObject())) {
+                continue;
+            }
+            List<TreeNode> treePath = new ArrayList<TreeNode>();
+            treePath.add((TreeNode) getRoot());
+            treePath.add(hierarchyRoot);
+            treePath.add(projectRoot);
+
+            DefaultMutableTreeNode node = projectRoot;
+            for (int i = 1; i < path.length && node != null; i++) {
+                node = findChild(node, path[i]);
+                treePath.add(node);
+            }
+            if (node != null) {
+                treePaths.add(new TreePath(treePath.toArray()));
+            }
+        }
+        return treePaths;
+    }
+
+    /**
+     * Return the path to the node showing the same GradleNodes as the given
+     * path, which may be from before the nodes were created again by a new
+     * filter, or null if one of them isn't shown anymore. Every node along
+     * the path is created. This must be called on the event dispatch thread.
+     *
+     * @param path a path of nodes from this model
+     */
+    public TreePath findPath(TreePath path) {
+        if (path.getPathComponent(0) != getRoot()) {
+            return null;
+        }
+        List<Object> found = new ArrayList<Object>();
+        DefaultMutableTreeNode node = (DefaultMutableTreeNode) getRoot();
+        found.add(node);
+        for (int i = 1; i < path.getPathCount(); i++) {
+            Object userObject = ((DefaultMutableTreeNode) path.getPathComponent(i)).getUserObject();
+            node = userObject instanceof GradleNode ? findChild(node, (GradleNode) userObject) : null;
+            if (node == null) {
+                return null;
+            }
+            found.add(node);
+        }
+        return new TreePath(found.toArray());
+    }
+
+    // pages through the children of the given parent until the one showing the given node turns up
+    private DefaultMutableTreeNode findChild(DefaultMutableTreeNode parent, GradleNode gradleNode) {
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(i);
+            if (child instanceof LazyDependencyTreeNode && ((LazyDependencyTreeNode) child).isMore()) {
+                showMore((LazyDependencyTreeNode) child);
+                i--;
+            } else if (gradleNode.equals(child.getUserObject())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
+        Object node = event.getPath().getLastPathComponent();
+        if (node instanceof LazyDependencyTreeNode && ((LazyDependencyTreeNode) node).isMore()) {
+            showMore((LazyDependencyTreeNode) node);
+            // the node is gone, there's nothing left to expand
+            throw new ExpandVetoException(event);
+        }
+    }
+
+    public void treeWillCollapse(TreeExpansionEvent event) {
+        // collapsed branches are evicted once they're collapsed
+    }
+
+    public void treeExpanded(TreeExpansionEvent event) {
+        // children are created on demand by the nodes themselves
+    }
+
+    public void treeCollapsed(TreeExpansionEvent event) {
+        Object node = event.getPath().getLastPathComponent();
+        if (node instanceof LazyDependencyTreeNode && ((LazyDependencyTreeNode) node).isLoaded()) {
+            ((LazyDependencyTreeNode) node).unload();
+            nodeStructureChanged((LazyDependencyTreeNode) node);
+        }
+    }
+}
@@ -16,54 +16,123 @@
 
 package com.github.rholder.gradle.ui;
 
+import com.github.rholder.gradle.cli.ExportCommand;
+import com.github.rholder.gradle.dependency.BuildFileWatcher;
+import com.github.rholder.gradle.dependency.ConfigurationFilter;
+import com.github.rholder.gradle.dependency.ConflictAnalysis;
+import com.github.rholder.gradle.dependency.DependencyGraphCache;
+import com.github.rholder.gradle.dependency.DependencySearchIndex;
+import com.github.rholder.gradle.dependency.GradleConnectionManager;
+import com.github.rholder.gradle.dependency.GraphDiff;
 import com.github.rholder.gradle.dependency.GradleNode;
+import com.github.rholder.gradle.dependency.LoadOptions;
+import com.github.rholder.gradle.dependency.NioBuildFileWatcher;
+import com.github.rholder.gradle.dependency.ProjectLoadListener;
+import com.github.rholder.gradle.dependency.RefreshScheduler;
+import com.github.rholder.gradle.export.SnapshotStore;
+import com.github.rholder.gradle.log.BufferedToolingLogger;
 import com.github.rholder.gradle.log.ToolingLogger;
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.gradle.tooling.BuildCancelledException;
+import org.gradle.tooling.CancellationToken;
 
+import javax.swing.ButtonGroup;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.JTextField;
 import javax.swing.JTree;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.WindowConstants;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.tree.TreePath;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import static com.github.rholder.gradle.dependency.DependencyConversionUtil.loadProjectDependenciesFromModel;
-import static com.github.rholder.gradle.ui.TreeUtil.convertToHierarchyTreeNode;
-import static com.github.rholder.gradle.ui.TreeUtil.convertToSortedTreeNode;
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.getCacheDir;
+import static com.github.rholder.gradle.dependency.DependencyConversionUtil.loadProjectDependencies;
 
 public class DependencyViewerStandalone extends JFrame {
 
     private static final String TITLE = "Gradle Dependency Viewer";
 
+    // how many matches to expand the hierarchy down to when the filter changes
+    private static final int EXPANDED_MATCHES = 20;
+
     private final DependencyCellRenderer dependencyCellRenderer;
+    private final GradleConnectionManager connectionManager;
+    private final DependencyGraphCache graphCache;
+    private final RefreshScheduler refreshScheduler;
+    private final SnapshotStore snapshotStore;
 
     private String gradleBaseDir;
+    private boolean autoRefresh;
+    private volatile ConfigurationFilter configurationFilter = ConfigurationFilter.ALL;
+    private BuildFileWatcher buildFileWatcher;
+    private volatile boolean comparing;
     private JSplitPane splitter;
+    private JTabbedPane tabs;
+    private ConflictPanel conflictPanel;
     private ToolingLogger toolingLogger;
     private JTextArea information;
 
+    // the tree model showing "Loading..." while a build loads, only touched on the event dispatch thread
+    private DependencyTreeModel loadingTreeModel;
+
+    // the search index, tree and filter of what's currently shown, only touched on the event dispatch thread
+    private final JTextField filterField;
+    private DependencySearchIndex searchIndex;
+    private DependencySearchIndex.Result searchResult;
+    private DependencyTreeModel treeModel;
+    private JTree tree;
+    private GradleNode currentRoot;
+
     public DependencyViewerStandalone() {
         super(TITLE);
         this.dependencyCellRenderer = new DependencyCellRenderer();
+        this.connectionManager = new GradleConnectionManager();
+        this.graphCache = new DependencyGraphCache(new File(getCacheDir(), "graphs"));
+        this.refreshScheduler = new RefreshScheduler();
+        this.snapshotStore = new SnapshotStore(new File(getCacheDir(), "snapshots"));
         this.information = new JTextArea();
         this.information.setEditable(false);
+        this.filterField = new JTextField();
+        this.filterField.setToolTipText("Filter dependencies by group, id or version");
+        this.filterField.getDocument().addDocumentListener(newFilterListener());
 
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeBuildFileWatcher();
+                refreshScheduler.shutdown();
+                connectionManager.shutdown();
+            }
+        });
         setSize(1024, 768);
         setLocation(128, 128);
 
@@ -84,6 +153,7 @@ public class DependencyViewerStandalone extends JFrame {
         open.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 promptForGradleBaseDir();
+                updateBuildFileWatcher();
                 refresh();
             }
         });
@@ -97,11 +167,69 @@ public class DependencyViewerStandalone extends JFrame {
         });
         fileMenu.add(refresh);
 
+        // cached graphs only go stale on their own when a SNAPSHOT or dynamic version moves on
+        JMenuItem refreshWithoutCache = new JMenuItem("Refresh Without Cache");
+        refreshWithoutCache.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if(gradleBaseDir != null) {
+                    updateView(null, null);
+                    loadDependencies(false, true);
+                }
+            }
+        });
+        fileMenu.add(refreshWithoutCache);
+
+        final JCheckBoxMenuItem autoRefreshItem = new JCheckBoxMenuItem("Refresh When Build Files Change");
+        autoRefreshItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                autoRefresh = autoRefreshItem.isSelected();
+                updateBuildFileWatcher();
+            }
+        });
+        fileMenu.add(autoRefreshItem);
+
+        fileMenu.addSeparator();
+        JMenuItem saveSnapshot = new JMenuItem("Save Snapshot");
+        saveSnapshot.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                saveSnapshot();
+            }
+        });
+        fileMenu.add(saveSnapshot);
+
+        final JCheckBoxMenuItem compareItem = new JCheckBoxMenuItem("Compare With Snapshot");
+        compareItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                comparing = compareItem.isSelected();
+                showCurrentRoot();
+            }
+        });
+        fileMenu.add(compareItem);
+
+        fileMenu.addSeparator();
+        JMenu configurationsMenu = new JMenu("Resolve Configurations");
+        ButtonGroup configurationsGroup = new ButtonGroup();
+        for(final ConfigurationFilter preset : ConfigurationFilter.getPresets()) {
+            JRadioButtonMenuItem presetItem = new JRadioButtonMenuItem(preset.getTitle(), preset.equals(configurationFilter));
+            presetItem.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    configurationFilter = preset;
+                    refresh();
+                }
+            });
+            configurationsGroup.add(presetItem);
+            configurationsMenu.add(presetItem);
+        }
+        fileMenu.add(configurationsMenu);
+
         fileMenu.addSeparator();
         JMenuItem exit = new JMenuItem("Exit", KeyEvent.VK_X);
         exit.setMnemonic(KeyEvent.VK_X);
         exit.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
+                closeBuildFileWatcher();
+                refreshScheduler.shutdown();
+                connectionManager.shutdown();
                 System.exit(0);
             }
         });
@@ -113,15 +241,26 @@ public class DependencyViewerStandalone extends JFrame {
     private void refresh() {
         if(gradleBaseDir != null) {
             updateView(null, null);
+            loadDependencies(false, false);
+        }
+    }
 
-            new SwingWorker<Void, Void>() {
-                protected Void doInBackground() throws Exception {
-
+    /**
+     * Load the dependencies of the current project in the background. When
+     * asked to keep the current view, it stays on screen until the new graph
+     * is ready instead of being replaced by the cached graph first. When
+     * asked to ignore the cache, the cached graph is dropped and the build is
+     * resolved again even if no build files changed.
+     */
+    private void loadDependencies(final boolean keepCurrentView, final boolean ignoreCache) {
+        if(gradleBaseDir != null) {
+            // overlapping refreshes of the same build are coalesced, and a running one is cancelled
+            final String projectDir = gradleBaseDir;
+            final ConfigurationFilter filter = configurationFilter;
+            refreshScheduler.request(projectDir, new RefreshScheduler.RefreshTask() {
+                public void run(CancellationToken cancellationToken) throws Exception {
                     try {
-                        Map<String, GradleNode> dependencyMap = loadProjectDependenciesFromModel(gradleBaseDir, toolingLogger);
-                        GradleNode tree = dependencyMap.get("root");
-
-                        GradleNode target = dependencyCellRenderer.selectedGradleNode;
+                        GradleNode target = dependencyCellRenderer.getSelectedGradleNode();
                         GradleNode dependency;
                         if(target != null && target.group != null) {
                             dependency = target;
@@ -129,36 +268,155 @@ public class DependencyViewerStandalone extends JFrame {
                             dependency = new GradleNode("No dependency selected");
                         }
 
-                        updateView(tree, dependency);
-                        return null;
+                        if(ignoreCache) {
+                            graphCache.invalidate(projectDir, filter);
+                        }
+
+                        // show the last known graph right away, it's replaced below if any build files changed
+                        DependencyGraphCache.Entry cached = graphCache.load(projectDir, filter);
+                        if(cached == null || !keepCurrentView) {
+                            updateView(cached == null ? null : cached.root, dependency);
+                        }
+
+                        // without a cached graph to look at, show each project as soon as it's resolved
+                        Map<String, GradleNode> dependencyMap = loadProjectDependencies(projectDir, toolingLogger,
+                                connectionManager, new LoadOptions()
+                                        .withGraphCache(graphCache)
+                                        .withProjectLoadListener(cached == null ? newProjectLoadListener() : null)
+                                        .withCancellationToken(cancellationToken)
+                                        .withFilter(filter));
+                        GradleNode tree = dependencyMap.get("root");
+                        if(cached == null || tree != cached.root) {
+                            updateView(tree, dependency);
+                        }
+                    } catch(BuildCancelledException e) {
+                        // a newer refresh is already waiting to update the view
                     } catch(Exception e) {
                         e.printStackTrace();
                         toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
                         throw new RuntimeException(e);
                     }
                 }
-            }.execute();
+            });
         }
     }
 
-    private void initToolingLogger() {
-        toolingLogger = new ToolingLogger() {
-            public void log(final String line) {
-                // note: lots of log messages will freeze the dispatch thread
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        if (gradleBaseDir != null) {
-                            setTitle("- " + gradleBaseDir + " - " + line);
-                            information.append(line + "\n");
-                        }
+    /**
+     * Start watching the build files of the current project if auto refresh
+     * is turned on, replacing any watcher of a previous project.
+     */
+    private void updateBuildFileWatcher() {
+        closeBuildFileWatcher();
+        if(autoRefresh && gradleBaseDir != null) {
+            try {
+                buildFileWatcher = new NioBuildFileWatcher(gradleBaseDir, new BuildFileWatcher.BuildFileListener() {
+                    public void buildFilesChanged(Set<String> changedFiles) {
+                        toolingLogger.log("Build files changed " + changedFiles);
+                        loadDependencies(true, false);
                     }
                 });
+            } catch(IOException e) {
+                toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+            }
+        }
+    }
+
+    private void closeBuildFileWatcher() {
+        if(buildFileWatcher != null) {
+            buildFileWatcher.close();
+            buildFileWatcher = null;
+        }
+    }
+
+    /**
+     * Save what's currently shown as the snapshot of the current project, in
+     * the background.
+     */
+    private void saveSnapshot() {
+        final GradleNode root = currentRoot;
+        final String projectDir = gradleBaseDir;
+        final ConfigurationFilter filter = configurationFilter;
+        if(root == null || projectDir == null) {
+            toolingLogger.log("Nothing has been loaded yet, there's nothing to save");
+            return;
+        }
+        new SwingWorker<Void, Void>() {
+            protected Void doInBackground() throws Exception {
+                try {
+                    snapshotStore.save(projectDir, filter, root);
+                    toolingLogger.log("Saved a snapshot of " + projectDir);
+                } catch(IOException e) {
+                    toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+                }
+                return null;
+            }
+        }.execute();
+    }
+
+    /**
+     * Show what's currently loaded again, such as after turning the
+     * comparison with the saved snapshot on or off.
+     */
+    private void showCurrentRoot() {
+        final GradleNode root = currentRoot;
+        if(root != null) {
+            new SwingWorker<Void, Void>() {
+                protected Void doInBackground() throws Exception {
+                    updateView(root, null);
+                    return null;
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     * Return the changes between the saved snapshot of the current project
+     * and the given graph, or null if they aren't being compared.
+     */
+    private GradleNode compareWithSnapshot(GradleNode rootDependency) {
+        String projectDir = gradleBaseDir;
+        if(!comparing || rootDependency == null || projectDir == null) {
+            return null;
+        }
+        try {
+            // only a snapshot that resolved the same configurations is worth comparing with
+            ConfigurationFilter filter = configurationFilter;
+            GradleNode snapshot = snapshotStore.load(projectDir, filter);
+            if(snapshot == null) {
+                toolingLogger.log("There's no saved snapshot of " + projectDir + " with " + filter.getTitle().toLowerCase()
+                        + " to compare with yet");
+                return null;
+            }
+            GraphDiff diff = GraphDiff.compare(snapshot, rootDependency);
+            return diff.toGradleNode("Changes since snapshot of " + new Date(snapshotStore.getSavedTime(projectDir, filter))
+                    + " (" + diff.getSummary() + ")");
+        } catch(IOException e) {
+            toolingLogger.log(ExceptionUtils.getFullStackTrace(e));
+            return null;
+        }
+    }
+
+    private void initToolingLogger() {
+        // batches lines onto the dispatch thread, since lots of log messages would otherwise freeze it
+        toolingLogger = new BufferedToolingLogger(information) {
+            @Override
+            protected boolean shouldShow() {
+                return gradleBaseDir != null;
+            }
+
+            @Override
+            protected void showLastLine(String line) {
+                setTitle("- " + gradleBaseDir + " - " + line);
             }
         };
     }
 
     private void initContent() {
         splitter = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+        conflictPanel = new ConflictPanel();
+        tabs = new JTabbedPane();
+        tabs.addTab("Dependencies", new JPanel());
+        tabs.addTab("Conflicts", conflictPanel);
 
         JPanel main = new JPanel(new BorderLayout());
         main.add(splitter);
@@ -177,33 +435,96 @@ public class DependencyViewerStandalone extends JFrame {
         }
     }
 
-    public void updateView(GradleNode rootDependency, GradleNode selectedDependency) {
-        // TODO replace this hack with something that populates the GradleNode graph
+    private ProjectLoadListener newProjectLoadListener() {
+        return new ProjectLoadListener() {
+            public void projectLoaded(final GradleNode projectNode) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if(loadingTreeModel != null) {
+                            loadingTreeModel.insertLoadedProject(projectNode);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    private DocumentListener newFilterListener() {
+        return new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        };
+    }
 
-        DefaultMutableTreeNode fullRoot = new DefaultMutableTreeNode(new GradleNode("Project Dependencies"));
-        if(rootDependency == null) {
-            DefaultMutableTreeNode loading = new DefaultMutableTreeNode(new GradleNode("Loading..."));
-            fullRoot.add(loading);
-        } else {
-            DefaultMutableTreeNode flattenedRoot = convertToSortedTreeNode(rootDependency);
-            DefaultMutableTreeNode hierarchyRoot = convertToHierarchyTreeNode(rootDependency);
-            fullRoot.add(flattenedRoot);
-            fullRoot.add(hierarchyRoot);
+    /**
+     * Prune the tree down to whatever matches the filter field, narrowing the
+     * previous result when the filter only got longer.
+     */
+    private void applyFilter() {
+        if(searchIndex == null || treeModel == null) {
+            return;
         }
+        // filtering creates the nodes again, so whatever was expanded and is still shown is expanded again after
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(new TreePath(treeModel.getRoot()));
+        List<TreePath> expandedPaths = expanded == null ? new ArrayList<TreePath>() : Collections.list(expanded);
+
+        searchResult = searchIndex.search(filterField.getText(), searchResult);
+        treeModel.setFilter(searchResult);
+        for(TreePath path : expandedPaths) {
+            TreePath found = treeModel.findPath(path);
+            if(found != null) {
+                tree.expandPath(found);
+            }
+        }
+        for(TreePath path : treeModel.getMatchPaths(EXPANDED_MATCHES)) {
+            tree.makeVisible(path);
+        }
+    }
 
-        TreeModel treeModel = new DefaultTreeModel(fullRoot);
+    public void updateView(final GradleNode rootDependency, GradleNode selectedDependency) {
+        // nodes are only created as they're expanded, and dropped again when they're collapsed
+        final DependencyTreeModel treeModel = new DependencyTreeModel(rootDependency,
+                compareWithSnapshot(rootDependency));
         final JTree fullTree = new JTree(treeModel);
-        fullTree.setCellRenderer(dependencyCellRenderer);
+        fullTree.addTreeExpansionListener(treeModel);
+        fullTree.addTreeWillExpandListener(treeModel);
+        dependencyCellRenderer.install(fullTree);
+
+        // built here so that neither typing in the filter field nor sorting conflicts has to wait on them
+        final DependencySearchIndex index = rootDependency == null ? null : new DependencySearchIndex(rootDependency);
+        final ConflictAnalysis conflicts = rootDependency == null ? null : ConflictAnalysis.analyze(rootDependency);
 
         // expand path for first level from root
         //fullTree.expandPath(new TreePath(hierarchyRoot.getNextNode().getPath()));
 
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
+                loadingTreeModel = rootDependency == null ? treeModel : null;
+                currentRoot = rootDependency;
                 if(gradleBaseDir != null) {
                     setTitle(TITLE + " - " + gradleBaseDir);
                 }
-                splitter.setLeftComponent(new JScrollPane(fullTree));
+                searchIndex = index;
+                searchResult = null;
+                DependencyViewerStandalone.this.treeModel = treeModel;
+                tree = fullTree;
+                applyFilter();
+
+                JPanel treePanel = new JPanel(new BorderLayout());
+                treePanel.add(filterField, BorderLayout.NORTH);
+                treePanel.add(new JScrollPane(fullTree), BorderLayout.CENTER);
+                tabs.setComponentAt(0, treePanel);
+                conflictPanel.setAnalysis(conflicts);
+                splitter.setLeftComponent(tabs);
                 splitter.setRightComponent(new JScrollPane(information));
                 splitter.setDividerLocation(0.75);
             }
@@ -211,6 +532,10 @@ public class DependencyViewerStandalone extends JFrame {
     }
 
     public static void main(String... args) {
+        // with arguments, export headlessly instead of showing any window
+        if(args.length > 0) {
+            System.exit(ExportCommand.run(args));
+        }
         new DependencyViewerStandalone();
     }
 }
\ No newline at end of file
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.ui;
+
+import com.github.rholder.gradle.dependency.GradleNode;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.awt.FontMetrics;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A tree node that only creates its children from the GradleNode graph the
+ * first time they're asked for, so that the Swing tree only ever holds the
+ * nodes someone has expanded. Children can be dropped again with unload()
+ * once their branch is collapsed. Only the children that pass the filter of
+ * the owning DependencyTreeModel are created, a page at a time, with a "show
+ * more" node at the end standing in for the rest.
+ */
+public class LazyDependencyTreeNode extends DefaultMutableTreeNode {
+
+    /**
+     * How the children of a node are derived from its GradleNode.
+     */
+    public enum View {
+        // the nested dependencies, exactly as they were resolved
+        HIERARCHY,
+        // the configurations and projects of the root project
+        LIST,
+        // the configurations of a single project
+        LIST_PROJECT,
+        // every dependency of a configuration, flattened and sorted
+        LIST_CONFIGURATION,
+        // a single flattened dependency, which never has children
+        LIST_DEPENDENCY,
+        // every module in the graph
+        DEPENDENTS,
+        // the modules and configurations that depend on a single module
+        DEPENDENT,
+        // the nested nodes of a GraphDiff, which are never filtered
+        CHANGES,
+        // stands in for the children of its parent that haven't been created yet
+        MORE
+    }
+
+    private final DependencyTreeModel model;
+    private final GradleNode source;
+    private final View view;
+    private final int vertex;
+    private boolean loaded;
+
+    // what the children can be created from, worked out once when this node is loaded
+    private List<GradleNode> candidates;
+    private int[] candidateVertices;
+    private int nextCandidate;
+
+    // how many candidates pass the filter and how many of those have been added so far
+    private int acceptedCount;
+    private int shownCount;
+
+    // what the renderer draws for this node, worked out the first time it's drawn
+    private DependencyCellRenderer.Style style;
+    private String text;
+    private boolean textShowsReplaced;
+    private FontMetrics textMetrics;
+    private int textWidth;
+
+    /**
+     * Construct a new node that displays the given GradleNode and derives its
+     * children from it.
+     *
+     * @param model  the model this node belongs to, which decides what passes its filter
+     * @param source the GradleNode to display
+     * @param view   how to derive the children
+     */
+    LazyDependencyTreeNode(DependencyTreeModel model, GradleNode source, View view) {
+        this(model, source, source, view);
+    }
+
+    /**
+     * Construct a new node that displays one GradleNode while deriving its
+     * children from another, such as a section title over the root project.
+     *
+     * @param model   the model this node belongs to, which decides what passes its filter
+     * @param display the GradleNode to display
+     * @param source  the GradleNode to derive the children from
+     * @param view    how to derive the children
+     */
+    LazyDependencyTreeNode(DependencyTreeModel model, GradleNode display, GradleNode source, View view) {
+        super(display);
+        this.model = model;
+        this.source = source;
+        this.view = view;
+        this.vertex = -1;
+    }
+
+    /**
+     * Construct a new node that displays a vertex of the model's
+     * ReverseDependencyIndex and has its dependents as children.
+     *
+     * @param model  the model this node belongs to
+     * @param vertex the vertex to display
+     */
+    LazyDependencyTreeNode(DependencyTreeModel model, int vertex) {
+        super(model.getReverseIndex().getNode(vertex));
+        this.model = model;
+        this.source = model.getReverseIndex().getNode(vertex);
+        this.view = View.DEPENDENT;
+        this.vertex = vertex;
+    }
+
+    DependencyCellRenderer.Style getStyle() {
+        if (style == null) {
+            style = DependencyCellRenderer.Style.of((GradleNode) getUserObject());
+        }
+        return style;
+    }
+
+    String getText(boolean showReplaced) {
+        if (text == null || textShowsReplaced != showReplaced) {
+            text = getStyle().textOf((GradleNode) getUserObject(), showReplaced);
+            textShowsReplaced = showReplaced;
+            textMetrics = null;
+        }
+        return text;
+    }
+
+    // only valid right after getText, which is what it measures
+    int getTextWidth(FontMetrics metrics) {
+        if (textMetrics != metrics) {
+            textWidth = metrics.stringWidth(text);
+            textMetrics = metrics;
+        }
+        return textWidth;
+    }
+
+    /**
+     * Return true if this node's children have been created.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Drop the children of this node so they can be garbage collected, they'll
+     * be created again the next time they're needed.
+     */
+    public void unload() {
+        if (loaded) {
+            super.removeAllChildren();
+            candidates = null;
+            candidateVertices = null;
+            loaded = false;
+        }
+    }
+
+    /**
+     * Return true if this node stands in for children of its parent that
+     * haven't been created yet.
+     */
+    public boolean isMore() {
+        return view == View.MORE;
+    }
+
+    /**
+     * Replace the "show more" node at the end of this node's children with the
+     * next page of them, returning the index of the first child that was
+     * added. The caller is expected to tell the tree what changed.
+     */
+    int loadNextPage() {
+        int index = super.getChildCount() - 1;
+        super.remove(index);
+        loadPage();
+        return index;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        // set first, adding children asks for the child count
+        loaded = true;
+
+        switch (view) {
+            case HIERARCHY:
+            case CHANGES:
+                candidates = source.dependencies;
+                break;
+            case LIST:
+            case LIST_PROJECT:
+                candidates = new ArrayList<GradleNode>(new TreeSet<GradleNode>(source.dependencies));
+                break;
+            case LIST_CONFIGURATION:
+                candidates = TreeUtil.flattenDependencies(source);
+                break;
+            case DEPENDENTS:
+                candidateVertices = model.getReverseIndex().getModules();
+                break;
+            case DEPENDENT:
+                candidateVertices = isCycle() ? new int[0] : model.getReverseIndex().getDependents(vertex);
+                break;
+            default:
+                return;
+        }
+        int candidateCount = candidates != null ? candidates.size() : candidateVertices.length;
+        acceptedCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if (accepts(i)) {
+                acceptedCount++;
+            }
+        }
+        nextCandidate = 0;
+        shownCount = 0;
+        loadPage();
+    }
+
+    // add up to a page of the remaining candidates, then a "show more" node if any that would be shown are left
+    private void loadPage() {
+        int pageSize = model.getPageSize();
+        int candidateCount = candidates != null ? candidates.size() : candidateVertices.length;
+        int added = 0;
+        while (nextCandidate < candidateCount && added < pageSize) {
+            if (addIfAccepted(nextCandidate++)) {
+                added++;
+            }
+        }
+        shownCount += added;
+
+        // counted once when this node was loaded, so paging through a wide node stays linear
+        int remaining = acceptedCount - shownCount;
+        if (remaining > 0) {
+            String title = "Show " + Math.min(remaining, pageSize) + " more of " + remaining;
+            add(new LazyDependencyTreeNode(model, new GradleNode(title), View.MORE));
+        }
+    }
+
+    // the view of the child created from the given candidate, or null if candidates like it aren't shown here
+    private View childView(GradleNode candidate) {
+        switch (view) {
+            case HIERARCHY:
+                return View.HIERARCHY;
+            case CHANGES:
+                return View.CHANGES;
+            case LIST:
+                if ("configuration".equals(candidate.getNodeType())) {
+                    return View.LIST_CONFIGURATION;
+                } else if ("project".equals(candidate.getNodeType())) {
+                    return View.LIST_PROJECT;
+                }
+                return null;
+            case LIST_PROJECT:
+                return View.LIST_CONFIGURATION;
+            case LIST_CONFIGURATION:
+                return View.LIST_DEPENDENCY;
+            default:
+                return null;
+        }
+    }
+
+    private boolean accepts(int candidate) {
+        if (candidates == null) {
+            // the dependents of a module are never filtered, only the modules listed under "Dependents"
+            return view != View.DEPENDENTS
+                    || model.accepts(model.getReverseIndex().getNode(candidateVertices[candidate]), View.DEPENDENT);
+        }
+        GradleNode node = candidates.get(candidate);
+        View childView = childView(node);
+        // changes are never filtered
+        return childView == View.CHANGES || (childView != null && model.accepts(node, childView));
+    }
+
+    // true when the same module already shows up further up this branch of dependents
+    private boolean isCycle() {
+        for (TreeNode node = getParent(); node instanceof LazyDependencyTreeNode; node = node.getParent()) {
+            LazyDependencyTreeNode ancestor = (LazyDependencyTreeNode) node;
+            if (ancestor.view == View.DEPENDENT && ancestor.vertex == vertex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean addIfAccepted(int candidate) {
+        if (!accepts(candidate)) {
+            return false;
+        }
+        if (candidates == null) {
+            add(new LazyDependencyTreeNode(model, candidateVertices[candidate]));
+        } else {
+            GradleNode node = candidates.get(candidate);
+            add(new LazyDependencyTreeNode(model, node, childView(node)));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        // answered from the graph so that drawing a collapsed node never creates its children
+        if (view == View.LIST_DEPENDENCY) {
+            return true;
+        }
+        if (view == View.MORE) {
+            // never really expanded, expanding it asks the model for the next page instead
+            return false;
+        }
+        if (view == View.DEPENDENTS) {
+            return model.getReverseIndex().getModules().length == 0;
+        }
+        if (view == View.DEPENDENT) {
+            return model.getReverseIndex().getDependents(vertex).length == 0 || isCycle();
+        }
+        if (view == View.HIERARCHY && model.isFiltered()) {
+            for (GradleNode d : source.dependencies) {
+                if (model.accepts(d, View.HIERARCHY)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return source.dependencies.isEmpty();
+    }
+
+    @Override
+    public int getChildCount() {
+        ensureLoaded();
+        return super.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+        ensureLoaded();
+        return super.getChildAt(index);
+    }
+
+    @Override
+    public int getIndex(TreeNode node) {
+        ensureLoaded();
+        return super.getIndex(node);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Enumeration children() {
+        ensureLoaded();
+        return super.children();
+    }
+}
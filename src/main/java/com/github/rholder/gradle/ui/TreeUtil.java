@@ -18,109 +18,55 @@ package com.github.rholder.gradle.ui;
 
 import com.github.rholder.gradle.dependency.GradleNode;
 
-import javax.swing.tree.DefaultMutableTreeNode;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * This is a utility class for working with DefaultMutableTreeNode instances and
- * converting the GradleNode graph.
+ * This is a utility class for converting the GradleNode graph into the views
+ * shown in the dependency tree.
  */
 public class TreeUtil {
 
-    public static DefaultMutableTreeNode convertToHierarchyTreeNode(GradleNode dependency) {
-        GradleNode hierarchicalNode = new GradleNode("Dependency Hierarchy");
-        DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(hierarchicalNode);
-        DefaultMutableTreeNode projectNode = convertToTreeNode(dependency);
-        rootNode.add(projectNode);
-        return rootNode;
-    }
-
-    /**
-     * Recursively convert the given dependency to a collection of nested
-     * DefaultMutableTreeNode instances suitable for display in a tree
-     * structure, returning the given converted dependency that was passed in.
-     *
-     * @param dependency the dependency to start from (may also be a root node)
-     */
-    public static DefaultMutableTreeNode convertToTreeNode(GradleNode dependency) {
-        DefaultMutableTreeNode node = new DefaultMutableTreeNode(dependency);
-        for(GradleNode d : dependency.dependencies) {
-            node.add(convertToTreeNode(d));
-        }
-        return node;
-    }
-
     /**
-     * Return a lexicographically sorted and flattened DefaultMutableTreeNode
-     * root where its children are all the de-duplicated nodes from the given
-     * dependency node root.
+     * Walk every dependency below the given node once and return the ones
+     * that weren't omitted, de-duplicated by their group:id:version and sorted
+     * by group, id and version. When a dependency shows up more than once, its first
+     * occurrence in depth first order is the one that's kept.
      *
-     * @param root the root node to start from
+     * @param topNode the top node to start from, such as a configuration
      */
-    public static DefaultMutableTreeNode convertToSortedTreeNode(GradleNode root) {
-        // top level GradleNode instances are actually the configuration strings
-        GradleNode sortedNode = new GradleNode("Dependency List");
-        DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(sortedNode);
-        for(GradleNode node : new TreeSet<GradleNode>(root.dependencies)) {
-            if("configuration".equals(node.getNodeType())) {
-                DefaultMutableTreeNode configurationNode = new DefaultMutableTreeNode(node);
-                rootNode.add(configurationNode);
-
-                // TODO filter dupes here by fixing equals/hashCode, though there are no dupes unless Gradle is broken...
-                Set<GradleNode> childDependencies = getChildrenFromRootNode(node);
-                for(GradleNode d : childDependencies) {
-                    if(!d.isOmitted() && d.parent != null) {
-                        configurationNode.add(new DefaultMutableTreeNode(d));
-                    }
-                }
-            } else if("project".equals(node.getNodeType())) {
-                DefaultMutableTreeNode moduleNode = new DefaultMutableTreeNode(node);
-                rootNode.add(moduleNode);
-
-                for(GradleNode configuration : new TreeSet<GradleNode>(node.dependencies)) {
-                    DefaultMutableTreeNode configurationNode = new DefaultMutableTreeNode(configuration);
-                    moduleNode.add(configurationNode);
-
-                    // TODO filter dupes here by fixing equals/hashCode, though there are no dupes unless Gradle is broken...
-                    Set<GradleNode> childDependencies = getChildrenFromRootNode(configuration);
-                    for(GradleNode d : childDependencies) {
-                        if(!d.isOmitted() && d.parent != null) {
-                            configurationNode.add(new DefaultMutableTreeNode(d));
-                        }
-                    }
-                }
+    public static List<GradleNode> flattenDependencies(GradleNode topNode) {
+        Map<String, GradleNode> firstOccurrences = new HashMap<String, GradleNode>();
+        Deque<GradleNode> stack = new ArrayDeque<GradleNode>();
+        pushChildren(stack, topNode);
+        while(!stack.isEmpty()) {
+            GradleNode node = stack.pop();
+            String name = node.getName();
+            if(!firstOccurrences.containsKey(name)) {
+                firstOccurrences.put(name, node);
             }
+            pushChildren(stack, node);
         }
-        return rootNode;
-    }
 
-    /**
-     * Recursively walk all the children of the given dependency and return a
-     * flattened Set containing each of them (sorted lexicographically).
-     *
-     * @param topNode the top dependency node to start from
-     */
-    private static Set<GradleNode> getChildrenFromRootNode(GradleNode topNode) {
-        Set<GradleNode> sortedDependencies = new TreeSet<GradleNode>();
-        for(GradleNode d : topNode.dependencies) {
-            sortedDependencies.addAll(getChildNodes(d));
+        List<GradleNode> flattened = new ArrayList<GradleNode>(firstOccurrences.size());
+        for(GradleNode d : firstOccurrences.values()) {
+            if(!d.isOmitted() && d.parent != null) {
+                flattened.add(d);
+            }
         }
-        return sortedDependencies;
+        Collections.sort(flattened);
+        return flattened;
     }
 
-    /**
-     * Recursively walk all the children of the given dependency and return a
-     * flattened Set containing each of them (sorted lexicographically).
-     *
-     * @param node the dependency node to gather child nodes from
-     */
-    private static Set<GradleNode> getChildNodes(GradleNode node) {
-        Set<GradleNode> sortedDependencies = new TreeSet<GradleNode>();
-        sortedDependencies.add(node);
-        for(GradleNode d : node.dependencies) {
-            sortedDependencies.addAll(getChildNodes(d));
+    // children are pushed in reverse so they're popped in their original order
+    private static void pushChildren(Deque<GradleNode> stack, GradleNode node) {
+        for(int i = node.dependencies.size() - 1; i >= 0; i--) {
+            stack.push(node.dependencies.get(i));
         }
-        return sortedDependencies;
     }
 }
@@ -32,8 +32,35 @@ public interface ViewActionListener {
      */
     void refresh();
 
+    /**
+     * Perform the refresh action on the Gradle dependency view, resolving the
+     * build again even if none of its build files changed.
+     */
+    void refreshWithoutCache();
+
     /**
      * Toggle whether or not to show replaced dependencies.
      */
     void toggleShowReplaced();
+
+    /**
+     * Toggle whether or not to refresh when build files change.
+     */
+    void toggleAutoRefresh();
+
+    /**
+     * Save the current dependency graph as the snapshot to compare against.
+     */
+    void saveSnapshot();
+
+    /**
+     * Toggle whether or not to show the changes since the saved snapshot.
+     */
+    void toggleCompareWithSnapshot();
+
+    /**
+     * Choose which configurations to resolve from the ConfigurationFilter
+     * presets.
+     */
+    void chooseConfigurationFilter();
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import com.github.rholder.gradle.acumen.AcumenPayloadEncoder;
+import com.github.rholder.gradle.acumen.DefaultAcumenGraphConfiguration;
+import com.github.rholder.gradle.acumen.DefaultAcumenGraphModel;
+import com.github.rholder.gradle.acumen.DefaultAcumenGraphProject;
+import com.github.rholder.gradle.acumen.api.AcumenGraphProject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AcumenPayloadDecoderTest {
+
+    @Test
+    public void decodesWhatWasEncoded() {
+        List<String> strings = Arrays.asList(
+                "com.google", "guava", "11.0", "10.0", "conflict resolution",
+                "commons-io", "2.2", "Could not resolve foo:bar:1.0", "requested");
+        int[] nodes = {
+                -1, 0, 1, 2,    // 0: com.google:guava:11.0
+                -1, 5, 5, 6,    // 1: commons-io:commons-io:2.2
+                7, -1, -1, -1   // 2: an unresolved dependency, which only has a name
+        };
+        int[] edges = {
+                -1, 0, 3, 4,    // 0: guava asked for as 10.0 and replaced by 11.0
+                0, 1, -1, 8,    // 1: commons-io below guava, with no requested version
+                -1, 1, 6, -1,   // 2: commons-io asked for directly as the version it resolved to, with no reason
+                -1, 2, -1, -1   // 3: the unresolved dependency
+        };
+
+        DefaultAcumenGraphProject sub = project("sub", ":sub", null);
+        // the group of a project is what its dependents resolve it by
+        sub.setGroup("root");
+        // edges going backwards are encoded as negative differences
+        sub.getConfigurations().add(configuration("runtime", 3, 2));
+        DefaultAcumenGraphProject root = project("root", ":", "/work/root");
+        root.getChildren().add(sub);
+        root.getConfigurations().add(configuration("compile", 0, 1, 2, 3));
+
+        GradleNode expectedRoot = GradleNodes.project("root", ":", "/work/root");
+        GradleNode expectedSub = GradleNodes.project("sub", ":sub", null);
+        expectedSub.group = "root";
+        expectedRoot.dependencies.add(expectedSub);
+        GradleNode runtime = GradleNodes.configuration(expectedSub, "runtime");
+        runtime.dependencies.add(new GradleNode("Could not resolve foo:bar:1.0"));
+        dependency(runtime, "commons-io", "commons-io", "2.2", null, null, false);
+        GradleNode compile = GradleNodes.configuration(expectedRoot, "compile");
+        GradleNode guava = dependency(compile, "com.google", "guava", "10.0", "11.0", "conflict resolution", false);
+        dependency(guava, "commons-io", "commons-io", "2.2", null, "requested", false);
+        // the same module shows up again in this configuration, so it isn't expanded a second time
+        dependency(compile, "commons-io", "commons-io", "2.2", null, null, true);
+        compile.dependencies.add(new GradleNode("Could not resolve foo:bar:1.0"));
+
+        GradleNode decoded = AcumenPayloadDecoder.decode(AcumenPayloadEncoder.encode(graph(strings, nodes, edges, root)));
+        assertNodeEquals("root", expectedRoot, decoded);
+    }
+
+    @Test
+    public void decodesLargeGraphs() {
+        // enough strings, nodes and edges that every reference takes more than one byte
+        int count = 300;
+        List<String> strings = new ArrayList<String>();
+        strings.add("org.example");
+        int[] nodes = new int[count * 4];
+        int[] edges = new int[count * 4];
+        int[] configurationEdges = new int[count];
+        for (int i = 0; i < count; i++) {
+            strings.add("module-" + i);
+            nodes[i * 4] = -1;
+            nodes[i * 4 + 1] = 0;
+            nodes[i * 4 + 2] = i + 1;
+            nodes[i * 4 + 3] = i + 1;
+
+            // a chain where each module depends on the next one
+            edges[i * 4] = i - 1;
+            edges[i * 4 + 1] = i;
+            edges[i * 4 + 2] = -1;
+            edges[i * 4 + 3] = -1;
+            configurationEdges[i] = i;
+        }
+        DefaultAcumenGraphProject root = project("root", ":", null);
+        root.getConfigurations().add(configuration("default", configurationEdges));
+
+        GradleNode decoded = AcumenPayloadDecoder.decode(AcumenPayloadEncoder.encode(graph(strings, nodes, edges, root)));
+        GradleNode node = decoded.dependencies.get(0);
+        assertEquals("default", node.getName());
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, node.dependencies.size());
+            node = node.dependencies.get(0);
+            assertEquals("org.example:module-" + i + ":module-" + i, node.getName());
+        }
+        assertEquals(0, node.dependencies.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherPayloads() {
+        AcumenPayloadDecoder.decode(new byte[]{0, 0, 0, 0, 0, 0, 0, 1});
+    }
+
+    private static void assertNodeEquals(String path, GradleNode expected, GradleNode actual) {
+        assertEquals(path, expected.name, actual.name);
+        assertEquals(path, expected.group, actual.group);
+        assertEquals(path, expected.id, actual.id);
+        assertEquals(path, expected.version, actual.version);
+        assertEquals(path, expected.replacedByVersion, actual.replacedByVersion);
+        assertEquals(path, expected.reason, actual.reason);
+        assertEquals(path, expected.nodeType, actual.nodeType);
+        assertEquals(path, expected.projectPath, actual.projectPath);
+        assertEquals(path, expected.projectDir, actual.projectDir);
+        assertEquals(path, expected.omitted, actual.omitted);
+        if (expected.parent == null) {
+            assertNull(path, actual.parent);
+        } else {
+            assertEquals(path, expected.parent.getName(), actual.parent.getName());
+        }
+
+        assertEquals(path, expected.dependencies.size(), actual.dependencies.size());
+        for (int i = 0; i < expected.dependencies.size(); i++) {
+            GradleNode child = expected.dependencies.get(i);
+            assertNodeEquals(path + " > " + child.getName(), child, actual.dependencies.get(i));
+        }
+    }
+
+    private static DefaultAcumenGraphModel graph(List<String> strings, int[] nodes, int[] edges, AcumenGraphProject root) {
+        DefaultAcumenGraphModel graph = new DefaultAcumenGraphModel();
+        graph.setStrings(strings);
+        graph.setNodes(nodes);
+        graph.setEdges(edges);
+        graph.setRootProject(root);
+        return graph;
+    }
+
+    private static DefaultAcumenGraphProject project(String name, String projectPath, String projectDir) {
+        DefaultAcumenGraphProject project = new DefaultAcumenGraphProject();
+        project.setName(name);
+        project.setProjectPath(projectPath);
+        project.setProjectDir(projectDir);
+        return project;
+    }
+
+    private static DefaultAcumenGraphConfiguration configuration(String name, int... edges) {
+        DefaultAcumenGraphConfiguration configuration = new DefaultAcumenGraphConfiguration();
+        configuration.setName(name);
+        configuration.setEdges(edges);
+        return configuration;
+    }
+
+    private static GradleNode dependency(GradleNode parent, String group, String id, String version,
+                                         String replacedByVersion, String reason, boolean omitted) {
+        GradleNode node = GradleNodes.dependency(parent, group, id, version);
+        node.replacedByVersion = replacedByVersion;
+        node.reason = reason;
+        node.omitted = omitted;
+        return node;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BuildFingerprintTest {
+
+    private File projectDir;
+
+    @Before
+    public void setUp() throws IOException {
+        projectDir = Files.createTempDirectory("gradle-view-fingerprint").toFile();
+        write("build.gradle", "apply plugin: 'java'");
+        write("settings.gradle", "include 'core'");
+        write("gradle.properties", "version=1.0");
+        write("gradle/libs.versions.toml", "[versions]");
+        write("gradle/wrapper/gradle-wrapper.properties", "distributionUrl=gradle-5.6-bin.zip");
+        write("core/build.gradle.kts", "plugins { java }");
+        write("buildSrc/src/main/groovy/Versions.groovy", "class Versions {}");
+        write("README.md", "nothing to see here");
+        write("build/tmp/stale.gradle", "ignored");
+        write("core/src/main/resources/template.gradle", "ignored");
+        write(".gradle/5.6/cache.properties", "ignored");
+        write("buildSrc/build/classes/Versions.class", "ignored");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(projectDir);
+    }
+
+    @Test
+    public void recognizesBuildFiles() {
+        assertTrue(BuildFingerprint.isBuildFileName("build.gradle"));
+        assertTrue(BuildFingerprint.isBuildFileName("dependencies.gradle.kts"));
+        assertTrue(BuildFingerprint.isBuildFileName("libs.versions.toml"));
+        assertTrue(BuildFingerprint.isBuildFileName("gradle.properties"));
+        assertFalse(BuildFingerprint.isBuildFileName("local.properties"));
+        assertFalse(BuildFingerprint.isBuildFileName("build.gradle.bak"));
+
+        assertTrue(BuildFingerprint.isBuildFile("buildSrc/src/main/java/Versions.java"));
+        assertTrue(BuildFingerprint.isBuildFile("core/build.gradle"));
+        assertFalse(BuildFingerprint.isBuildFile("core/src/main/java/Core.java"));
+    }
+
+    @Test
+    public void skipsOutputSourcesAndHiddenDirectories() {
+        assertTrue(BuildFingerprint.isSkippedDirectory("build"));
+        assertTrue(BuildFingerprint.isSkippedDirectory("core/out"));
+        assertTrue(BuildFingerprint.isSkippedDirectory("core/src"));
+        assertTrue(BuildFingerprint.isSkippedDirectory("web/node_modules"));
+        assertTrue(BuildFingerprint.isSkippedDirectory(".idea"));
+        assertTrue(BuildFingerprint.isSkippedDirectory("buildSrc/build"));
+        assertFalse(BuildFingerprint.isSkippedDirectory("buildSrc/src"));
+        assertFalse(BuildFingerprint.isSkippedDirectory("core"));
+    }
+
+    @Test
+    public void fingerprintsOnlyTheBuildInputs() {
+        BuildFingerprint fingerprint = BuildFingerprint.compute(projectDir.getPath());
+        assertEquals(new TreeSet<String>(Arrays.asList(
+                "build.gradle",
+                "buildSrc/src/main/groovy/Versions.groovy",
+                "core/build.gradle.kts",
+                "gradle.properties",
+                "gradle/libs.versions.toml",
+                "gradle/wrapper/gradle-wrapper.properties",
+                "settings.gradle")), fingerprint.getStamps().keySet());
+        assertEquals(fingerprint, BuildFingerprint.compute(projectDir.getPath()));
+        assertEquals(fingerprint.hashCode(), BuildFingerprint.compute(projectDir.getPath()).hashCode());
+    }
+
+    @Test
+    public void findsWhatChanged() throws IOException {
+        BuildFingerprint before = BuildFingerprint.compute(projectDir.getPath());
+        write("core/build.gradle.kts", "plugins { java; application }");
+        write("web/build.gradle", "apply plugin: 'war'");
+        FileUtils.forceDelete(new File(projectDir, "gradle.properties"));
+        write("README.md", "still nothing to see here");
+
+        BuildFingerprint after = BuildFingerprint.compute(projectDir.getPath());
+        assertFalse(before.equals(after));
+        assertEquals(new TreeSet<String>(Arrays.asList("core/build.gradle.kts", "gradle.properties", "web/build.gradle")),
+                after.changedSince(before));
+        assertEquals(after.changedSince(before), before.changedSince(after));
+        assertTrue(after.changedSince(after).isEmpty());
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        File file = new File(projectDir, relativePath);
+        FileUtils.writeStringToFile(file, content, "UTF-8");
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactGraphTest {
+
+    private GradleNode root;
+    private CompactGraph graph;
+
+    @Before
+    public void setUp() {
+        root = project("root", ":", "/work/root");
+        GradleNode compile = configuration(root, "compile");
+        GradleNode guava = dependency(compile, "com.google.guava", "guava", "11.0.2");
+        guava.reason = "requested";
+        dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9");
+        GradleNode commonsIo = dependency(compile, "commons-io", "commons-io", "2.1");
+        commonsIo.replacedByVersion = "2.4";
+        commonsIo.reason = "conflict resolution";
+        compile.dependencies.add(new GradleNode("Could not resolve foo:bar:1.0"));
+
+        GradleNode core = project("core", ":core", "/work/root/core");
+        core.parent = root;
+        root.dependencies.add(core);
+        GradleNode runtime = configuration(core, "runtime");
+        // the same coordinates as above, which share a row but not their flags or children
+        GradleNode omittedGuava = dependency(runtime, "com.google.guava", "guava", "11.0.2");
+        omittedGuava.reason = "requested";
+        omittedGuava.omitted = true;
+        dependency(runtime, "com.google.code.findbugs", "jsr305", "1.3.9");
+
+        graph = CompactGraph.of(root);
+    }
+
+    @Test
+    public void readsBackTheSameGraph() {
+        assertEquals(10, graph.size());
+        assertNodeEquals("root", root, graph.getRoot());
+    }
+
+    @Test
+    public void findsNodesByIndex() {
+        for (int i = 0; i < graph.size(); i++) {
+            GradleNode node = graph.getNode(i);
+            assertEquals(i, graph.indexOf(node));
+            GradleNode parent = i == 0 ? null : graph.getNode(graph.getParent(i));
+            assertEquals(node, graph.getNode(i, parent));
+            if (i > 0) {
+                assertTrue(parent.dependencies.contains(node));
+            }
+        }
+        assertEquals(-1, graph.getParent(0));
+
+        // configurations were built without a parent, which their views keep
+        GradleNode compile = graph.getRoot().dependencies.get(0);
+        assertNull(compile.parent);
+        assertEquals(compile, compile.dependencies.get(0).parent);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTheWrongParent() {
+        GradleNode compile = graph.getRoot().dependencies.get(0);
+        graph.getNode(graph.indexOf(compile.dependencies.get(0)), graph.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNodesOfOtherGraphs() {
+        graph.indexOf(root);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void viewsAreReadOnly() {
+        graph.getRoot().dependencies.add(new GradleNode("more"));
+    }
+
+    @Test
+    public void reusesTheViewsOfChildren() {
+        GradleNode compactRoot = graph.getRoot();
+        GradleNode compile = compactRoot.dependencies.get(0);
+        assertSame(compile, compactRoot.dependencies.get(0));
+        assertSame(compile.dependencies.get(1), compactRoot.dependencies.get(0).dependencies.get(1));
+
+        // views of the same node reached some other way are still equal
+        GradleNode guava = compile.dependencies.get(0);
+        assertEquals(guava, graph.getNode(graph.indexOf(guava)));
+        assertEquals(guava.hashCode(), graph.getNode(graph.indexOf(guava)).hashCode());
+        assertFalse(guava.equals(compactRoot.dependencies.get(1).dependencies.get(0).dependencies.get(0)));
+    }
+
+    @Test
+    public void packsTheRootOfAGraphOnlyOnce() {
+        GradleNode compactRoot = graph.getRoot();
+        assertSame(graph, CompactGraph.of(compactRoot));
+        assertSame(graph, CompactGraph.graphOf(compactRoot.dependencies.get(1)));
+        assertNull(CompactGraph.graphOf(root));
+
+        // a subtree is packed into a graph of its own
+        CompactGraph subtree = CompactGraph.of(compactRoot.dependencies.get(1));
+        assertEquals(4, subtree.size());
+        GradleNode core = subtree.getRoot();
+        assertNull(core.parent);
+        assertEquals(":core", core.projectPath);
+        assertNodeEquals("core > runtime", root.dependencies.get(1).dependencies.get(0), core.dependencies.get(0));
+    }
+
+    private static void assertNodeEquals(String path, GradleNode expected, GradleNode actual) {
+        assertEquals(path, expected.name, actual.name);
+        assertEquals(path, expected.group, actual.group);
+        assertEquals(path, expected.id, actual.id);
+        assertEquals(path, expected.version, actual.version);
+        assertEquals(path, expected.replacedByVersion, actual.replacedByVersion);
+        assertEquals(path, expected.reason, actual.reason);
+        assertEquals(path, expected.nodeType, actual.nodeType);
+        assertEquals(path, expected.projectPath, actual.projectPath);
+        assertEquals(path, expected.projectDir, actual.projectDir);
+        assertEquals(path, expected.omitted, actual.omitted);
+        assertEquals(path, expected.getName(), actual.getName());
+        assertEquals(path, expected.getFullName(), actual.getFullName());
+        assertEquals(path, expected.parent == null, actual.parent == null);
+
+        assertEquals(path, expected.dependencies.size(), actual.dependencies.size());
+        for (int i = 0; i < expected.dependencies.size(); i++) {
+            GradleNode child = expected.dependencies.get(i);
+            assertNodeEquals(path + " > " + child.getFullName(), child, actual.dependencies.get(i));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationFilterTest {
+
+    @Test
+    public void findsPresetsById() {
+        assertSame(ConfigurationFilter.ALL, ConfigurationFilter.getPresets().get(0));
+        for (ConfigurationFilter preset : ConfigurationFilter.getPresets()) {
+            assertSame(preset, ConfigurationFilter.findPreset(preset.getId()));
+        }
+        assertSame(ConfigurationFilter.RUNTIME_ONLY, ConfigurationFilter.findPreset("runtime"));
+        assertNull(ConfigurationFilter.findPreset("nothing"));
+    }
+
+    @Test
+    public void passesOnlyTheGivenPatterns() {
+        assertEquals(Collections.<String>emptyList(), ConfigurationFilter.ALL.toArguments());
+        assertEquals(Arrays.asList("-Pacumen.configurations.include=runtimeClasspath,*RuntimeClasspath"),
+                ConfigurationFilter.RUNTIME_ONLY.toArguments());
+
+        ConfigurationFilter filter = new ConfigurationFilter("custom", "Custom",
+                "compileClasspath", " ", null, ":legacy*");
+        assertEquals(Arrays.asList(
+                "-Pacumen.configurations.include=compileClasspath",
+                "-Pacumen.projects.exclude=:legacy*"), filter.toArguments());
+    }
+
+    @Test
+    public void blankPatternsLeaveNothingOut() {
+        assertTrue(ConfigurationFilter.ALL.isEverything());
+        assertTrue(new ConfigurationFilter("blank", "Blank", " ", "", null, "").isEverything());
+        assertFalse(ConfigurationFilter.WITHOUT_TOOLING.isEverything());
+    }
+
+    @Test
+    public void filtersThatResolveTheSameThingsAreEqual() {
+        ConfigurationFilter runtime = new ConfigurationFilter("mine", "Mine",
+                "runtimeClasspath,*RuntimeClasspath", "", "", "");
+        assertEquals(ConfigurationFilter.RUNTIME_ONLY, runtime);
+        assertEquals(ConfigurationFilter.RUNTIME_ONLY.hashCode(), runtime.hashCode());
+        assertEquals("Mine", runtime.toString());
+        assertFalse(ConfigurationFilter.RUNTIME_ONLY.equals(ConfigurationFilter.COMPILE_ONLY));
+    }
+}
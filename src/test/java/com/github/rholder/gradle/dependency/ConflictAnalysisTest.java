@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConflictAnalysisTest {
+
+    private GradleNode root;
+
+    @Before
+    public void setUp() {
+        root = project("root", ":", "/work/root");
+        GradleNode compile = configuration(root, "compile");
+        replaced(compile, "com.google.code.findbugs", "jsr305", "1.3.9", "2.0.1");
+        GradleNode guava = dependency(compile, "com.google.guava", "guava", "11.0.2");
+        replaced(guava, "com.google.code.findbugs", "jsr305", "1.3.9", "2.0.1").omitted = true;
+        GradleNode slf4j = dependency(compile, "org.slf4j", "slf4j-api", "1.7.2");
+        // one version everywhere isn't a conflict, no matter how often it's asked for
+        dependency(slf4j, "junit", "junit", "4.12");
+        dependency(compile, "junit", "junit", "4.12");
+        // unresolved dependencies have no version to compare
+        compile.dependencies.add(new GradleNode("Could not resolve com.google.code.findbugs:jsr305:3.0"));
+
+        GradleNode core = project("core", ":core", "/work/root/core");
+        root.dependencies.add(core);
+        GradleNode runtime = configuration(core, "runtime");
+        dependency(runtime, "com.google.code.findbugs", "jsr305", "2.0.1");
+        dependency(runtime, "commons-io", "commons-io", "2.4");
+        GradleNode test = configuration(core, "test");
+        dependency(test, "commons-io", "commons-io", "2.1");
+    }
+
+    @Test
+    public void findsModulesWithMoreThanOneRequestedVersion() {
+        List<String> modules = new ArrayList<String>();
+        for (ConflictAnalysis.Conflict conflict : ConflictAnalysis.analyze(root).getConflicts()) {
+            modules.add(conflict.getModule());
+        }
+        assertEquals(Arrays.asList("com.google.code.findbugs:jsr305", "commons-io:commons-io"), modules);
+    }
+
+    @Test
+    public void explainsWhichVersionWonAndWhy() {
+        ConflictAnalysis.Conflict jsr305 = ConflictAnalysis.analyze(root).getConflicts().get(0);
+        assertArrayEquals(new String[]{"1.3.9", "2.0.1"}, jsr305.getRequestedVersions());
+        assertArrayEquals(new String[]{"2.0.1"}, jsr305.getWinningVersions());
+        assertEquals("2.0.1", jsr305.getWinningVersion());
+        assertEquals("conflict resolution", jsr305.getReason());
+        assertEquals(2, jsr305.getRequestCount("1.3.9"));
+        assertEquals(1, jsr305.getRequestCount("2.0.1"));
+        assertEquals(0, jsr305.getRequestCount("3.0"));
+        assertEquals(3, jsr305.getRequestCount());
+
+        // configurations are named after their project, and sort before the modules that asked
+        ConflictAnalysis.Requester[] requesters = jsr305.getRequesters();
+        assertEquals(3, requesters.length);
+        assertRequester(requesters[0], ":compile", "1.3.9", 1);
+        assertRequester(requesters[1], ":core:runtime", "2.0.1", 1);
+        assertRequester(requesters[2], "com.google.guava:guava:11.0.2", "1.3.9", 1);
+    }
+
+    @Test
+    public void keepsEveryVersionThatWonSomewhere() {
+        ConflictAnalysis.Conflict commonsIo = ConflictAnalysis.analyze(root).getConflicts().get(1);
+        assertArrayEquals(new String[]{"2.1", "2.4"}, commonsIo.getWinningVersions());
+        assertEquals("2.4", commonsIo.getWinningVersion());
+        assertNull(commonsIo.getReason());
+    }
+
+    @Test
+    public void countsRequestersInEveryConfigurationTheyShowUpIn() {
+        GradleNode test = configuration(root, "test");
+        GradleNode guava = dependency(test, "com.google.guava", "guava", "11.0.2");
+        replaced(guava, "com.google.code.findbugs", "jsr305", "1.3.9", "2.0.1");
+
+        ConflictAnalysis.Requester[] requesters = ConflictAnalysis.analyze(root).getConflicts().get(0).getRequesters();
+        assertEquals(3, requesters.length);
+        assertRequester(requesters[2], "com.google.guava:guava:11.0.2", "1.3.9", 2);
+    }
+
+    @Test
+    public void compactGraphsHaveTheSameConflicts() {
+        List<ConflictAnalysis.Conflict> plain = ConflictAnalysis.analyze(root).getConflicts();
+        List<ConflictAnalysis.Conflict> compact = ConflictAnalysis.analyze(CompactGraph.of(root).getRoot()).getConflicts();
+        assertEquals(plain.size(), compact.size());
+        for (int i = 0; i < plain.size(); i++) {
+            assertEquals(plain.get(i).getModule(), compact.get(i).getModule());
+            assertArrayEquals(plain.get(i).getRequestedVersions(), compact.get(i).getRequestedVersions());
+            assertEquals(plain.get(i).getRequesters().length, compact.get(i).getRequesters().length);
+        }
+        assertTrue(compact.get(0).getRequesters()[2].getName().startsWith("com.google.guava"));
+    }
+
+    private static GradleNode replaced(GradleNode parent, String group, String id, String version,
+                                       String replacedByVersion) {
+        GradleNode node = dependency(parent, group, id, version);
+        node.replacedByVersion = replacedByVersion;
+        node.reason = "conflict resolution";
+        return node;
+    }
+
+    private static void assertRequester(ConflictAnalysis.Requester requester, String name, String version, int count) {
+        assertEquals(name, requester.getName());
+        assertEquals(name, version, requester.getVersion());
+        assertEquals(name, count, requester.getCount());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphCacheTest {
+
+    private File cacheDir;
+    private String projectPath;
+    private BuildFingerprint fingerprint;
+    private GradleNode root;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("gradle-view-cache").toFile();
+        projectPath = new File(cacheDir, "project").getPath();
+        fingerprint = new BuildFingerprint(Collections.singletonMap("build.gradle", new BuildFingerprint.Stamp(42, 1000)));
+
+        root = project("root", ":", projectPath);
+        GradleNode compile = configuration(root, "compile");
+        GradleNode guava = dependency(compile, "com.google.guava", "guava", "11.0.2");
+        guava.reason = "requested";
+        dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9").omitted = true;
+        GradleNode commonsIo = dependency(compile, "commons-io", "commons-io", "2.1");
+        commonsIo.replacedByVersion = "2.4";
+        compile.dependencies.add(new GradleNode("Could not resolve foo:bar:1.0"));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(cacheDir);
+    }
+
+    @Test
+    public void readsBackWhatWasStored() {
+        DependencyGraphCache cache = new DependencyGraphCache(cacheDir);
+        assertNull(cache.load(projectPath));
+        DependencyGraphCache.Entry stored = store(cache, ConfigurationFilter.ALL);
+        assertSame(stored, cache.load(projectPath));
+
+        // a new cache has to go to disk for it, and hands back a compact graph
+        DependencyGraphCache.Entry loaded = new DependencyGraphCache(cacheDir).load(projectPath);
+        assertNotNull(loaded);
+        assertEquals(fingerprint, loaded.fingerprint);
+        assertNotNull(CompactGraph.graphOf(loaded.root));
+        assertTreeEquals(root, loaded.root);
+    }
+
+    @Test
+    public void keepsFiltersApart() {
+        DependencyGraphCache cache = new DependencyGraphCache(cacheDir);
+        store(cache, ConfigurationFilter.RUNTIME_ONLY);
+        assertNull(cache.load(projectPath));
+        assertNull(cache.load(projectPath, ConfigurationFilter.COMPILE_ONLY));
+        assertNotNull(cache.load(projectPath, ConfigurationFilter.RUNTIME_ONLY));
+
+        assertEquals(DependencyGraphCache.cacheKey(projectPath), DependencyGraphCache.cacheKey(projectPath, ConfigurationFilter.ALL));
+        assertFalse(DependencyGraphCache.cacheKey(projectPath).equals(
+                DependencyGraphCache.cacheKey(projectPath, ConfigurationFilter.RUNTIME_ONLY)));
+        // every path to the same directory shares a key
+        assertEquals(DependencyGraphCache.cacheKey(projectPath),
+                DependencyGraphCache.cacheKey(new File(projectPath, "../project").getPath()));
+    }
+
+    @Test
+    public void forgetsInvalidatedGraphs() {
+        DependencyGraphCache cache = new DependencyGraphCache(cacheDir);
+        store(cache, ConfigurationFilter.ALL);
+        store(cache, ConfigurationFilter.RUNTIME_ONLY);
+        cache.invalidate(projectPath, ConfigurationFilter.ALL);
+        assertNull(cache.load(projectPath));
+        assertNull(new DependencyGraphCache(cacheDir).load(projectPath));
+        assertNotNull(cache.load(projectPath, ConfigurationFilter.RUNTIME_ONLY));
+    }
+
+    @Test
+    public void dropsUnreadableFiles() throws IOException {
+        File cacheFile = new File(cacheDir, DependencyGraphCache.cacheKey(projectPath) + ".bin");
+        FileUtils.writeStringToFile(cacheFile, "not a graph", "UTF-8");
+        assertNull(new DependencyGraphCache(cacheDir).load(projectPath));
+        assertFalse(cacheFile.exists());
+    }
+
+    @Test
+    public void writesGraphsThatReadBackTheSame() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        DependencyGraphCache.writeGraph(output, root);
+        output.flush();
+        GradleNode read = DependencyGraphCache.readGraph(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertTreeEquals(root, read);
+    }
+
+    private DependencyGraphCache.Entry store(DependencyGraphCache cache, ConfigurationFilter filter) {
+        try {
+            return cache.store(projectPath, filter, fingerprint, root);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertTreeEquals(GradleNode expected, GradleNode actual) {
+        assertEquals(expected.getFullName(), actual.getFullName());
+        assertEquals(expected.getName(), expected.nodeType, actual.nodeType);
+        assertEquals(expected.getName(), expected.reason, actual.reason);
+        assertEquals(expected.getName(), expected.projectPath, actual.projectPath);
+        assertEquals(expected.getName(), expected.omitted, actual.omitted);
+        assertEquals(expected.getName(), expected.dependencies.size(), actual.dependencies.size());
+        for (int i = 0; i < expected.dependencies.size(); i++) {
+            assertTreeEquals(expected.dependencies.get(i), actual.dependencies.get(i));
+            assertTrue(actual.dependencies.get(i).parent == null || actual.dependencies.get(i).parent.equals(actual));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DependencySearchIndexTest {
+
+    private GradleNode root;
+    private GradleNode compile;
+    private GradleNode guava;
+    private GradleNode slf4j;
+    private DependencySearchIndex index;
+
+    @Before
+    public void setUp() {
+        root = new GradleNode("myproject");
+        root.nodeType = "project";
+        compile = new GradleNode("compile");
+        compile.nodeType = "configuration";
+        root.dependencies.add(compile);
+
+        guava = dependency(compile, "com.google.guava", "guava", "11.0.2");
+        dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9");
+        slf4j = dependency(compile, "org.slf4j", "slf4j-api", "1.7.2");
+        GradleNode commonsIo = dependency(compile, "commons-io", "commons-io", "2.1");
+        commonsIo.replacedByVersion = "2.4";
+        // the same module again further down, which is indexed as the same name
+        dependency(slf4j, "com.google.code.findbugs", "jsr305", "1.3.9");
+
+        index = new DependencySearchIndex(root);
+    }
+
+    @Test
+    public void blankQueriesMatchNothing() {
+        assertNull(index.search(null, null));
+        assertNull(index.search("   ", null));
+    }
+
+    @Test
+    public void longQueriesMatchAnywhereInTheName() {
+        assertEquals(set("com.google.guava:guava:11.0.2"), matches("uav"));
+        assertEquals(set("com.google.guava:guava:11.0.2"), matches("GUAVA:11"));
+        assertEquals(set("com.google.code.findbugs:jsr305:1.3.9", "com.google.guava:guava:11.0.2"), matches("google"));
+        assertEquals(set("commons-io:commons-io:2.1 -> 2.4"), matches("2.1 -> 2"));
+        assertEquals(set(), matches("guava:12"));
+    }
+
+    @Test
+    public void shortQueriesOnlyMatchTheStartOfAToken() {
+        assertEquals(set("com.google.guava:guava:11.0.2"), matches("gu"));
+        assertEquals(set(), matches("ua"));
+        assertEquals(set("com.google.code.findbugs:jsr305:1.3.9", "org.slf4j:slf4j-api:1.7.2"), matches("1."));
+        assertEquals(set("commons-io:commons-io:2.1 -> 2.4"), matches("2"));
+        // the arrow between versions isn't a token
+        assertEquals(set(), matches("->"));
+    }
+
+    @Test
+    public void typedQueriesMatchTheSameAsFreshOnes() {
+        List<String> queries = Arrays.asList("guava", "google.c", "1.3", "sl", "2.4", "commons-io:2", "->", "zzz", "jsr");
+        for (String query : queries) {
+            DependencySearchIndex.Result typed = null;
+            for (int i = 1; i <= query.length(); i++) {
+                typed = index.search(query.substring(0, i), typed);
+                assertEquals(query.substring(0, i), names(index.search(query.substring(0, i), null)), names(typed));
+            }
+        }
+
+        // deleting characters goes back to the index instead of narrowing
+        DependencySearchIndex.Result typed = index.search("gua", null);
+        typed = index.search("gu", typed);
+        assertEquals(names(index.search("gu", null)), names(typed));
+        typed = index.search("g", typed);
+        assertEquals(names(index.search("g", null)), names(typed));
+    }
+
+    @Test
+    public void everyNodeAboveAMatchStaysVisible() {
+        DependencySearchIndex.Result result = index.search("jsr305", null);
+        assertEquals(1, result.getMatchCount());
+        assertTrue(result.isVisible(root));
+        assertTrue(result.isVisible(compile));
+        assertTrue(result.isVisible(guava));
+        assertTrue(result.isVisible(slf4j));
+        assertFalse(result.isMatch(guava));
+        assertTrue(result.isMatch(guava.dependencies.get(0)));
+        assertTrue(result.isMatch(slf4j.dependencies.get(0)));
+
+        List<GradleNode[]> paths = result.getPaths(10);
+        assertEquals(2, paths.size());
+        assertEquals(Arrays.asList(root, compile, guava, guava.dependencies.get(0)), Arrays.asList(paths.get(0)));
+        assertEquals(Arrays.asList(root, compile, slf4j, slf4j.dependencies.get(0)), Arrays.asList(paths.get(1)));
+        assertEquals(1, result.getPaths(1).size());
+    }
+
+    @Test
+    public void compactGraphsMatchTheSameAsPlainOnes() {
+        DependencySearchIndex compactIndex = new DependencySearchIndex(CompactGraph.of(root).getRoot());
+        for (String query : Arrays.asList("jsr", "1.", "google", "2.1 -> 2.4")) {
+            DependencySearchIndex.Result plain = index.search(query, null);
+            DependencySearchIndex.Result compact = compactIndex.search(query, null);
+            assertEquals(query, names(plain), names(compact));
+
+            List<GradleNode[]> plainPaths = plain.getPaths(10);
+            List<GradleNode[]> compactPaths = compact.getPaths(10);
+            assertEquals(query, plainPaths.size(), compactPaths.size());
+            for (int i = 0; i < plainPaths.size(); i++) {
+                assertEquals(query, pathNames(plainPaths.get(i)), pathNames(compactPaths.get(i)));
+                GradleNode last = compactPaths.get(i)[compactPaths.get(i).length - 1];
+                assertTrue(query, compact.isMatch(last));
+                assertTrue(query, compact.isVisible(last));
+            }
+        }
+    }
+
+    private Set<String> matches(String query) {
+        return names(index.search(query, null));
+    }
+
+    // the full names of every match, found through the paths to each of them
+    private static Set<String> names(DependencySearchIndex.Result result) {
+        Set<String> names = new TreeSet<String>();
+        if (result != null) {
+            for (GradleNode[] path : result.getPaths(Integer.MAX_VALUE)) {
+                names.add(path[path.length - 1].getFullName());
+            }
+        }
+        return names;
+    }
+
+    private static List<String> pathNames(GradleNode[] path) {
+        String[] names = new String[path.length];
+        for (int i = 0; i < path.length; i++) {
+            names[i] = path[i].getFullName();
+        }
+        return Arrays.asList(names);
+    }
+
+    private static Set<String> set(String... names) {
+        return new TreeSet<String>(Arrays.asList(names));
+    }
+}
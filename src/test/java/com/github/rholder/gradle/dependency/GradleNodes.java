@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+/**
+ * Builds the GradleNode graphs tests start from, shaped the same way a
+ * loaded build is.
+ */
+public class GradleNodes {
+
+    private GradleNodes() {
+    }
+
+    /**
+     * Return a new project node, which isn't added anywhere.
+     */
+    public static GradleNode project(String name, String projectPath, String projectDir) {
+        GradleNode node = new GradleNode(name);
+        node.nodeType = "project";
+        node.projectPath = projectPath;
+        node.projectDir = projectDir;
+        return node;
+    }
+
+    /**
+     * Return a new configuration node added to the given project, which like
+     * a loaded one has no parent.
+     */
+    public static GradleNode configuration(GradleNode project, String name) {
+        GradleNode node = new GradleNode(name);
+        node.nodeType = "configuration";
+        project.dependencies.add(node);
+        return node;
+    }
+
+    /**
+     * Return a new dependency node added to the given configuration or
+     * dependency.
+     */
+    public static GradleNode dependency(GradleNode parent, String group, String id, String version) {
+        GradleNode node = new GradleNode(parent, group, id, version);
+        node.nodeType = "dependency";
+        parent.dependencies.add(node);
+        return node;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GraphDiffTest {
+
+    @Test
+    public void findsEveryKindOfChange() {
+        GradleNode before = project("root", ":", null);
+        GradleNode compile = configuration(before, "compile");
+        GradleNode guava = dependency(compile, "com.google.guava", "guava", "10.0");
+        dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9");
+        dependency(compile, "org.slf4j", "slf4j-api", "1.7.2");
+        dependency(compile, "commons-io", "commons-io", "2.1").replacedByVersion = "2.4";
+        GradleNode core = project("core", ":core", null);
+        before.dependencies.add(core);
+        dependency(configuration(core, "runtime"), "junit", "junit", "4.11");
+
+        GradleNode after = project("root", ":", null);
+        compile = configuration(after, "compile");
+        guava = dependency(compile, "com.google.guava", "guava", "11.0.2");
+        dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9");
+        dependency(compile, "org.slf4j", "slf4j-api", "1.7.1");
+        // a different request that still resolves to the same version isn't a change
+        dependency(compile, "commons-io", "commons-io", "2.2").replacedByVersion = "2.4";
+        dependency(compile, "joda-time", "joda-time", "2.3");
+        // unresolved dependencies have no version to compare
+        compile.dependencies.add(new GradleNode("Could not resolve foo:bar:1.0"));
+        core = project("core", ":core", null);
+        after.dependencies.add(core);
+        configuration(core, "runtime");
+
+        GraphDiff diff = GraphDiff.compare(before, after);
+        List<GraphDiff.Change> changes = diff.getChanges();
+        assertEquals(4, changes.size());
+        assertChange(changes.get(0), ":", "compile", "com.google.guava", "guava", GraphDiff.Kind.UPGRADED, "10.0", "11.0.2");
+        assertChange(changes.get(1), ":", "compile", "joda-time", "joda-time", GraphDiff.Kind.ADDED, null, "2.3");
+        assertChange(changes.get(2), ":", "compile", "org.slf4j", "slf4j-api", GraphDiff.Kind.DOWNGRADED, "1.7.2", "1.7.1");
+        assertChange(changes.get(3), ":core", "runtime", "junit", "junit", GraphDiff.Kind.REMOVED, "4.11", null);
+        assertEquals("1 added, 1 removed, 1 upgraded, 1 downgraded", diff.getSummary());
+    }
+
+    @Test
+    public void comparesEachConfigurationSeparately() {
+        GradleNode before = project("root", ":", null);
+        dependency(configuration(before, "compile"), "junit", "junit", "4.11");
+        dependency(configuration(before, "testCompile"), "junit", "junit", "4.11");
+
+        GradleNode after = project("root", ":", null);
+        dependency(configuration(after, "compile"), "junit", "junit", "4.11");
+        dependency(configuration(after, "testCompile"), "junit", "junit", "4.12");
+
+        List<GraphDiff.Change> changes = GraphDiff.compare(before, after).getChanges();
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), ":", "testCompile", "junit", "junit", GraphDiff.Kind.UPGRADED, "4.11", "4.12");
+    }
+
+    @Test
+    public void showsChangesAsAGraph() {
+        GradleNode before = project("root", ":", null);
+        dependency(configuration(before, "compile"), "org.slf4j", "slf4j-api", "1.7.2");
+        GradleNode after = project("root", ":", null);
+        GradleNode compile = configuration(after, "compile");
+        dependency(compile, "org.slf4j", "slf4j-api", "1.7.5");
+        dependency(compile, "joda-time", "joda-time", "2.3");
+
+        GradleNode root = GraphDiff.compare(before, after).toGradleNode("Changes");
+        assertEquals("Changes", root.getName());
+        GradleNode projectNode = root.dependencies.get(0);
+        assertEquals("project", projectNode.getNodeType());
+        assertEquals(":", projectNode.projectPath);
+        GradleNode configurationNode = projectNode.dependencies.get(0);
+        assertEquals("compile", configurationNode.getName());
+        assertEquals(2, configurationNode.dependencies.size());
+
+        GradleNode added = configurationNode.dependencies.get(0);
+        assertEquals("joda-time:joda-time:2.3", added.getFullName());
+        assertEquals(GraphDiff.Kind.ADDED, GraphDiff.Kind.of(added));
+        GradleNode upgraded = configurationNode.dependencies.get(1);
+        assertEquals("org.slf4j:slf4j-api:1.7.2 -> 1.7.5", upgraded.getFullName());
+        assertEquals(GraphDiff.Kind.UPGRADED, GraphDiff.Kind.of(upgraded));
+        assertNull(GraphDiff.Kind.of(configurationNode));
+
+        // the kind is kept apart from the node type, so changes are still dependencies to everything else
+        assertEquals("dependency", added.getNodeType());
+        assertEquals("dependency", upgraded.getNodeType());
+        GradleNode lookalike = dependency(new GradleNode("compile"), "joda-time", "joda-time", "2.3");
+        assertNull(GraphDiff.Kind.of(lookalike));
+    }
+
+    @Test
+    public void saysSoWhenNothingChanged() {
+        GradleNode before = project("root", ":", null);
+        dependency(configuration(before, "compile"), "junit", "junit", "4.12");
+        GradleNode after = project("root", ":", null);
+        dependency(configuration(after, "compile"), "junit", "junit", "4.12");
+
+        GraphDiff diff = GraphDiff.compare(before, after);
+        assertTrue(diff.getChanges().isEmpty());
+        GradleNode root = diff.toGradleNode("Changes");
+        assertEquals(1, root.dependencies.size());
+        assertEquals("No changes", root.dependencies.get(0).getName());
+    }
+
+    private static void assertChange(GraphDiff.Change change, String project, String configuration, String group,
+                                     String id, GraphDiff.Kind kind, String beforeVersion, String afterVersion) {
+        assertEquals(change.toString(), project, change.getProject());
+        assertEquals(change.toString(), configuration, change.getConfiguration());
+        assertEquals(change.toString(), group, change.getGroup());
+        assertEquals(change.toString(), id, change.getId());
+        assertEquals(change.toString(), kind, change.getKind());
+        assertEquals(change.toString(), beforeVersion, change.getBeforeVersion());
+        assertEquals(change.toString(), afterVersion, change.getAfterVersion());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ProjectGraphUtilTest {
+
+    private GradleNode root;
+
+    @Before
+    public void setUp() {
+        root = project("root", ":", "/work/root");
+        root.group = "";
+        GradleNode core = subproject("core");
+        dependency(configuration(core, "compile"), "com.google.guava", "guava", "11.0.2");
+
+        // depends on the core project through another project
+        GradleNode web = subproject("web");
+        GradleNode api = dependency(configuration(web, "runtime"), "root", "api", "unspecified");
+        dependency(api, "root", "core", "unspecified");
+
+        // depends on a module that only shares its name with the core project
+        GradleNode cli = subproject("cli");
+        dependency(configuration(cli, "runtime"), "org.foo", "core", "1.0");
+
+        GradleNode apiProject = subproject("api");
+        dependency(configuration(apiProject, "compile"), "root", "core", "unspecified");
+    }
+
+    @Test
+    public void reloadsTheChangedProjectAndItsDependents() {
+        assertEquals(new TreeSet<String>(Arrays.asList(":api", ":core", ":web")),
+                ProjectGraphUtil.findAffectedProjects(root, "/work/root", changed("core/build.gradle")));
+        assertEquals(new TreeSet<String>(Arrays.asList(":cli")),
+                ProjectGraphUtil.findAffectedProjects(root, "/work/root", changed("cli/build.gradle.kts")));
+    }
+
+    @Test
+    public void reloadsEverythingWhenItCantTell() {
+        assertNull(ProjectGraphUtil.findAffectedProjects(root, "/work/root", changed("build.gradle")));
+        assertNull(ProjectGraphUtil.findAffectedProjects(root, "/work/root", changed("settings.gradle")));
+        assertNull(ProjectGraphUtil.findAffectedProjects(root, "/work/root", changed("docs/build.gradle")));
+
+        root.dependencies.get(0).group = null;
+        assertNull(ProjectGraphUtil.findAffectedProjects(root, "/work/root", changed("core/build.gradle")));
+    }
+
+    @Test
+    public void splicesInReloadedProjects() {
+        GradleNode core = project("core", ":core", "/work/root/core");
+        core.group = "root";
+        dependency(configuration(core, "compile"), "com.google.guava", "guava", "18.0");
+
+        GradleNode spliced = ProjectGraphUtil.spliceProjects(root, Collections.singletonMap(":core", core));
+        assertEquals(4, spliced.dependencies.size());
+        assertEquals("root", spliced.dependencies.get(0).group);
+        assertEquals("com.google.guava:guava:18.0",
+                spliced.dependencies.get(0).dependencies.get(0).dependencies.get(0).getName());
+        // everything else is shared with the original graph
+        assertEquals("com.google.guava:guava:11.0.2",
+                root.dependencies.get(0).dependencies.get(0).dependencies.get(0).getName());
+        assertEquals(root.dependencies.get(1).dependencies.get(0), spliced.dependencies.get(1).dependencies.get(0));
+    }
+
+    private GradleNode subproject(String name) {
+        GradleNode project = project(name, ":" + name, "/work/root/" + name);
+        project.group = "root";
+        root.dependencies.add(project);
+        return project;
+    }
+
+    private static HashSet<String> changed(String... files) {
+        return new HashSet<String>(Arrays.asList(files));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertEquals;
+
+public class ReverseDependencyIndexTest {
+
+    private GradleNode root;
+
+    @Before
+    public void setUp() {
+        root = project("root", ":", "/work/root");
+        GradleNode compile = configuration(root, "compile");
+        GradleNode guava = dependency(compile, "com.google.guava", "guava", "11.0.2");
+        dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9");
+        GradleNode slf4j = dependency(compile, "org.slf4j", "slf4j-api", "1.7.2");
+        // expanded further up already, so only the first occurrence has children
+        dependency(slf4j, "com.google.guava", "guava", "11.0.2").omitted = true;
+
+        GradleNode core = project("core", ":core", "/work/root/core");
+        root.dependencies.add(core);
+        GradleNode runtime = configuration(core, "runtime");
+        dependency(runtime, "com.google.guava", "guava", "11.0.2").omitted = true;
+        dependency(runtime, "commons-io", "commons-io", "2.1").replacedByVersion = "2.4";
+    }
+
+    @Test
+    public void listsEveryModuleOnceSortedByName() {
+        ReverseDependencyIndex index = new ReverseDependencyIndex(root);
+        assertEquals(Arrays.asList(
+                "com.google.code.findbugs:jsr305:1.3.9",
+                "com.google.guava:guava:11.0.2",
+                "commons-io:commons-io:2.4",
+                "org.slf4j:slf4j-api:1.7.2"), names(index, index.getModules()));
+    }
+
+    @Test
+    public void findsEverythingThatPullsAModuleIn() {
+        ReverseDependencyIndex index = new ReverseDependencyIndex(root);
+        int[] modules = index.getModules();
+
+        // configurations are named after their project and sort before modules
+        assertEquals(Arrays.asList(":compile", ":core:runtime", "org.slf4j:slf4j-api:1.7.2"),
+                names(index, index.getDependents(modules[1])));
+        assertEquals(Arrays.asList("com.google.guava:guava:11.0.2"), names(index, index.getDependents(modules[0])));
+        assertEquals(Arrays.asList(":core:runtime"), names(index, index.getDependents(modules[2])));
+
+        // walking up from a module always ends at the configurations
+        int[] configurations = index.getDependents(modules[3]);
+        assertEquals(Arrays.asList(":compile"), names(index, configurations));
+        assertEquals("configuration", index.getNode(configurations[0]).getNodeType());
+        assertEquals(0, index.getDependents(configurations[0]).length);
+    }
+
+    @Test
+    public void compactGraphsHaveTheSameIndex() {
+        ReverseDependencyIndex plain = new ReverseDependencyIndex(root);
+        ReverseDependencyIndex compact = new ReverseDependencyIndex(CompactGraph.of(root).getRoot());
+        assertEquals(names(plain, plain.getModules()), names(compact, compact.getModules()));
+        for (int i = 0; i < plain.getModules().length; i++) {
+            assertEquals(names(plain, plain.getDependents(plain.getModules()[i])),
+                    names(compact, compact.getDependents(compact.getModules()[i])));
+        }
+    }
+
+    private static List<String> names(ReverseDependencyIndex index, int[] vertices) {
+        List<String> names = new ArrayList<String>();
+        for (int vertex : vertices) {
+            names.add(index.getNode(vertex).getName());
+        }
+        return names;
+    }
+}
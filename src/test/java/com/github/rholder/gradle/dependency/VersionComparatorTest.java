@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.dependency;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VersionComparatorTest {
+
+    // oldest first
+    private static final List<String> ORDERED = Arrays.asList(
+            "0.9",
+            "1.0-dev",
+            "1.0-alpha",
+            "1.0-beta2",
+            "1.0-beta10",
+            "1.0-rc1",
+            "1.0rc2",
+            "1.0-SNAPSHOT",
+            "1.0-final",
+            "1.0-ga",
+            "1.0-release",
+            "1.0-sp1",
+            "1.0",
+            "1.0.1",
+            "1.9",
+            "1.10",
+            "1.12345678901234567890",
+            "2.0");
+
+    @Test
+    public void sortsOldestFirst() {
+        List<String> shuffled = new ArrayList<String>(ORDERED);
+        Collections.shuffle(shuffled, new Random(42));
+        Collections.sort(shuffled, VersionComparator.INSTANCE);
+        assertEquals(ORDERED, shuffled);
+    }
+
+    @Test
+    public void comparesBothWaysConsistently() {
+        for (int i = 0; i < ORDERED.size(); i++) {
+            for (int j = 0; j < ORDERED.size(); j++) {
+                String a = ORDERED.get(i);
+                String b = ORDERED.get(j);
+                int c = VersionComparator.INSTANCE.compare(a, b);
+                assertEquals(a + " vs " + b, Integer.signum(i - j), Integer.signum(c));
+                assertEquals(a + " vs " + b, -Integer.signum(c), Integer.signum(VersionComparator.INSTANCE.compare(b, a)));
+            }
+        }
+    }
+
+    @Test
+    public void comparesNumbersByValue() {
+        assertTrue(VersionComparator.INSTANCE.compare("1.10", "1.9") > 0);
+        assertTrue(VersionComparator.INSTANCE.compare("2.0", "1.99.99") > 0);
+        assertTrue(VersionComparator.INSTANCE.compare("1.0.10", "1.0.010") != 0);
+        assertTrue(VersionComparator.INSTANCE.compare("1.0.011", "1.0.10") > 0);
+    }
+
+    @Test
+    public void ordersVersionsThatOnlyDifferInSeparators() {
+        int c = VersionComparator.INSTANCE.compare("1.0-1", "1.0.1");
+        assertTrue(c != 0);
+        assertEquals(-Integer.signum(c), Integer.signum(VersionComparator.INSTANCE.compare("1.0.1", "1.0-1")));
+        assertEquals(0, VersionComparator.INSTANCE.compare("1.0", "1.0"));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.gradle.export;
+
+import com.github.rholder.gradle.dependency.GradleNode;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.rholder.gradle.dependency.GradleNodes.configuration;
+import static com.github.rholder.gradle.dependency.GradleNodes.dependency;
+import static com.github.rholder.gradle.dependency.GradleNodes.project;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonGraphExporterTest {
+
+    @Test
+    public void expandsBackToTheSameGraph() throws IOException {
+        GradleNode root = project("root", ":", "/work/root");
+        GradleNode core = project("core", ":core", "/work/root/core");
+        root.dependencies.add(core);
+        for (String name : new String[]{"compile", "runtime"}) {
+            GradleNode configuration = configuration(core, name);
+            GradleNode guava = dependency(configuration, "com.google.guava", "guava", "11.0.2");
+            dependency(guava, "com.google.code.findbugs", "jsr305", "1.3.9");
+            GradleNode commonsIo = dependency(configuration, "commons-io", "commons-io", "2.1");
+            commonsIo.replacedByVersion = "2.4";
+            commonsIo.reason = "conflict resolution";
+        }
+        // the same names as a shared subtree but omitted, which makes it a different subtree
+        GradleNode test = configuration(core, "test");
+        GradleNode omittedGuava = dependency(test, "com.google.guava", "guava", "11.0.2");
+        omittedGuava.omitted = true;
+        dependency(omittedGuava, "com.google.code.findbugs", "jsr305", "1.3.9");
+        test.dependencies.add(new GradleNode("Could not resolve \"foo\":bar\n\t\u0001"));
+
+        String json = export(root);
+        JsonObject graph = JsonParser.parseString(json).getAsJsonObject();
+        assertEquals(JsonGraphExporter.FORMAT, graph.get("format").getAsString());
+        assertEquals(JsonGraphExporter.FORMAT_VERSION, graph.get("version").getAsInt());
+        assertEquals("/work/root", graph.get("projectDir").getAsString());
+        assertTrue(json, json.contains("\"@ref\":1"));
+
+        assertNodeEquals("root", root, expand(graph.getAsJsonObject("root"), new HashMap<Integer, JsonObject>()));
+    }
+
+    @Test
+    public void numbersSharedSubtreesInTheOrderTheyAreWritten() throws IOException {
+        GradleNode root = configuration(project("root", ":", null), "compile");
+        GradleNode first = dependency(root, "a", "a", "1");
+        dependency(first, "b", "b", "1");
+        GradleNode second = dependency(root, "c", "c", "1");
+        dependency(second, "d", "d", "1");
+        dependency(root, "c", "c", "1").dependencies.add(dependency(new GradleNode("unused"), "d", "d", "1"));
+        dependency(root, "a", "a", "1").dependencies.add(dependency(new GradleNode("unused"), "b", "b", "1"));
+
+        JsonArray children = JsonParser.parseString(export(root)).getAsJsonObject()
+                .getAsJsonObject("root").getAsJsonArray("children");
+        assertEquals(1, children.get(0).getAsJsonObject().get("@id").getAsInt());
+        assertEquals(2, children.get(1).getAsJsonObject().get("@id").getAsInt());
+        assertEquals(2, children.get(2).getAsJsonObject().get("@ref").getAsInt());
+        assertEquals(1, children.get(3).getAsJsonObject().get("@ref").getAsInt());
+
+        // leaves are short enough that they're always written in full
+        JsonObject leaf = children.get(0).getAsJsonObject().getAsJsonArray("children").get(0).getAsJsonObject();
+        assertFalse(leaf.has("@id"));
+        assertEquals("b", leaf.get("group").getAsString());
+    }
+
+    @Test
+    public void leavesOutMembersThatAreNotSet() throws IOException {
+        GradleNode root = project("root", ":", null);
+        JsonObject written = JsonParser.parseString(export(root)).getAsJsonObject().getAsJsonObject("root");
+        assertEquals(3, written.entrySet().size());
+        assertEquals("project", written.get("type").getAsString());
+        assertEquals("root", written.get("name").getAsString());
+        assertEquals(":", written.get("path").getAsString());
+    }
+
+    private static String export(GradleNode root) throws IOException {
+        StringWriter output = new StringWriter();
+        JsonGraphExporter exporter = new JsonGraphExporter(output);
+        exporter.export("/work/root", root);
+        exporter.flush();
+        return output.toString();
+    }
+
+    // rebuild the graph from its JSON, replacing every reference with the subtree it stands for
+    private static GradleNode expand(JsonObject written, Map<Integer, JsonObject> ids) {
+        if (written.has("@ref")) {
+            JsonObject shared = ids.get(written.get("@ref").getAsInt());
+            assertTrue("referenced before it was written", shared != null);
+            return expand(shared, ids);
+        }
+        if (written.has("@id")) {
+            ids.put(written.get("@id").getAsInt(), written);
+        }
+
+        GradleNode node = new GradleNode(string(written, "name"));
+        node.nodeType = string(written, "type");
+        node.projectPath = string(written, "path");
+        node.projectDir = string(written, "dir");
+        node.group = string(written, "group");
+        node.id = string(written, "id");
+        node.version = string(written, "version");
+        node.replacedByVersion = string(written, "replacedBy");
+        node.reason = string(written, "reason");
+        node.omitted = written.has("omitted") && written.get("omitted").getAsBoolean();
+        if (written.has("children")) {
+            for (JsonElement child : written.getAsJsonArray("children")) {
+                node.dependencies.add(expand(child.getAsJsonObject(), ids));
+            }
+        }
+        return node;
+    }
+
+    private static String string(JsonObject object, String member) {
+        return object.has(member) ? object.get(member).getAsString() : null;
+    }
+
+    private static void assertNodeEquals(String path, GradleNode expected, GradleNode actual) {
+        assertEquals(path, expected.name, actual.name);
+        assertEquals(path, expected.nodeType, actual.nodeType);
+        assertEquals(path, expected.projectPath, actual.projectPath);
+        assertEquals(path, expected.projectDir, actual.projectDir);
+        assertEquals(path, expected.group, actual.group);
+        assertEquals(path, expected.id, actual.id);
+        assertEquals(path, expected.version, actual.version);
+        assertEquals(path, expected.replacedByVersion, actual.replacedByVersion);
+        assertEquals(path, expected.reason, actual.reason);
+        assertEquals(path, expected.omitted, actual.omitted);
+        assertEquals(path, expected.dependencies.size(), actual.dependencies.size());
+        for (int i = 0; i < expected.dependencies.size(); i++) {
+            GradleNode child = expected.dependencies.get(i);
+            assertNodeEquals(path + " > " + child.getFullName(), child, actual.dependencies.get(i));
+        }
+    }
+}